@@ -0,0 +1,517 @@
+//importing libraries
+
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks measures the project data paths against an embedded database filled by
+ * {@link DatasetGenerator}. Each benchmark is warmed up and then timed, and the time and memory
+ * allocated per operation are printed so a change can be measured before and after.
+ *
+ * <p>Usage: {@code java -cp <classes>:<jdbc driver> Benchmarks [row counts]}, e.g.
+ * {@code Benchmarks 1000 100000 1000000}. The database url defaults to an in-memory H2 database
+ * and can be changed with the poise.bench.url system property; "{rows}" in the url is replaced by
+ * the row count so each size gets its own database. The archiving benchmarks replace it with the
+ * row count followed by "archive", so they run on a database the other benchmarks leave alone.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class Benchmarks {
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  /**
+   * An operation being measured.
+   */
+  interface Operation {
+
+    /**
+     * Runs the operation once.
+     *
+     * @throws Exception if the operation fails
+     */
+    void run() throws Exception;
+  }
+
+  /**
+   * Runs the benchmarks for each row count passed in.
+   *
+   * @param args row counts, 1000 and 100000 if none are passed in
+   * @throws Exception if a benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    List<Integer> sizes = new ArrayList<>();
+    for (String arg : args) {
+      sizes.add(Integer.parseInt(arg));
+    }
+    if (sizes.isEmpty()) {
+      sizes.add(1000);
+      sizes.add(100000);
+    }
+    formattingBenchmarks();
+    aggregationBenchmarks();
+    for (int rows : sizes) {
+      databaseBenchmarks(rows);
+      archiveBenchmarks(rows);
+    }
+  }
+
+  /**
+   * Measures building and formatting projects and people in memory.
+   *
+   * @throws Exception if a benchmark fails
+   */
+  private static void formattingBenchmarks() throws Exception {
+    System.out.println("== Formatting");
+    DatasetGenerator generator = new DatasetGenerator(1);
+    Project project = generator.newProject(1, LocalDate.now(), 10);
+    measure("Project.toString", 20000, 200000, project::toString);
+    measure("Project details, concatenated", 20000, 200000, () -> concatenate(project));
+    StringBuilder details = new StringBuilder(2048);
+    measure("ProjectRenderer (reused builder)", 20000, 200000, () -> {
+      details.setLength(0);
+      ProjectRenderer.appendStakeholders(ProjectRenderer.appendProject(details, project),
+          project);
+    });
+    measure("Person construction", 20000, 200000, () -> generator.newPerson("Customer"));
+    Person person = generator.newPerson("Customer");
+    measure("Person.toString", 20000, 200000, person::toString);
+    project.setCompletionDate(Date.valueOf(LocalDate.now()));
+    measure("Project.getInvoice", 20000, 200000, project::getInvoice);
+    StringBuilder invoice = new StringBuilder(1024);
+    measure("InvoiceTemplate.render (reused builder)", 20000, 200000, () -> {
+      invoice.setLength(0);
+      InvoiceTemplate.INVOICE.render(invoice, project);
+    });
+  }
+
+  /**
+   * Measures adding up the fees of a million projects in memory, in cents with
+   * {@link PortfolioTotals} and with boxed doubles grouped by a stream.
+   *
+   * @throws Exception if a benchmark fails
+   */
+  private static void aggregationBenchmarks() throws Exception {
+    System.out.println("\n== Aggregation of 1000000 projects");
+    DatasetGenerator generator = new DatasetGenerator(1);
+    int count = 1000000;
+    String[] types = new String[count];
+    long[] fees = new long[count];
+    long[] paid = new long[count];
+    for (int i = 0; i < count; i++) {
+      Project project = generator.newProject(i, LocalDate.now(), 10);
+      types[i] = project.getBuildingType();
+      fees[i] = project.getTotalFeeCents();
+      paid[i] = project.getAmountPaidCents();
+    }
+    measure("PortfolioTotals (long cents)", 3, 20, () -> {
+      PortfolioTotals totals = new PortfolioTotals();
+      for (int i = 0; i < count; i++) {
+        totals.add(types[i], fees[i], paid[i]);
+      }
+    });
+    measure("Stream groupingBy (boxed doubles)", 3, 20, () -> IntStream.range(0, count).boxed()
+        .collect(Collectors.groupingBy(i -> types[i],
+            Collectors.summingDouble(i -> Math.max(0, fees[i] - paid[i]) / 100.0))));
+  }
+
+  /**
+   * Measures the database paths against a database with a number of projects.
+   *
+   * @param rows number of projects in the database
+   * @throws Exception if a benchmark fails
+   */
+  private static void databaseBenchmarks(int rows) throws Exception {
+    System.out.println("\n== Database with " + rows + " projects");
+    String url = System.getProperty("poise.bench.url",
+        "jdbc:h2:mem:bench{rows};DB_CLOSE_DELAY=-1;MODE=MySQL").replace("{rows}", "" + rows);
+    try (ConnectionPool pool = new ConnectionPool(url,
+        System.getProperty("poise.bench.user", "sa"),
+        System.getProperty("poise.bench.password", ""), 4);
+        Connection connection = pool.getConnection()) {
+      long start = System.nanoTime();
+      DatasetGenerator.createSchema(connection);
+      DatasetGenerator generator = new DatasetGenerator(rows);
+      generator.generate(connection, rows);
+      System.out.printf("Generated %d projects in %.2fs%n", rows,
+          (System.nanoTime() - start) / 1e9);
+
+      //reading a project and its stakeholders: one joined query against five queries
+      int[] next = {0};
+      measure("Stakeholder fetch, joined (1 round trip)", 2000, 20000,
+          () -> Project.getProjectByNum(connection, 1 + next[0]++ % rows));
+      measure("Stakeholder fetch, per table (5 round trips)", 2000, 20000,
+          () -> fetchPerTable(connection, 1 + next[0]++ % rows));
+
+      //formatting rows straight from a result set, against only reading the columns so the
+      //difference is what the formatting allocates, which should be nothing
+      try (PreparedStatement statement = connection
+          .prepareStatement("SELECT * FROM projects WHERE proj_num<=1000")) {
+        StringBuilder text = new StringBuilder(512);
+        measure("ProjectRow, columns read only (1000 rows)", 20, 200, () -> {
+          try (ResultSet resultSet = statement.executeQuery()) {
+            ProjectRow project = new ProjectRow(resultSet);
+            while (project.next()) {
+              project.getNum();
+              project.getName();
+              project.getBuildingType();
+              project.getAddress();
+              project.getErfNum();
+              project.getTotalFeeCents();
+              project.getAmountPaidCents();
+              project.getDeadline();
+              project.getCompletionDate();
+            }
+          }
+        });
+        measure("ProjectRenderer from ProjectRow (1000 rows)", 20, 200, () -> {
+          try (ResultSet resultSet = statement.executeQuery()) {
+            ProjectRow project = new ProjectRow(resultSet);
+            while (project.next()) {
+              text.setLength(0);
+              ProjectRenderer.appendProject(text, project);
+            }
+          }
+        });
+        measure("Concatenated from ResultSet (1000 rows)", 20, 200, () -> {
+          try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+              concatenate(resultSet);
+            }
+          }
+        });
+      }
+
+      //inserts with ids from the allocator, committed every 100 rows
+      IdAllocator idAllocator = new IdAllocator(pool, 100);
+      int people = Math.max(1, rows / 10);
+      int[] inserted = {0};
+      measure("Person.addPersonToDB", 1000, 10000, () -> {
+        Person person = generator.newPerson("Customer");
+        person.setNewId(idAllocator, "customers");
+        person.addPersonToDB(connection);
+        if (++inserted[0] % 100 == 0) {
+          connection.commit();
+        }
+      });
+      measure("Project.addProjectToDb", 1000, 10000, () -> {
+        Project project = generator.newProject(0, LocalDate.now(), people);
+        project.setNumForNewProject(idAllocator);
+        project.addProjectToDb(connection);
+        if (++inserted[0] % 100 == 0) {
+          connection.commit();
+        }
+      });
+      connection.commit();
+      idAllocator.close();
+
+      //re-pricing projects: batched updates of the changed column against one update each
+      List<Project> projects = new ArrayList<>();
+      for (int num = 1; num <= Math.min(rows, 1000); num++) {
+        projects.add(Project.getProjectByNum(connection, num));
+      }
+      measure("UnitOfWork re-price (" + projects.size() + " projects)", 2, 20, () -> {
+        UnitOfWork work = new UnitOfWork(connection, 500);
+        for (Project project : projects) {
+          project.setTotalFeeCents(project.getTotalFeeCents() + 100);
+          work.register(project);
+        }
+        work.flush();
+        connection.commit();
+      });
+      measure("Re-price, one UPDATE per project", 2, 20, () -> {
+        try (PreparedStatement update = connection
+            .prepareStatement("UPDATE projects SET total_fee=? WHERE proj_num=?")) {
+          for (Project project : projects) {
+            project.setTotalFeeCents(project.getTotalFeeCents() + 100);
+            update.setBigDecimal(1, Money.toDecimal(project.getTotalFeeCents()));
+            update.setInt(2, project.getNum());
+            update.executeUpdate();
+          }
+        }
+        connection.commit();
+      });
+
+      //writing the invoices of finalised projects with an amount due
+      int threads = Runtime.getRuntime().availableProcessors();
+      InvoicePipeline pipeline = new InvoicePipeline(connection, threads, 256);
+      Path invoices = Files.createTempDirectory("invoices");
+      try {
+        pipeline.writeArchive(invoices.resolve("invoices.txt"));
+        System.out.println("InvoicePipeline archive: " + pipeline.getStatistics());
+        pipeline.writeFiles(invoices.resolve("files"));
+        System.out.println("InvoicePipeline files: " + pipeline.getStatistics());
+      } finally {
+        try (Stream<Path> files = Files.walk(invoices)) {
+          files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+      }
+
+      //filling the search index and totals at startup: from the tables against from a snapshot
+      Path snapshotFile = Files.createTempFile("projects", ".snapshot");
+      try {
+        measure("ProjectSnapshot.write", 1, 3,
+            () -> ProjectSnapshot.write(connection, snapshotFile));
+        measure("Startup from the database", 1, 3, () -> {
+          ProjectSearchIndex.load(connection);
+          PortfolioAnalytics.load(connection);
+        });
+        measure("Startup from a snapshot and catch-up", 1, 3, () -> {
+          ProjectSnapshot snapshot = ProjectSnapshot.open(snapshotFile);
+          ProjectSearchIndex searchIndex = new ProjectSearchIndex();
+          PortfolioAnalytics analytics = new PortfolioAnalytics();
+          snapshot.addTo(searchIndex);
+          snapshot.addTo(analytics);
+          snapshot.catchUp(connection, searchIndex, analytics);
+        });
+      } finally {
+        Files.delete(snapshotFile);
+      }
+
+      //searching project names in memory
+      ProjectSearchIndex index = ProjectSearchIndex.load(connection);
+      measure("ProjectSearchIndex prefix search", 2000, 20000,
+          () -> index.search("house tys", 10));
+      measure("ProjectSearchIndex fuzzy search", 2000, 20000,
+          () -> index.search("Huose Tysn 17", 10));
+    }
+  }
+
+  /**
+   * Measures the open project lists before and after every finalised project is archived, and
+   * reading projects by number once some are archived. The lists are run on a database of their
+   * own, generated the same way as for {@link #databaseBenchmarks}, so both runs read the same
+   * projects and none of the rows the other benchmarks insert.
+   *
+   * @param rows number of projects in the database
+   * @throws Exception if a benchmark fails
+   */
+  private static void archiveBenchmarks(int rows) throws Exception {
+    System.out.println("\n== Archiving with " + rows + " projects");
+    String url = System.getProperty("poise.bench.url",
+        "jdbc:h2:mem:bench{rows};DB_CLOSE_DELAY=-1;MODE=MySQL")
+        .replace("{rows}", rows + "archive");
+    try (ConnectionPool pool = new ConnectionPool(url,
+        System.getProperty("poise.bench.user", "sa"),
+        System.getProperty("poise.bench.password", ""), 1);
+        Connection connection = pool.getConnection()) {
+      DatasetGenerator.createSchema(connection);
+      new DatasetGenerator(rows).generate(connection, rows);
+
+      //list views, written to a writer that discards the text
+      reportBenchmark("Projects to be completed", connection,
+          ProjectReport::projectsToComplete);
+      reportBenchmark("Projects past due", connection,
+          () -> ProjectReport.pastDueProjects(Date.valueOf(LocalDate.now())));
+
+      //the same lists once every finalised project has been archived, and reading archived
+      //projects by number
+      ProjectArchiver archiver = new ProjectArchiver(connection, 1000, null);
+      archiver.archive(Date.valueOf(LocalDate.now().plusDays(1)));
+      System.out.println("ProjectArchiver: " + archiver.getStatistics());
+      reportBenchmark("Projects to be completed, archived", connection,
+          ProjectReport::projectsToComplete);
+      reportBenchmark("Projects past due, archived", connection,
+          () -> ProjectReport.pastDueProjects(Date.valueOf(LocalDate.now())));
+      int[] next = {0};
+      measure("Stakeholder fetch, archived or not", 2000, 20000,
+          () -> Project.getProjectByNum(connection, 1 + next[0]++ % rows));
+    }
+  }
+
+  /**
+   * Reads a project and its four stakeholders with one query per table, the way the project
+   * screen used to, building the same objects as {@link Project#getProjectByNum}.
+   *
+   * @param connection database connection
+   * @param projNum    project number
+   * @return the project
+   * @throws SQLException if there are errors accessing the database
+   */
+  private static Project fetchPerTable(Connection connection, int projNum) throws SQLException {
+    try (PreparedStatement statement = connection
+        .prepareStatement("SELECT * FROM projects WHERE proj_num=?")) {
+      statement.setInt(1, projNum);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        Project project = Project.readProject(resultSet);
+        String[][] tables = {{"Structural Engineer", "structural_engineers", "struc_eng_id"},
+            {"Project Manager", "project_managers", "proj_mgr_id"},
+            {"Architect", "architects", "architect_id"}, {"Customer", "customers", "cust_id"}};
+        for (String[] table : tables) {
+          try (PreparedStatement person = connection.prepareStatement(
+              "SELECT * FROM " + table[1] + " WHERE " + table[2] + "=?")) {
+            person.setInt(1, resultSet.getInt(table[2]));
+            try (ResultSet personRow = person.executeQuery()) {
+              personRow.next();
+              project.addStakeholder(Person.createPersonFromResultSet(personRow, table[0]));
+            }
+          }
+        }
+        project.markClean();
+        return project;
+      }
+    }
+  }
+
+  /**
+   * Builds the details of a project by concatenating Strings, the way they were built before
+   * {@link ProjectRenderer}, to compare against it.
+   *
+   * @param project the project
+   * @return the details
+   */
+  private static String concatenate(Project project) {
+    String details = "\nProject details:\n-----------------\n[Project no.: " + project.getNum()
+        + "]\nName: " + project.getName() + "\nBuilding type: " + project.getBuildingType()
+        + "\nAddress: " + project.getAddress() + "\nERF no.: " + project.getErfNum()
+        + "\nTotal fee: R" + String.format("%.2f", project.getTotalFeeCents() / 100.0)
+        + "\nAmount paid: R" + String.format("%.2f", project.getAmountPaidCents() / 100.0)
+        + "\nDeadline: " + project.getDeadline();
+    details += project.getCompletionDate() != null
+        ? "\nCompletion date: " + project.getCompletionDate() + "\nFinalised: Yes"
+        : "\nFinalised: No";
+    details += "\n\nStakeholders\n-------------\n";
+    for (Person person : project.getStakeholders()) {
+      details += "[" + person.getRole() + "]\nName: " + person.getName() + "\nPhone Number: "
+          + person.getContactNumber() + "\nE-mail Address: " + person.getEmail()
+          + "\nPhysical Address: " + person.getAddress() + "\n\n";
+    }
+    return details;
+  }
+
+  /**
+   * Builds the details of the project in the current row of a ResultSet by concatenating
+   * Strings, reading the columns by name, to compare against {@link ProjectRenderer}.
+   *
+   * @param resultSet the ResultSet positioned on a project
+   * @return the details
+   * @throws SQLException if there are errors accessing the database
+   */
+  private static String concatenate(ResultSet resultSet) throws SQLException {
+    String details = "\nProject details:\n-----------------\n[Project no.: "
+        + resultSet.getInt("proj_num") + "]\nName: " + resultSet.getString("proj_name")
+        + "\nBuilding type: " + resultSet.getString("building_type")
+        + "\nAddress: " + resultSet.getString("address")
+        + "\nERF no.: " + resultSet.getString("erf_num")
+        + "\nTotal fee: R" + String.format("%.2f", resultSet.getDouble("total_fee"))
+        + "\nAmount paid: R" + String.format("%.2f", resultSet.getDouble("amount_paid"))
+        + "\nDeadline: " + resultSet.getDate("deadline");
+    Date completionDate = resultSet.getDate("completion_date");
+    return details + (completionDate != null
+        ? "\nCompletion date: " + completionDate + "\nFinalised: Yes" : "\nFinalised: No");
+  }
+
+  /**
+   * Writes a report and prints its time and the peak heap used while it ran.
+   *
+   * @param name       benchmark name
+   * @param connection database connection
+   * @param report     creates the report to run
+   * @throws Exception if the report fails
+   */
+  private static void reportBenchmark(String name, Connection connection,
+      java.util.function.Supplier<ProjectReport> report) throws Exception {
+    Writer discard = new Writer() {
+      @Override
+      public void write(char[] buffer, int offset, int length) {
+      }
+
+      @Override
+      public void flush() {
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    long[] rows = {0};
+    System.gc();
+    resetPeakHeap();
+    long before = usedHeap();
+    long time = measure(name, 1, 3, () -> rows[0] = report.get().write(connection, discard));
+    System.out.printf("  %d rows, %.0f rows/s, peak heap growth %d KB%n", rows[0],
+        rows[0] / (time / 1e9), Math.max(0, peakHeap() - before) / 1024);
+  }
+
+  /**
+   * Warms up and times an operation, printing the time and bytes allocated per operation.
+   *
+   * @param name       benchmark name
+   * @param warmup     number of untimed runs
+   * @param iterations number of timed runs
+   * @param operation  the operation
+   * @return average nanoseconds per operation
+   * @throws Exception if the operation fails
+   */
+  static long measure(String name, int warmup, int iterations, Operation operation)
+      throws Exception {
+    for (int i = 0; i < warmup; i++) {
+      operation.run();
+    }
+    long threadId = Thread.currentThread().getId();
+    long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      operation.run();
+    }
+    long perOperation = (System.nanoTime() - start) / iterations;
+    long allocated = (THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore) / iterations;
+    System.out.printf("%-48s %12d ns/op %14.1f ops/s %10d B/op%n", name, perOperation,
+        perOperation == 0 ? 0 : 1e9 / perOperation, allocated);
+    return perOperation;
+  }
+
+  /**
+   * Returns the heap in use.
+   *
+   * @return used heap in bytes
+   */
+  private static long usedHeap() {
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  /**
+   * Resets the peak usage of the heap memory pools.
+   */
+  private static void resetPeakHeap() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  /**
+   * Returns the sum of the peak usage of the heap memory pools since the last reset.
+   *
+   * @return peak heap in bytes
+   */
+  private static long peakHeap() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+}
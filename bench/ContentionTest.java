@@ -0,0 +1,121 @@
+//importing libraries
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ContentionTest has many threads add one cent to the amount paid of a few projects at once, each
+ * through a {@link UnitOfWork} that is run again when the project was changed by another thread.
+ * It prints the commits, conflicts and commits per second, and checks that no update was lost:
+ * the amounts paid must have grown by exactly the number of commits.
+ *
+ * <p>Usage: {@code java -cp <classes>:<jdbc driver> ContentionTest [threads] [hot projects]
+ * [seconds]}. The database is set the same way as for {@link Benchmarks}.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class ContentionTest {
+
+  private static final int ROWS = 1000;
+
+  /**
+   * Runs the contention test.
+   *
+   * @param args number of threads, number of projects they update and seconds to run for
+   * @throws Exception if the test cannot be run
+   */
+  public static void main(String[] args) throws Exception {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+    int hot = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+    String url = System.getProperty("poise.bench.url",
+        "jdbc:h2:mem:contention;DB_CLOSE_DELAY=-1;MODE=MySQL");
+    try (ConnectionPool pool = new ConnectionPool(url,
+        System.getProperty("poise.bench.user", "sa"),
+        System.getProperty("poise.bench.password", ""), threads)) {
+      long before;
+      try (Connection connection = pool.getConnection()) {
+        DatasetGenerator.createSchema(connection);
+        new DatasetGenerator(ROWS).generate(connection, ROWS);
+        before = sumAmountPaid(connection, hot);
+      }
+      AtomicLong commits = new AtomicLong();
+      AtomicLong conflicts = new AtomicLong();
+      AtomicLong errors = new AtomicLong();
+      long end = System.nanoTime() + seconds * 1000000000L;
+      List<Thread> workers = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        Random random = new Random(i);
+        Thread worker = new Thread(() -> {
+          while (System.nanoTime() < end) {
+            int projNum = 1 + random.nextInt(hot);
+            try (Connection connection = pool.getConnection()) {
+              //reading the project again after every conflict
+              while (true) {
+                Project project = Project.getProjectByNum(connection, projNum);
+                project.setAmountPaidCents(project.getAmountPaidCents() + 1);
+                UnitOfWork work = new UnitOfWork(connection, 1);
+                work.register(project);
+                try {
+                  work.flush();
+                  connection.commit();
+                  commits.incrementAndGet();
+                  break;
+                } catch (ConcurrentUpdateException conflict) {
+                  connection.rollback();
+                  conflicts.incrementAndGet();
+                }
+              }
+            } catch (SQLException error) {
+              errors.incrementAndGet();
+            }
+          }
+        });
+        worker.start();
+        workers.add(worker);
+      }
+      for (Thread worker : workers) {
+        worker.join();
+      }
+      long after;
+      try (Connection connection = pool.getConnection()) {
+        after = sumAmountPaid(connection, hot);
+      }
+      long lost = commits.get() - (after - before);
+      System.out.printf("%d threads on %d projects for %d seconds%n", threads, hot, seconds);
+      System.out.printf("%12s %12s %12s %10s %10s%n", "commits", "commits/s", "conflicts",
+          "errors", "lost");
+      System.out.printf("%12d %12.0f %12d %10d %10d%n", commits.get(),
+          commits.get() / (double) seconds, conflicts.get(), errors.get(), lost);
+      if (lost != 0) {
+        throw new IllegalStateException(lost + " updates were lost");
+      }
+    }
+  }
+
+  /**
+   * Adds up the amount paid of the first projects.
+   *
+   * @param connection database connection
+   * @param projects   number of projects
+   * @return the total amount paid, in cents
+   * @throws SQLException if there are errors accessing the database
+   */
+  private static long sumAmountPaid(Connection connection, int projects) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(
+        "SELECT SUM(amount_paid) FROM projects WHERE proj_num <= ?")) {
+      statement.setInt(1, projects);
+      try (ResultSet results = statement.executeQuery()) {
+        results.next();
+        return Money.fromDecimal(results.getBigDecimal(1));
+      }
+    }
+  }
+}
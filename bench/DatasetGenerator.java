@@ -0,0 +1,175 @@
+//importing libraries
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * DatasetGenerator creates the project tables in an empty database and fills them with generated
+ * projects and stakeholders for the benchmarks. The same seed always generates the same data.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class DatasetGenerator {
+
+  private static final String[] BUILDING_TYPES = {"House", "Apartment", "Store", "Office", "Mall"};
+  private static final String[] FIRST_NAMES =
+      {"Mike", "Jared", "Karen", "Sipho", "Thandi", "Pieter", "Aisha", "Naledi", "Johan", "Priya"};
+  private static final String[] SURNAMES = {"Tyson", "Goldman", "Maistry", "Dlamini", "Naidoo",
+      "van Wyk", "Mokoena", "Singh", "Botha", "Khumalo", "Pillay", "Smith"};
+  private static final String[] STREETS =
+      {"Wall Street", "Kim St", "Well St", "Main Road", "Church St", "Long St", "Beach Road"};
+
+  private final Random random;
+
+  /**
+   * Constructor to initialise a generator.
+   *
+   * @param seed seed for the generated values
+   */
+  public DatasetGenerator(long seed) {
+    this.random = new Random(seed);
+  }
+
+  /**
+   * Creates the projects and stakeholder tables, then the tables from {@link Schema}.
+   *
+   * @param connection database connection
+   * @throws SQLException if there are errors accessing the database
+   */
+  public static void createSchema(Connection connection) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      String[][] tables = {
+          {"structural_engineers", "struc_eng_"},
+          {"project_managers", "proj_mgr_"},
+          {"architects", "architect_"},
+          {"customers", "cust_"}};
+      for (String[] table : tables) {
+        String prefix = table[1];
+        statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + table[0] + " ("
+            + prefix + "id INT NOT NULL PRIMARY KEY, "
+            + prefix + "name VARCHAR(100), "
+            + prefix + "phone_num VARCHAR(20), "
+            + prefix + "email VARCHAR(100), "
+            + prefix + "address VARCHAR(150))");
+      }
+      //column order matches Project.INSERT
+      statement.executeUpdate("CREATE TABLE IF NOT EXISTS projects ("
+          + "proj_num INT NOT NULL PRIMARY KEY, "
+          + "struc_eng_id INT NOT NULL, "
+          + "proj_name VARCHAR(100), "
+          + "building_type VARCHAR(50), "
+          + "address VARCHAR(150), "
+          + "erf_num VARCHAR(20), "
+          + "total_fee DECIMAL(12,2), "
+          + "amount_paid DECIMAL(12,2), "
+          + "deadline DATE, "
+          + "completion_date DATE, "
+          + "proj_mgr_id INT NOT NULL, "
+          + "architect_id INT NOT NULL, "
+          + "cust_id INT NOT NULL)");
+      statement.executeUpdate(
+          "CREATE INDEX IF NOT EXISTS projects_name ON projects (proj_name)");
+      statement.executeUpdate(
+          "CREATE INDEX IF NOT EXISTS projects_open ON projects (completion_date, deadline)");
+    }
+    connection.commit();
+    Schema.migrate(connection);
+  }
+
+  /**
+   * Inserts projects numbered 1 to count, with one stakeholder of each role for every ten
+   * projects. About a third of the projects are finalised and about half of the open projects are
+   * past their deadline.
+   *
+   * @param connection database connection
+   * @param count      number of projects
+   * @throws SQLException if there are errors accessing the database
+   */
+  public void generate(Connection connection, int count) throws SQLException {
+    int people = Math.max(1, count / 10);
+    String[] roles = {"Structural Engineer", "Project Manager", "Architect", "Customer"};
+    for (String role : roles) {
+      //the registry keeps the statement open for the connection
+      PreparedStatement insert = StatementRegistry.prepare(connection,
+          Person.getTableName(role), StatementRegistry.INSERT);
+      for (int id = 1; id <= people; id++) {
+        Person person = newPerson(role);
+        person.setId(id);
+        person.setInsertValues(insert);
+        insert.addBatch();
+        if (id % 1000 == 0) {
+          insert.executeBatch();
+        }
+      }
+      insert.executeBatch();
+    }
+    connection.commit();
+
+    LocalDate today = LocalDate.now();
+    try (PreparedStatement insert = connection.prepareStatement(Project.INSERT)) {
+      for (int num = 1; num <= count; num++) {
+        Project project = newProject(num, today, people);
+        project.setInsertValues(insert);
+        insert.addBatch();
+        if (num % 1000 == 0) {
+          insert.executeBatch();
+          connection.commit();
+        }
+      }
+      insert.executeBatch();
+    }
+    connection.commit();
+  }
+
+  /**
+   * Creates a generated project with stakeholders that already exist.
+   *
+   * @param num    project number
+   * @param today  the current date
+   * @param people number of people in each stakeholder table
+   * @return the project
+   */
+  public Project newProject(int num, LocalDate today, int people) {
+    String surname = SURNAMES[random.nextInt(SURNAMES.length)];
+    String buildingType = BUILDING_TYPES[random.nextInt(BUILDING_TYPES.length)];
+    //amounts in cents, whole rand as before
+    long totalFee = (10000 + random.nextInt(2000000)) * 100L;
+    long amountPaid =
+        random.nextInt(3) == 0 ? totalFee : random.nextInt((int) (totalFee / 100)) * 100L;
+    Date deadline = Date.valueOf(today.plusDays(random.nextInt(730) - 365));
+    Project project = Project.createNewProject(buildingType + " " + surname + " " + num,
+        buildingType, (1 + random.nextInt(999)) + " " + STREETS[random.nextInt(STREETS.length)],
+        String.valueOf(100 + random.nextInt(90000)), totalFee, amountPaid, deadline);
+    project.setNum(num);
+    if (random.nextInt(3) == 0) {
+      project.setCompletionDate(Date.valueOf(today.minusDays(random.nextInt(365))));
+    }
+    String[] roles = {"Structural Engineer", "Project Manager", "Architect", "Customer"};
+    for (String role : roles) {
+      Person person = newPerson(role);
+      person.setId(1 + random.nextInt(people));
+      project.addStakeholder(person);
+    }
+    return project;
+  }
+
+  /**
+   * Creates a generated person.
+   *
+   * @param role role of the person
+   * @return the person
+   */
+  public Person newPerson(String role) {
+    String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+        + SURNAMES[random.nextInt(SURNAMES.length)];
+    return new Person(role, name, "0" + (710000000 + random.nextInt(89999999)),
+        name.toLowerCase().replace(' ', '.') + "@mail.com",
+        (1 + random.nextInt(999)) + " " + STREETS[random.nextInt(STREETS.length)]);
+  }
+}
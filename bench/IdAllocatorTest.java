@@ -0,0 +1,125 @@
+//importing libraries
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IdAllocatorTest has many threads create projects at once, each holding a connection of a pool
+ * that is no larger than the number of threads, so every connection is in use whenever a block of
+ * ids runs out. Blocks are kept small so they run out often. It prints the projects created per
+ * second and checks that every project number was handed out once and that every project was
+ * saved.
+ *
+ * <p>Usage: {@code java -cp <classes>:h2.jar IdAllocatorTest [threads] [projects per thread]
+ * [block size]}. The database is set the same way as for {@link Benchmarks}.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class IdAllocatorTest {
+
+  private static final int ROWS = 1000;
+
+  /**
+   * Runs the allocator test.
+   *
+   * @param args number of threads, projects each thread creates and ids reserved at a time
+   * @throws Exception if the test cannot be run
+   */
+  public static void main(String[] args) throws Exception {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+    int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+    int blockSize = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    String url = System.getProperty("poise.bench.url",
+        "jdbc:h2:mem:allocator;DB_CLOSE_DELAY=-1;MODE=MySQL");
+    //one connection for each thread, so the pool is full while they create projects
+    try (ConnectionPool pool = new ConnectionPool(url,
+        System.getProperty("poise.bench.user", "sa"),
+        System.getProperty("poise.bench.password", ""), threads)) {
+      //a short timeout, so waiting for a connection of the full pool fails the test quickly
+      pool.setBorrowTimeoutMillis(5000);
+      int before;
+      try (Connection connection = pool.getConnection()) {
+        DatasetGenerator.createSchema(connection);
+        new DatasetGenerator(ROWS).generate(connection, ROWS);
+        before = countProjects(connection);
+      }
+
+      Set<Integer> nums = ConcurrentHashMap.newKeySet();
+      AtomicLong duplicates = new AtomicLong();
+      AtomicLong errors = new AtomicLong();
+      long start = System.nanoTime();
+      try (IdAllocator idAllocator = new IdAllocator(pool, blockSize)) {
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+          DatasetGenerator generator = new DatasetGenerator(i);
+          Thread worker = new Thread(() -> {
+            try (Connection connection = pool.getConnection()) {
+              for (int created = 0; created < perThread; created++) {
+                Project project = generator.newProject(0, LocalDate.now(), ROWS / 10);
+                project.setNumForNewProject(idAllocator);
+                if (!nums.add(project.getNum())) {
+                  duplicates.incrementAndGet();
+                  continue;
+                }
+                project.addProjectToDb(connection);
+                connection.commit();
+              }
+            } catch (SQLException error) {
+              errors.incrementAndGet();
+              error.printStackTrace();
+            }
+          });
+          worker.start();
+          workers.add(worker);
+        }
+        for (Thread worker : workers) {
+          worker.join();
+        }
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+
+      int saved;
+      try (Connection connection = pool.getConnection()) {
+        saved = countProjects(connection) - before;
+      }
+      long expected = (long) threads * perThread;
+      System.out.printf("%d threads, pool of %d connections, blocks of %d ids%n", threads,
+          pool.getMaxSize(), blockSize);
+      System.out.printf("%12s %12s %12s %10s %10s%n", "created", "created/s", "saved",
+          "duplicates", "errors");
+      System.out.printf("%12d %12.0f %12d %10d %10d%n", nums.size(), nums.size() / seconds, saved,
+          duplicates.get(), errors.get());
+      if (duplicates.get() != 0 || errors.get() != 0 || nums.size() != expected
+          || saved != expected) {
+        throw new IllegalStateException("Expected " + expected + " unique project numbers, got "
+            + nums.size() + " with " + duplicates.get() + " duplicates, " + saved + " saved and "
+            + errors.get() + " errors");
+      }
+    }
+  }
+
+  /**
+   * Counts the projects in the projects table.
+   *
+   * @param connection database connection
+   * @return number of projects
+   * @throws SQLException if there are errors accessing the database
+   */
+  private static int countProjects(Connection connection) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(
+        "SELECT COUNT(*) FROM projects");
+        ResultSet results = statement.executeQuery()) {
+      results.next();
+      return results.getInt(1);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+//importing libraries
+
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RoutingTest runs a {@link ConnectionRouter} on two in-memory databases, one for the primary and
+ * one for the replica. A thread copies the amounts paid from the primary to the replica every
+ * replication interval. Writer threads each add one cent to a project and read it straight back
+ * through the router with their own session, while reader threads write the list of projects to
+ * complete over and over through the read pool.
+ *
+ * <p>It prints the commits per second with the reports on the replica and again with the reports
+ * on the primary, and checks that no writer ever read back an amount older than its own change.
+ *
+ * <p>Usage: {@code java -cp <classes>:h2.jar RoutingTest [projects] [writers] [readers]
+ * [seconds]}.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class RoutingTest {
+
+  private static final long REPLICATION_MILLIS = 100;
+
+  /**
+   * Runs the routing test.
+   *
+   * @param args number of projects, writer threads, reader threads and seconds to run each round
+   * @throws Exception if the test cannot be run
+   */
+  public static void main(String[] args) throws Exception {
+    int rows = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    int writers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    int readers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+    int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+    try (ConnectionPool primary = new ConnectionPool(
+        "jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "", writers + readers + 1);
+        ConnectionPool replica = new ConnectionPool(
+            "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "", readers + 1)) {
+      for (ConnectionPool pool : new ConnectionPool[]{primary, replica}) {
+        try (Connection connection = pool.getConnection()) {
+          DatasetGenerator.createSchema(connection);
+          new DatasetGenerator(rows).generate(connection, rows);
+        }
+      }
+      replica.setReadOnly(true);
+      replica.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+      System.out.printf("%d projects, %d writers, %d readers, %d seconds each%n", rows, writers,
+          readers, seconds);
+      System.out.printf("%-10s %12s %12s %12s%n", "reports", "commits/s", "reports/s", "stale");
+      run("replica", new ConnectionRouter(primary, replica, 4 * REPLICATION_MILLIS), primary,
+          writers, readers, seconds);
+      run("primary", new ConnectionRouter(primary, primary, 0), primary, writers, readers,
+          seconds);
+    }
+  }
+
+  /**
+   * Runs the writers and readers through a router for a number of seconds and prints the results.
+   *
+   * @param name     name of the round
+   * @param router   router for the writers and readers
+   * @param primary  pool of connections to the primary, replicated from
+   * @param writers  number of writer threads
+   * @param readers  number of reader threads
+   * @param seconds  seconds to run for
+   * @throws Exception if the round cannot be run
+   */
+  private static void run(String name, ConnectionRouter router, ConnectionPool primary,
+      int writers, int readers, int seconds) throws Exception {
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicLong commits = new AtomicLong();
+    AtomicLong reports = new AtomicLong();
+    AtomicLong stale = new AtomicLong();
+    AtomicLong errors = new AtomicLong();
+    List<Thread> threads = new ArrayList<>();
+    threads.add(new Thread(() -> {
+      while (running.get()) {
+        try {
+          replicate(primary, writers);
+          Thread.sleep(REPLICATION_MILLIS);
+        } catch (SQLException error) {
+          errors.incrementAndGet();
+        } catch (InterruptedException error) {
+          return;
+        }
+      }
+    }));
+    for (int i = 0; i < writers; i++) {
+      int projNum = i + 1;
+      threads.add(new Thread(() -> {
+        ConnectionRouter.Session session = new ConnectionRouter.Session();
+        while (running.get()) {
+          try {
+            long written;
+            try (Connection connection = router.getWriteConnection(session)) {
+              Project project = Project.getProjectByNum(connection, projNum);
+              project.setAmountPaidCents(project.getAmountPaidCents() + 1);
+              UnitOfWork work = new UnitOfWork(connection, 1);
+              work.register(project);
+              work.flush();
+              connection.commit();
+              written = project.getAmountPaidCents();
+            }
+            commits.incrementAndGet();
+            //the session must see its own change, even if the replica has not caught up
+            try (Connection connection = router.getReadConnection(session)) {
+              if (Project.getProjectByNum(connection, projNum).getAmountPaidCents() < written) {
+                stale.incrementAndGet();
+              }
+            }
+          } catch (SQLException error) {
+            errors.incrementAndGet();
+          }
+        }
+      }));
+    }
+    for (int i = 0; i < readers; i++) {
+      threads.add(new Thread(() -> {
+        while (running.get()) {
+          try (Connection connection = router.getReadConnection(null)) {
+            ProjectReport.projectsToComplete().write(connection, new StringWriter());
+            reports.incrementAndGet();
+          } catch (Exception error) {
+            errors.incrementAndGet();
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    Thread.sleep(seconds * 1000L);
+    running.set(false);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    System.out.printf("%-10s %12.0f %12.1f %12d%n", name, commits.get() / (double) seconds,
+        reports.get() / (double) seconds, stale.get());
+    System.out.println(router.getStatistics());
+    if (errors.get() > 0) {
+      throw new IllegalStateException(errors.get() + " errors");
+    }
+    if (stale.get() > 0) {
+      throw new IllegalStateException(stale.get() + " writers did not read their own change");
+    }
+  }
+
+  /**
+   * Copies the amounts paid and versions of the first projects from the primary to the replica.
+   *
+   * @param primary  pool of connections to the primary
+   * @param projects number of projects to copy
+   * @throws SQLException if there are errors accessing the databases
+   */
+  private static void replicate(ConnectionPool primary, int projects) throws SQLException {
+    //the replica pool is read-only, so the copy uses its own connection
+    try (Connection from = primary.getConnection();
+        Connection to = DriverManager.getConnection(
+            "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "");
+        PreparedStatement select = from.prepareStatement(
+            "SELECT proj_num, amount_paid, version FROM projects WHERE proj_num <= ?");
+        PreparedStatement update = to.prepareStatement(
+            "UPDATE projects SET amount_paid=?, version=? WHERE proj_num=?")) {
+      select.setInt(1, projects);
+      try (ResultSet results = select.executeQuery()) {
+        while (results.next()) {
+          update.setBigDecimal(1, results.getBigDecimal(2));
+          update.setObject(2, results.getObject(3));
+          update.setInt(3, results.getInt(1));
+          update.addBatch();
+        }
+      }
+      update.executeBatch();
+    }
+  }
+}
@@ -0,0 +1,129 @@
+//importing libraries
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * SearchIndexTest fills a {@link ProjectSearchIndex} with generated projects and searches for
+ * misspelt names: each search is the name of a project with two letters next to each other
+ * swapped. It prints how many of the projects were found in the first ten matches, the search
+ * times and the memory the index uses, and fails if a project was not found or the 99th
+ * percentile search takes a millisecond or more. Each search is timed a few times and its median
+ * is used, so a garbage collection or compilation running on the same processor is not charged
+ * to one search.
+ *
+ * <p>Usage: {@code java -cp <classes> SearchIndexTest [projects] [searches]}. No database is
+ * needed.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class SearchIndexTest {
+
+  private static final int LIMIT = 10;
+  private static final int WARM_UP_ROUNDS = 20;
+  private static final int TIMED_ROUNDS = 5;
+
+  /**
+   * Runs the search index test.
+   *
+   * @param args number of projects and number of misspelt searches
+   */
+  public static void main(String[] args) {
+    int rows = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+    int searches = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+    DatasetGenerator generator = new DatasetGenerator(rows);
+    LocalDate today = LocalDate.now();
+    String[] names = new String[rows + 1];
+    long heapBefore = usedHeap();
+    ProjectSearchIndex index = new ProjectSearchIndex();
+    for (int num = 1; num <= rows; num++) {
+      Project project = generator.newProject(num, today, 1);
+      names[num] = project.getName();
+      index.put(project);
+    }
+    long indexBytes = usedHeap() - heapBefore;
+
+    Random random = new Random(searches);
+    String[] queries = new String[searches];
+    int[] expected = new int[searches];
+    for (int i = 0; i < searches; i++) {
+      expected[i] = 1 + random.nextInt(rows);
+      queries[i] = swapLetters(names[expected[i]], random);
+    }
+    //warming up, then timing each search in every round
+    for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+      for (String query : queries) {
+        index.search(query, LIMIT);
+      }
+    }
+    long[][] rounds = new long[searches][TIMED_ROUNDS];
+    int found = 0;
+    for (int round = 0; round < TIMED_ROUNDS; round++) {
+      for (int i = 0; i < searches; i++) {
+        long start = System.nanoTime();
+        List<ProjectSearchIndex.Match> matches = index.search(queries[i], LIMIT);
+        rounds[i][round] = System.nanoTime() - start;
+        for (ProjectSearchIndex.Match match : matches) {
+          if (round == 0 && match.getProjNum() == expected[i]) {
+            found++;
+            break;
+          }
+        }
+      }
+    }
+    long[] nanos = new long[searches];
+    for (int i = 0; i < searches; i++) {
+      Arrays.sort(rounds[i]);
+      nanos[i] = rounds[i][TIMED_ROUNDS / 2];
+    }
+    Arrays.sort(nanos);
+    double p50 = nanos[searches / 2] / 1e6;
+    double p99 = nanos[Math.min(searches - 1, (int) Math.ceil(searches * 0.99) - 1)] / 1e6;
+    System.out.printf("%d projects, index uses about %d MB%n", rows, indexBytes >> 20);
+    System.out.printf("%10s %10s %10s %10s %10s%n", "searches", "found", "p50 ms", "p99 ms",
+        "max ms");
+    System.out.printf(Locale.ROOT, "%10d %10d %10.3f %10.3f %10.3f%n", searches, found, p50, p99,
+        nanos[searches - 1] / 1e6);
+    if (found != searches || p99 >= 1) {
+      throw new IllegalStateException("Found " + found + " of " + searches
+          + " misspelt projects with a 99th percentile of " + p99 + "ms");
+    }
+  }
+
+  /**
+   * Swaps two different letters next to each other in a name.
+   *
+   * @param name   the name
+   * @param random random numbers
+   * @return the misspelt name
+   */
+  private static String swapLetters(String name, Random random) {
+    char[] letters = name.toCharArray();
+    while (true) {
+      int position = random.nextInt(letters.length - 1);
+      if (letters[position] != letters[position + 1]) {
+        char swapped = letters[position];
+        letters[position] = letters[position + 1];
+        letters[position + 1] = swapped;
+        return new String(letters);
+      }
+    }
+  }
+
+  /**
+   * Returns the heap in use after a garbage collection.
+   *
+   * @return bytes in use
+   */
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
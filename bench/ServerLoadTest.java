@@ -0,0 +1,166 @@
+//importing libraries
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ServerLoadTest starts a {@link ProjectServer} on an embedded database filled by
+ * {@link DatasetGenerator} and sends it requests from more and more clients at once, printing the
+ * requests per second and latency for each number of clients. Nine in ten requests get a project
+ * by number and the rest update the amount paid of a project.
+ *
+ * <p>Usage: {@code java -cp <classes>:<jdbc driver> ServerLoadTest [projects] [seconds]
+ * [client counts]}, e.g. {@code ServerLoadTest 100000 10 1 2 4 8 16 32 64}. The database is set
+ * the same way as for {@link Benchmarks}, and the pool size with poise.bench.poolSize.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class ServerLoadTest {
+
+  /**
+   * Runs the load test.
+   *
+   * @param args number of projects, seconds for each client count and the client counts
+   * @throws Exception if the test cannot be run
+   */
+  public static void main(String[] args) throws Exception {
+    int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    List<Integer> clientCounts = new ArrayList<>();
+    for (int i = 2; i < args.length; i++) {
+      clientCounts.add(Integer.parseInt(args[i]));
+    }
+    if (clientCounts.isEmpty()) {
+      for (int clients = 1; clients <= 32; clients *= 2) {
+        clientCounts.add(clients);
+      }
+    }
+    String url = System.getProperty("poise.bench.url",
+        "jdbc:h2:mem:bench{rows};DB_CLOSE_DELAY=-1;MODE=MySQL").replace("{rows}", "" + rows);
+    try (ConnectionPool pool = new ConnectionPool(url,
+        System.getProperty("poise.bench.user", "sa"),
+        System.getProperty("poise.bench.password", ""),
+        Integer.parseInt(System.getProperty("poise.bench.poolSize", "16")))) {
+      ProjectSearchIndex searchIndex;
+      PortfolioAnalytics analytics;
+      try (Connection connection = pool.getConnection()) {
+        DatasetGenerator.createSchema(connection);
+        new DatasetGenerator(rows).generate(connection, rows);
+        searchIndex = ProjectSearchIndex.load(connection);
+        analytics = PortfolioAnalytics.load(connection);
+      }
+      IdAllocator idAllocator = new IdAllocator(pool, 100);
+      //no project is finalised, so nothing is exported
+      Path completed = Files.createTempFile("completed", ".txt");
+      completed.toFile().deleteOnExit();
+      ProjectServer server = new ProjectServer(pool, idAllocator,
+          new ProjectCache(1000, 300), searchIndex, analytics,
+          new DeadlineScheduler(LocalDate.now(), new int[0]),
+          new CompletedProjectsExporter(completed, 100));
+      String base = "http://localhost:" + server.start(0) + "/projects/";
+      System.out.printf("%d projects, pool of %d connections, %d seconds per run%n", rows,
+          pool.getMaxSize(), seconds);
+      System.out.printf("%8s %12s %12s %10s %10s %10s%n", "clients", "requests", "requests/s",
+          "p50 ms", "p99 ms", "errors");
+      try {
+        //warming up the server and the database
+        run(base, rows, 4, 2);
+        for (int clients : clientCounts) {
+          run(base, rows, clients, seconds);
+        }
+      } finally {
+        server.stop();
+        idAllocator.close();
+      }
+    }
+  }
+
+  /**
+   * Sends requests from a number of clients at once for a time and prints the results.
+   *
+   * @param base    URL of the projects
+   * @param rows    number of projects
+   * @param clients number of clients
+   * @param seconds seconds to send requests for
+   * @throws InterruptedException if the test is interrupted
+   */
+  private static void run(String base, int rows, int clients, int seconds)
+      throws InterruptedException {
+    Metrics.Timer timer = new Metrics.Timer();
+    AtomicLong errors = new AtomicLong();
+    long end = System.nanoTime() + seconds * 1000000000L;
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < clients; i++) {
+      Random random = new Random(i);
+      Thread thread = new Thread(() -> {
+        while (System.nanoTime() < end) {
+          int projNum = 1 + random.nextInt(rows);
+          long start = System.nanoTime();
+          try {
+            int status = random.nextInt(10) == 0
+                ? send(base + projNum, "POST", "{\"amountPaid\":" + random.nextInt(10000) + "}")
+                : send(base + projNum, "GET", null);
+            if (status >= 400) {
+              errors.incrementAndGet();
+            }
+          } catch (IOException error) {
+            errors.incrementAndGet();
+          }
+          timer.record(System.nanoTime() - start, 1);
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    System.out.printf("%8d %12d %12.0f %10.3f %10.3f %10d%n", clients, timer.getCount(),
+        timer.getCount() / (double) seconds, timer.getP50Millis(), timer.getP99Millis(),
+        errors.get());
+  }
+
+  /**
+   * Sends a request and reads the whole response, so the connection can be kept alive.
+   *
+   * @param url    URL of the request
+   * @param method HTTP method
+   * @param body   JSON body, or null for none
+   * @return HTTP status of the response
+   * @throws IOException if the request fails
+   */
+  private static int send(String url, String method, String body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    connection.setRequestMethod(method);
+    if (body != null) {
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "application/json");
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    int status = connection.getResponseCode();
+    InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+    if (in != null) {
+      byte[] buffer = new byte[8192];
+      while (in.read(buffer) != -1) {
+        //reading to the end
+      }
+      in.close();
+    }
+    return status;
+  }
+}
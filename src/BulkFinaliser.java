@@ -0,0 +1,266 @@
+//importing libraries
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * BulkFinaliser finalises every open project that matches a selection, such as a list of project
+ * numbers, a building type or all fully paid projects, and writes an invoice for each one.
+ *
+ * <p>The projects are read a chunk at a time in project number order, each with its customer in
+ * the same joined query. The completion dates of a chunk are set with one batch of updates and
+ * committed before the invoices of the chunk are written, so locks are only held for a chunk. A
+ * project that was changed by someone else after it was read is skipped.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class BulkFinaliser {
+
+  //sets the completion date if the project has not changed since it was read
+  private static final String FINALISE = "UPDATE projects SET completion_date=?,"
+      + " version=version+1 WHERE proj_num=? AND version=? AND completion_date IS NULL";
+
+  private final Connection connection;
+  private final int chunkSize;
+
+  private long finalisedCount = 0;
+  private long invoiceCount = 0;
+  //numbers of the projects skipped because they were changed by someone else
+  private final List<Integer> skippedProjects = new ArrayList<>();
+  //in cents
+  private long amountDue = 0;
+  private long elapsedNanos = 0;
+
+  /**
+   * Constructor to initialise a bulk finaliser.
+   *
+   * @param connection database connection, with auto-commit disabled
+   * @param chunkSize  number of projects to finalise in each transaction
+   */
+  public BulkFinaliser(Connection connection, int chunkSize) {
+    this.connection = connection;
+    this.chunkSize = Math.max(1, chunkSize);
+  }
+
+  /**
+   * The open projects to finalise.
+   */
+  public static final class Selection {
+
+    private final String condition;
+    private final List<Object> parameters;
+
+    /**
+     * Constructor to initialise a selection.
+     *
+     * @param condition  SQL condition on the projects, with ? for each parameter
+     * @param parameters values of the parameters
+     */
+    private Selection(String condition, List<Object> parameters) {
+      this.condition = condition;
+      this.parameters = parameters;
+    }
+
+    /**
+     * Selects projects by number.
+     *
+     * @param projNums the project numbers
+     * @return the selection
+     * @throws IllegalArgumentException if there are no project numbers
+     */
+    public static Selection projects(List<Integer> projNums) {
+      if (projNums.isEmpty()) {
+        throw new IllegalArgumentException("No project numbers given.");
+      }
+      StringBuilder condition = new StringBuilder("p.proj_num IN (");
+      for (int i = 0; i < projNums.size(); i++) {
+        condition.append(i == 0 ? "?" : ",?");
+      }
+      return new Selection(condition.append(')').toString(), new ArrayList<>(projNums));
+    }
+
+    /**
+     * Selects projects of a building type.
+     *
+     * @param buildingType the building type
+     * @return the selection
+     */
+    public static Selection buildingType(String buildingType) {
+      return new Selection("p.building_type=?",
+          Collections.<Object>singletonList(buildingType));
+    }
+
+    /**
+     * Selects projects whose total fee has been paid.
+     *
+     * @return the selection
+     */
+    public static Selection fullyPaid() {
+      return new Selection("p.amount_paid>=p.total_fee", Collections.emptyList());
+    }
+
+    /**
+     * Reads a selection from the command line: "paid" for fully paid projects, "type=" followed
+     * by a building type, or a comma separated list of project numbers.
+     *
+     * @param text the selection
+     * @return the selection
+     * @throws IllegalArgumentException if the selection cannot be read
+     */
+    public static Selection parse(String text) {
+      if (text.equalsIgnoreCase("paid")) {
+        return fullyPaid();
+      }
+      if (text.startsWith("type=")) {
+        return buildingType(text.substring("type=".length()));
+      }
+      List<Integer> projNums = new ArrayList<>();
+      for (String projNum : text.split(",")) {
+        if (!projNum.trim().isEmpty()) {
+          projNums.add(Integer.parseInt(projNum.trim()));
+        }
+      }
+      return projects(projNums);
+    }
+  }
+
+  /**
+   * Finalises the open projects of a selection, with today as their completion date, and writes
+   * their invoices.
+   *
+   * @param selection the projects to finalise
+   * @param out       writer for the invoices
+   * @return number of projects finalised
+   * @throws IOException  if the invoices cannot be written
+   * @throws SQLException if there are errors accessing the database, the current chunk is rolled
+   *                      back
+   */
+  public long finalise(Selection selection, Writer out) throws IOException, SQLException {
+    long start = System.nanoTime();
+    Date completionDate = Date.valueOf(LocalDate.now());
+    //reading after the last project number of the previous chunk, so finalised or skipped
+    //projects are not read again
+    String query = Project.SELECT_WITH_CUSTOMER + " WHERE p.completion_date IS NULL"
+        + " AND p.proj_num>? AND " + selection.condition + " ORDER BY p.proj_num LIMIT ?";
+    try (PreparedStatement select = connection.prepareStatement(query);
+        PreparedStatement update = connection.prepareStatement(FINALISE)) {
+      int lastProjNum = Integer.MIN_VALUE;
+      while (true) {
+        List<Project> chunk = readChunk(select, selection, lastProjNum);
+        if (chunk.isEmpty()) {
+          break;
+        }
+        lastProjNum = chunk.get(chunk.size() - 1).getNum();
+        for (Project project : finaliseChunk(update, chunk, completionDate)) {
+          out.write(project.getInvoice());
+          out.write("\n");
+          if (project.getAmountDueCents() > 0) {
+            invoiceCount++;
+            amountDue += project.getAmountDueCents();
+          }
+        }
+        out.flush();
+      }
+    } catch (SQLException error) {
+      connection.rollback();
+      throw error;
+    } finally {
+      elapsedNanos = System.nanoTime() - start;
+    }
+    return finalisedCount;
+  }
+
+  /**
+   * Reads the next chunk of open projects of a selection, with their customers.
+   *
+   * @param select      statement prepared from the chunk query
+   * @param selection   the projects to finalise
+   * @param lastProjNum project number of the last project of the previous chunk
+   * @return the projects, in project number order
+   * @throws SQLException if there are errors accessing the database
+   */
+  private List<Project> readChunk(PreparedStatement select, Selection selection,
+      int lastProjNum) throws SQLException {
+    select.setInt(1, lastProjNum);
+    int parameter = 2;
+    for (Object value : selection.parameters) {
+      select.setObject(parameter++, value);
+    }
+    select.setInt(parameter, chunkSize);
+    List<Project> chunk = new ArrayList<>(chunkSize);
+    try (ResultSet resultSet = select.executeQuery()) {
+      while (resultSet.next()) {
+        chunk.add(Project.createProjectWithCustomer(resultSet));
+      }
+    }
+    return chunk;
+  }
+
+  /**
+   * Sets the completion date of a chunk of projects with one batch of updates and commits it.
+   *
+   * @param update         statement prepared from {@link #FINALISE}
+   * @param chunk          the projects
+   * @param completionDate the completion date
+   * @return the projects that were finalised
+   * @throws SQLException if there are errors accessing the database
+   */
+  private List<Project> finaliseChunk(PreparedStatement update, List<Project> chunk,
+      Date completionDate) throws SQLException {
+    for (Project project : chunk) {
+      update.setDate(1, completionDate);
+      update.setInt(2, project.getNum());
+      update.setInt(3, project.getVersion());
+      update.addBatch();
+    }
+    int[] counts = update.executeBatch();
+    connection.commit();
+    List<Project> finalised = new ArrayList<>(chunk.size());
+    for (int i = 0; i < chunk.size(); i++) {
+      Project project = chunk.get(i);
+      //a project changed by someone else since it was read is left as it is
+      if (counts[i] == 0) {
+        skippedProjects.add(project.getNum());
+        continue;
+      }
+      project.setCompletionDate(completionDate);
+      project.setVersion(project.getVersion() + 1);
+      project.markClean();
+      finalised.add(project);
+      finalisedCount++;
+    }
+    return finalised;
+  }
+
+  /**
+   * Returns the results of the last run.
+   *
+   * @return projects finalised, invoices written and time taken
+   */
+  public String getStatistics() {
+    double seconds = elapsedNanos / 1e9;
+    return "Finalised " + finalisedCount + " projects in " + String.format("%.2f", seconds)
+        + "s, wrote " + invoiceCount + " invoices for R" + Money.format(amountDue)
+        + " due, skipped " + skippedProjects.size() + " projects changed by someone else.";
+  }
+
+  /**
+   * Returns the numbers of the projects skipped in the last run because they were changed by
+   * someone else after they were read.
+   *
+   * @return the skipped project numbers
+   */
+  public List<Integer> getSkippedProjects() {
+    return Collections.unmodifiableList(skippedProjects);
+  }
+}
@@ -0,0 +1,344 @@
+//importing libraries
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * CompletedProjectsExporter adds finalised projects to the "Completed Projects" file, in the same
+ * layout as Projects.txt, so the file can be imported again. Each export only reads and appends
+ * the projects finalised since the one before, so it takes as long as the number of new projects
+ * however long the file has grown.
+ *
+ * <p>A checkpoint file next to the export keeps the length of the export, the latest completion
+ * date exported and the projects exported with that date. The next export reads the projects
+ * with that completion date or a later one and skips the ones already exported. Projects are
+ * appended a group at a time: the group is written, forced to the disk and then the checkpoint
+ * is replaced. If the program stops part way through a group, the next export cuts the file back
+ * to the checkpoint and writes the group again, so no project is written twice or left out.
+ *
+ * <p>A project whose completion date is changed to a date before the checkpoint after it was
+ * finalised is not exported again. If there is no checkpoint, or the file is shorter than the
+ * checkpoint, the file is kept as it is: the projects whose numbers start one of its lines are
+ * skipped, and every other finalised project is appended after them.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class CompletedProjectsExporter {
+
+  private static final String HEADER = "Project#, Name, Building type, Address, ERF #,"
+      + " Total fee, Amount paid, Deadline, Finalised, Completion Date, Architect, Contractor,"
+      + " Customer";
+
+  private final Path file;
+  private final Path checkpointFile;
+  private final int syncEvery;
+
+  private long exportedCount = 0;
+  private long syncCount = 0;
+  private long elapsedNanos = 0;
+
+  /**
+   * Where the last export stopped.
+   */
+  private static final class Checkpoint {
+
+    //length of the file once the exported projects were forced to the disk
+    private long length = 0;
+    //latest completion date exported, null if nothing has been exported
+    private LocalDate date = null;
+    //projects exported with the latest completion date
+    private final Set<Integer> projects = new HashSet<>();
+  }
+
+  /**
+   * Constructor to initialise an exporter.
+   *
+   * @param file      the export file, its checkpoint is kept in the same place with
+   *                  ".checkpoint" added to the name
+   * @param syncEvery number of projects appended before the file is forced to the disk
+   */
+  public CompletedProjectsExporter(Path file, int syncEvery) {
+    this.file = file;
+    this.checkpointFile = file.resolveSibling(file.getFileName() + ".checkpoint");
+    this.syncEvery = Math.max(1, syncEvery);
+  }
+
+  /**
+   * Appends the projects finalised since the last export, archived or not. The file is locked
+   * while the export runs, so another program exporting to it waits.
+   *
+   * @param connection database connection
+   * @return number of projects appended
+   * @throws SQLException if there are errors accessing the database
+   * @throws IOException  if the file or checkpoint cannot be read or written
+   */
+  public synchronized long export(Connection connection) throws SQLException, IOException {
+    long start = System.nanoTime();
+    long exported = 0;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      FileLock lock = channel.lock();
+      try {
+        Checkpoint checkpoint = readCheckpoint();
+        StringBuilder text = new StringBuilder(256 * syncEvery);
+        //projects already in a file written without this exporter's checkpoint
+        Set<Integer> listed = new HashSet<>();
+        boolean started = checkpoint == null || channel.size() < checkpoint.length;
+        //each project appended starts with a line break, unless the file already ends with one
+        boolean lineStarted = false;
+        if (started) {
+          //reading every finalised project again, keeping the lines already in the file
+          checkpoint = new Checkpoint();
+          checkpoint.length = readListed(channel, listed);
+          if (checkpoint.length == 0) {
+            text.append(HEADER);
+          } else {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, checkpoint.length - 1);
+            lineStarted = last.get(0) == '\n';
+          }
+        } else {
+          //dropping anything written after the checkpoint, it is written again below
+          channel.truncate(checkpoint.length);
+        }
+        channel.position(checkpoint.length);
+        String condition = checkpoint.date == null ? " WHERE p.completion_date IS NOT NULL"
+            : " WHERE p.completion_date>=?";
+        try (PreparedStatement statement = connection.prepareStatement(
+            ProjectArchiver.withArchive(Project.SELECT_WITH_STAKEHOLDERS + condition)
+                + " ORDER BY completion_date, proj_num",
+            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+          statement.setFetchSize(1000);
+          if (checkpoint.date != null) {
+            //once for the projects table and once for the archive
+            statement.setDate(1, Date.valueOf(checkpoint.date));
+            statement.setDate(2, Date.valueOf(checkpoint.date));
+          }
+          try (ResultSet resultSet = statement.executeQuery()) {
+            int pending = 0;
+            Project project;
+            while ((project = Project.createProjectFromResultSet(resultSet)) != null) {
+              LocalDate date = project.getCompletionDate().toLocalDate();
+              if (!date.equals(checkpoint.date)) {
+                checkpoint.date = date;
+                checkpoint.projects.clear();
+              } else if (checkpoint.projects.contains(project.getNum())) {
+                continue;
+              }
+              checkpoint.projects.add(project.getNum());
+              if (listed.contains(project.getNum())) {
+                continue;
+              }
+              if (!lineStarted) {
+                text.append('\n');
+              }
+              lineStarted = false;
+              appendLine(text, project);
+              exported++;
+              if (++pending == syncEvery) {
+                sync(channel, text, checkpoint);
+                pending = 0;
+              }
+            }
+          }
+        }
+        //a new checkpoint is saved even with nothing appended, so the file is not read again
+        if (text.length() > 0 || started) {
+          sync(channel, text, checkpoint);
+        }
+      } finally {
+        lock.release();
+      }
+    } finally {
+      exportedCount += exported;
+      elapsedNanos += System.nanoTime() - start;
+    }
+    return exported;
+  }
+
+  /**
+   * Appends a group of projects, forces them to the disk and then saves the checkpoint.
+   *
+   * @param channel    the export file
+   * @param text       the group of projects, emptied once written
+   * @param checkpoint the checkpoint after the group
+   * @throws IOException if the file or checkpoint cannot be written
+   */
+  private void sync(FileChannel channel, StringBuilder text, Checkpoint checkpoint)
+      throws IOException {
+    ByteBuffer bytes = StandardCharsets.UTF_8.encode(text.toString());
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+    channel.force(false);
+    text.setLength(0);
+    checkpoint.length = channel.position();
+    writeCheckpoint(checkpoint);
+    syncCount++;
+  }
+
+  /**
+   * Reads the project numbers that start the lines of an export file written without a
+   * checkpoint, such as one kept by hand or by an older version.
+   *
+   * @param channel the export file
+   * @param listed  set the project numbers are added to
+   * @return the length of the file
+   * @throws IOException if the file cannot be read
+   */
+  private static long readListed(FileChannel channel, Set<Integer> listed) throws IOException {
+    long size = channel.size();
+    if (size == 0) {
+      return 0;
+    }
+    channel.position(0);
+    //not closed, as that would close the channel
+    BufferedReader reader = new BufferedReader(Channels.newReader(channel,
+        StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE), -1));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      int end = 0;
+      while (end < line.length() && end < 9 && Character.isDigit(line.charAt(end))) {
+        end++;
+      }
+      //the header and any other line that does not start with a project number
+      if (end > 0 && (end == line.length() || line.charAt(end) == ',')) {
+        listed.add(Integer.parseInt(line.substring(0, end)));
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Reads the checkpoint file.
+   *
+   * @return the checkpoint, or null if there is none
+   * @throws IOException if the checkpoint cannot be read
+   */
+  private Checkpoint readCheckpoint() throws IOException {
+    if (!Files.exists(checkpointFile)) {
+      return null;
+    }
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(checkpointFile)) {
+      properties.load(in);
+    }
+    Checkpoint checkpoint = new Checkpoint();
+    try {
+      checkpoint.length = Long.parseLong(properties.getProperty("length", "0"));
+      String date = properties.getProperty("date", "");
+      checkpoint.date = date.isEmpty() ? null : LocalDate.parse(date);
+      for (String projNum : properties.getProperty("projects", "").split(",")) {
+        if (!projNum.isEmpty()) {
+          checkpoint.projects.add(Integer.parseInt(projNum));
+        }
+      }
+    } catch (RuntimeException error) {
+      throw new IOException("Damaged checkpoint: " + checkpointFile, error);
+    }
+    return checkpoint;
+  }
+
+  /**
+   * Replaces the checkpoint file, through a temporary file so it is never half written.
+   *
+   * @param checkpoint the checkpoint
+   * @throws IOException if the checkpoint cannot be written
+   */
+  private void writeCheckpoint(Checkpoint checkpoint) throws IOException {
+    StringBuilder text = new StringBuilder(64 + checkpoint.projects.size() * 8);
+    text.append("length=").append(checkpoint.length)
+        .append("\ndate=").append(checkpoint.date == null ? "" : checkpoint.date)
+        .append("\nprojects=");
+    for (int projNum : checkpoint.projects) {
+      text.append(projNum).append(',');
+    }
+    text.append('\n');
+    Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ByteBuffer bytes = StandardCharsets.ISO_8859_1.encode(text.toString());
+      while (bytes.hasRemaining()) {
+        channel.write(bytes);
+      }
+      channel.force(false);
+    }
+    try {
+      Files.move(temporary, checkpointFile, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException error) {
+      Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Appends a finalised project in the Projects.txt layout.
+   *
+   * @param text    builder to append to
+   * @param project the project, with its stakeholders
+   * @return the builder
+   */
+  static StringBuilder appendLine(StringBuilder text, Project project) {
+    text.append(project.getNum())
+        .append(", ").append(ProjectReport.clean(project.getName()))
+        .append(", ").append(ProjectReport.clean(project.getBuildingType()))
+        .append(", ").append(ProjectReport.clean(project.getAddress()))
+        .append(", ").append(ProjectReport.clean(project.getErfNum()))
+        .append(", R");
+    Money.append(text, project.getTotalFeeCents()).append(", R");
+    Money.append(text, project.getAmountPaidCents())
+        .append(", ").append(project.getDeadline())
+        .append(", Yes, ").append(project.getCompletionDate());
+    //the Contractor column holds the project manager, as in Projects.txt
+    appendPerson(text.append(", "), project.getStakeholder("Architect"));
+    appendPerson(text.append(", "), project.getStakeholder("Project Manager"));
+    return appendPerson(text.append(", "), project.getStakeholder("Customer"));
+  }
+
+  /**
+   * Appends a stakeholder as a bracketed group of their details.
+   *
+   * @param text   builder to append to
+   * @param person the stakeholder
+   * @return the builder
+   */
+  private static StringBuilder appendPerson(StringBuilder text, Person person) {
+    return text.append('[').append(ProjectReport.clean(person.getName()))
+        .append(',').append(ProjectReport.clean(person.getContactNumber()))
+        .append(',').append(ProjectReport.clean(person.getEmail()))
+        .append(',').append(ProjectReport.clean(person.getAddress())).append(']');
+  }
+
+  /**
+   * Returns the number of projects exported and the time taken so far.
+   *
+   * @return the statistics
+   */
+  public String getStatistics() {
+    return "Exported " + exportedCount + " projects to " + file + " with " + syncCount
+        + " disk syncs in " + String.format("%.2f", elapsedNanos / 1e9) + "s.";
+  }
+}
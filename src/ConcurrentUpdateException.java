@@ -0,0 +1,39 @@
+//importing libraries
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ConcurrentUpdateException is thrown when changes cannot be saved because the rows were changed
+ * by someone else after they were read. The transaction should be rolled back, and the rows read
+ * again before the changes are made again.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class ConcurrentUpdateException extends SQLException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final List<String> rows;
+
+  /**
+   * Constructor to initialise the exception.
+   *
+   * @param rows descriptions of the rows that were changed by someone else
+   */
+  public ConcurrentUpdateException(List<String> rows) {
+    super("Changed by someone else since it was read: " + String.join(", ", rows));
+    this.rows = new ArrayList<>(rows);
+  }
+
+  /**
+   * Returns the rows that were changed by someone else.
+   *
+   * @return descriptions of the rows, such as "project 12"
+   */
+  public List<String> getRows() {
+    return rows;
+  }
+}
@@ -0,0 +1,536 @@
+//importing libraries
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConnectionPool hands out database connections to the parts of the program that access the
+ * database. Connections are validated before they are borrowed, idle connections are closed after
+ * a timeout and connections held for too long are reported as possible leaks. Closing a borrowed
+ * connection returns it to the pool.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class ConnectionPool implements AutoCloseable {
+
+  private final String url;
+  private final String user;
+  private final String password;
+  private final int maxSize;
+  private final Semaphore permits;
+  private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+  private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+  private final ScheduledExecutorService housekeeper;
+  private volatile boolean closed = false;
+
+  private long borrowTimeoutMillis = 30000;
+  private long idleTimeoutMillis = 600000;
+  private long leakThresholdMillis = 300000;
+  private int validationTimeoutSeconds = 2;
+  private volatile boolean readOnly = false;
+  //isolation level of new connections, -1 for the driver's default
+  private volatile int transactionIsolation = -1;
+
+  //per-borrow timing statistics
+  private final AtomicLong borrowCount = new AtomicLong();
+  private final AtomicLong totalWaitNanos = new AtomicLong();
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+  private final AtomicLong returnCount = new AtomicLong();
+  private final AtomicLong totalHoldNanos = new AtomicLong();
+  private final AtomicLong createdCount = new AtomicLong();
+  private final AtomicLong evictedCount = new AtomicLong();
+  private final AtomicLong invalidCount = new AtomicLong();
+  private final AtomicLong leakCount = new AtomicLong();
+
+  /**
+   * Constructor to initialise a connection pool for a database.
+   *
+   * @param url      JDBC url of the database
+   * @param user     database user
+   * @param password password for the database user
+   * @param maxSize  maximum number of connections open at the same time
+   */
+  public ConnectionPool(String url, String user, String password, int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Pool size must be at least 1.");
+    }
+    this.url = url;
+    this.user = user;
+    this.password = password;
+    this.maxSize = maxSize;
+    this.permits = new Semaphore(maxSize, true);
+    this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.housekeeper.scheduleWithFixedDelay(this::houseKeep, 30, 30, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Borrows a connection from the pool. The connection is returned to the pool when it is closed.
+   *
+   * @return a validated connection with auto-commit disabled
+   * @throws SQLException if the pool is closed, no connection becomes available in time or a new
+   *                      connection cannot be opened
+   */
+  public Connection getConnection() throws SQLException {
+    return getConnection(null);
+  }
+
+  /**
+   * Borrows a connection from the pool that runs a callback each time it commits. The connection
+   * is returned to the pool when it is closed.
+   *
+   * @param onCommit called after each successful commit, or null for none
+   * @return a validated connection with auto-commit disabled
+   * @throws SQLException if the pool is closed, no connection becomes available in time or a new
+   *                      connection cannot be opened
+   */
+  public Connection getConnection(Runnable onCommit) throws SQLException {
+    if (closed) {
+      throw new SQLException("Connection pool is closed.");
+    }
+    long start = System.nanoTime();
+    try {
+      if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        throw new SQLException(
+            "Timed out waiting for a database connection after " + borrowTimeoutMillis + "ms.");
+      }
+    } catch (InterruptedException error) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while waiting for a database connection.", error);
+    }
+
+    PooledConnection pooled;
+    try {
+      pooled = takeValidConnection();
+    } catch (SQLException | RuntimeException error) {
+      permits.release();
+      throw error;
+    }
+    //recording how long the caller waited for the connection
+    long waited = System.nanoTime() - start;
+    borrowCount.incrementAndGet();
+    totalWaitNanos.addAndGet(waited);
+    maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+    pooled.borrowedAt = System.nanoTime();
+    pooled.borrowTrace = new Throwable("Connection borrowed here");
+    pooled.leakReported = false;
+    borrowed.add(pooled);
+    return pooled.newHandle(onCommit);
+  }
+
+  /**
+   * Takes the most recently used idle connection that is still valid, or opens a new one.
+   *
+   * @return a valid pooled connection
+   * @throws SQLException if a new connection cannot be opened
+   */
+  private PooledConnection takeValidConnection() throws SQLException {
+    PooledConnection pooled;
+    while ((pooled = idle.pollFirst()) != null) {
+      if (isValid(pooled.physical)) {
+        return pooled;
+      }
+      //dropped connections are thrown away and replaced
+      invalidCount.incrementAndGet();
+      destroy(pooled);
+    }
+    Connection physical = DriverManager.getConnection(url, user, password);
+    physical.setAutoCommit(false);
+    if (readOnly) {
+      physical.setReadOnly(true);
+    }
+    if (transactionIsolation >= 0) {
+      physical.setTransactionIsolation(transactionIsolation);
+    }
+    createdCount.incrementAndGet();
+    return new PooledConnection(physical);
+  }
+
+  /**
+   * Checks if a physical connection can still be used.
+   *
+   * @param physical the connection to check
+   * @return true if the connection is open and responding, else false
+   */
+  private boolean isValid(Connection physical) {
+    try {
+      return !physical.isClosed() && physical.isValid(validationTimeoutSeconds);
+    } catch (SQLException error) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns a borrowed connection to the pool. Uncommitted work is rolled back.
+   *
+   * @param pooled the connection being returned
+   */
+  private void release(PooledConnection pooled) {
+    if (!borrowed.remove(pooled)) {
+      return;
+    }
+    returnCount.incrementAndGet();
+    totalHoldNanos.addAndGet(System.nanoTime() - pooled.borrowedAt);
+    pooled.borrowTrace = null;
+    boolean reusable = !closed;
+    try {
+      if (!pooled.physical.getAutoCommit()) {
+        pooled.physical.rollback();
+      }
+      pooled.physical.setAutoCommit(false);
+    } catch (SQLException error) {
+      reusable = false;
+    }
+    if (reusable) {
+      pooled.lastReturned = System.nanoTime();
+      idle.offerFirst(pooled);
+    } else {
+      destroy(pooled);
+    }
+    permits.release();
+  }
+
+  /**
+   * Closes a physical connection that is no longer part of the pool.
+   *
+   * @param pooled the connection to close
+   */
+  private void destroy(PooledConnection pooled) {
+    StatementRegistry.release(pooled.physical);
+    try {
+      pooled.physical.close();
+    } catch (SQLException error) {
+      //the connection is being thrown away so errors are ignored
+    }
+  }
+
+  /**
+   * Closes connections that have been idle for too long and reports connections that have been
+   * borrowed for longer than the leak threshold.
+   */
+  private void houseKeep() {
+    long now = System.nanoTime();
+    Iterator<PooledConnection> iterator = idle.descendingIterator();
+    while (iterator.hasNext()) {
+      PooledConnection pooled = iterator.next();
+      if (now - pooled.lastReturned > TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis)
+          && idle.remove(pooled)) {
+        evictedCount.incrementAndGet();
+        destroy(pooled);
+      }
+    }
+    for (PooledConnection pooled : borrowed) {
+      Throwable trace = pooled.borrowTrace;
+      if (!pooled.leakReported && trace != null
+          && now - pooled.borrowedAt > TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis)) {
+        pooled.leakReported = true;
+        leakCount.incrementAndGet();
+        System.err.println("Possible connection leak: connection held for more than "
+            + leakThresholdMillis + "ms.");
+        trace.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Closes the pool and all idle connections. Borrowed connections are closed when returned.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    housekeeper.shutdownNow();
+    PooledConnection pooled;
+    while ((pooled = idle.pollFirst()) != null) {
+      destroy(pooled);
+    }
+  }
+
+  /**
+   * Opens another pool on the same database with connections of its own, for work that must not
+   * wait for the connections of this pool.
+   *
+   * @param maxSize maximum number of connections open at the same time
+   * @return the new pool, closed separately from this one
+   */
+  public ConnectionPool newPool(int maxSize) {
+    ConnectionPool other = new ConnectionPool(url, user, password, maxSize);
+    other.setBorrowTimeoutMillis(borrowTimeoutMillis);
+    other.setValidationTimeoutSeconds(validationTimeoutSeconds);
+    other.setReadOnly(readOnly);
+    other.setTransactionIsolation(transactionIsolation);
+    return other;
+  }
+
+  /**
+   * Sets how long a caller waits for a connection before giving up.
+   *
+   * @param borrowTimeoutMillis timeout in milliseconds
+   */
+  public void setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+    this.borrowTimeoutMillis = borrowTimeoutMillis;
+  }
+
+  /**
+   * Sets how long a connection can stay idle before it is closed.
+   *
+   * @param idleTimeoutMillis timeout in milliseconds
+   */
+  public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+    this.idleTimeoutMillis = idleTimeoutMillis;
+  }
+
+  /**
+   * Sets how long a connection can be borrowed before it is reported as a possible leak.
+   *
+   * @param leakThresholdMillis threshold in milliseconds
+   */
+  public void setLeakThresholdMillis(long leakThresholdMillis) {
+    this.leakThresholdMillis = leakThresholdMillis;
+  }
+
+  /**
+   * Sets how long to wait for a connection to respond when it is validated.
+   *
+   * @param validationTimeoutSeconds timeout in seconds
+   */
+  public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+    this.validationTimeoutSeconds = validationTimeoutSeconds;
+  }
+
+  /**
+   * Makes the connections the pool opens from now on read-only, such as for reports.
+   *
+   * @param readOnly true for read-only connections
+   */
+  public void setReadOnly(boolean readOnly) {
+    this.readOnly = readOnly;
+  }
+
+  /**
+   * Sets the transaction isolation level of the connections the pool opens from now on.
+   *
+   * @param transactionIsolation one of the Connection.TRANSACTION_ levels
+   */
+  public void setTransactionIsolation(int transactionIsolation) {
+    this.transactionIsolation = transactionIsolation;
+  }
+
+  /**
+   * Returns the maximum number of connections in the pool.
+   *
+   * @return maximum number of connections
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Returns the number of connections currently borrowed.
+   *
+   * @return number of borrowed connections
+   */
+  public int getActiveCount() {
+    return borrowed.size();
+  }
+
+  /**
+   * Returns the number of open connections waiting in the pool.
+   *
+   * @return number of idle connections
+   */
+  public int getIdleCount() {
+    return idle.size();
+  }
+
+  /**
+   * Returns the number of times a connection has been borrowed.
+   *
+   * @return number of borrows
+   */
+  public long getBorrowCount() {
+    return borrowCount.get();
+  }
+
+  /**
+   * Returns the number of connections reported as possible leaks.
+   *
+   * @return number of leaks reported
+   */
+  public long getLeakCount() {
+    return leakCount.get();
+  }
+
+  /**
+   * Returns a string with the pool's usage and timing statistics.
+   *
+   * @return string with the pool statistics
+   */
+  public String getStatistics() {
+    long borrows = borrowCount.get();
+    long returns = returnCount.get();
+    return "Connections: active=" + getActiveCount() + " idle=" + getIdleCount() + " max=" + maxSize
+        + "\nBorrows: " + borrows
+        + " | avg wait " + String.format("%.3f", averageMillis(totalWaitNanos.get(), borrows))
+        + "ms | max wait " + String.format("%.3f", maxWaitNanos.get() / 1e6)
+        + "ms | avg hold " + String.format("%.3f", averageMillis(totalHoldNanos.get(), returns))
+        + "ms\nCreated: " + createdCount.get() + " | evicted idle: " + evictedCount.get()
+        + " | failed validation: " + invalidCount.get() + " | leaks: " + leakCount.get();
+  }
+
+  /**
+   * Returns the average of a nanosecond total in milliseconds.
+   *
+   * @param totalNanos total time in nanoseconds
+   * @param count      number of samples
+   * @return average in milliseconds
+   */
+  private static double averageMillis(long totalNanos, long count) {
+    return count == 0 ? 0 : totalNanos / 1e6 / count;
+  }
+
+  /**
+   * Returns the physical connection behind a connection borrowed from a pool. Connections that did
+   * not come from a pool are returned unchanged.
+   *
+   * @param connection a borrowed or plain connection
+   * @return the physical connection
+   * @throws SQLException if the borrowed connection has already been returned
+   */
+  public static Connection physical(Connection connection) throws SQLException {
+    if (Proxy.isProxyClass(connection.getClass())) {
+      InvocationHandler handler = Proxy.getInvocationHandler(connection);
+      if (handler instanceof Handle) {
+        return ((Handle) handler).physical();
+      }
+    }
+    return connection;
+  }
+
+  /**
+   * A physical connection owned by the pool.
+   */
+  private final class PooledConnection {
+
+    private final Connection physical;
+    private volatile long borrowedAt;
+    private volatile long lastReturned = System.nanoTime();
+    private volatile Throwable borrowTrace;
+    private volatile boolean leakReported;
+
+    private PooledConnection(Connection physical) {
+      this.physical = physical;
+    }
+
+    /**
+     * Creates the connection given to a borrower. Each borrow gets its own handle so a handle kept
+     * after it has been closed cannot use the connection of the next borrower.
+     *
+     * @param onCommit called after each successful commit, or null for none
+     * @return connection handle
+     */
+    private Connection newHandle(Runnable onCommit) {
+      return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+          new Class<?>[]{Connection.class}, new Handle(this, onCommit));
+    }
+  }
+
+  /**
+   * Forwards calls from a borrowed connection handle to the physical connection and returns it to
+   * the pool when closed.
+   */
+  private final class Handle implements InvocationHandler {
+
+    private final PooledConnection pooled;
+    private final Runnable onCommit;
+    private volatile boolean returned = false;
+
+    private Handle(PooledConnection pooled, Runnable onCommit) {
+      this.pooled = pooled;
+      this.onCommit = onCommit;
+    }
+
+    /**
+     * Returns the physical connection if this handle has not been returned.
+     *
+     * @return physical connection
+     * @throws SQLException if the handle has been returned to the pool
+     */
+    private Connection physical() throws SQLException {
+      if (returned) {
+        throw new SQLException("Connection has already been returned to the pool.");
+      }
+      return pooled.physical;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "close":
+          if (!returned) {
+            returned = true;
+            release(pooled);
+          }
+          return null;
+        case "isClosed":
+          return returned || pooled.physical.isClosed();
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "PooledConnection[" + pooled.physical + "]";
+        case "prepareStatement":
+          //statements are timed by the metrics under their sql
+          return Metrics.instrument((PreparedStatement) forward(method, args), (String) args[0]);
+        case "commit":
+          Metrics.recordCommit();
+          Object committed = forward(method, args);
+          if (onCommit != null) {
+            onCommit.run();
+          }
+          return committed;
+        case "rollback":
+          Metrics.recordRollback();
+          return forward(method, args);
+        default:
+          return forward(method, args);
+      }
+    }
+
+    /**
+     * Calls a method on the physical connection.
+     *
+     * @param method the method called on the handle
+     * @param args   the arguments
+     * @return the result of the method
+     * @throws Throwable the exception thrown by the method
+     */
+    private Object forward(Method method, Object[] args) throws Throwable {
+      try {
+        return method.invoke(physical(), args);
+      } catch (InvocationTargetException error) {
+        throw error.getCause();
+      }
+    }
+  }
+}
@@ -0,0 +1,129 @@
+//importing libraries
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConnectionRouter sends changes to the primary database and reads to a pool of read-only
+ * connections, either to a replica of the database or to the primary, so long reports do not hold
+ * a transaction that changes are waiting to commit on.
+ *
+ * <p>A replica may not have the latest changes yet. Each user of the router has a
+ * {@link Session}, and the connections used for changes record when the session last committed.
+ * For a short time after a commit, the session's reads go to the primary, so a user always sees
+ * their own changes.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class ConnectionRouter {
+
+  private final ConnectionPool primary;
+  private final ConnectionPool reads;
+  private final long replicaLagNanos;
+
+  private final AtomicLong writeCount = new AtomicLong();
+  private final AtomicLong readCount = new AtomicLong();
+  private final AtomicLong pinnedReadCount = new AtomicLong();
+
+  /**
+   * The changes made by one user, so their reads can see them.
+   */
+  public static final class Session {
+
+    //when the session last committed, 0 if it has not
+    private volatile long lastCommit = 0;
+
+    /**
+     * Records that the session has committed changes.
+     */
+    public void recordCommit() {
+      lastCommit = System.nanoTime();
+    }
+
+    /**
+     * Checks if the session has committed within a time.
+     *
+     * @param nanos the time in nanoseconds
+     * @return true if the last commit was more recent, else false
+     */
+    private boolean committedWithin(long nanos) {
+      long last = lastCommit;
+      return last != 0 && System.nanoTime() - last < nanos;
+    }
+  }
+
+  /**
+   * Constructor to initialise a router.
+   *
+   * @param primary          pool of connections to the primary database
+   * @param reads            pool of read-only connections, to a replica or to the primary
+   * @param replicaLagMillis how long after a commit a session reads from the primary, 0 if the
+   *                         read pool is on the primary
+   */
+  public ConnectionRouter(ConnectionPool primary, ConnectionPool reads, long replicaLagMillis) {
+    this.primary = primary;
+    this.reads = reads;
+    this.replicaLagNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, replicaLagMillis));
+  }
+
+  /**
+   * Borrows a connection to the primary database for changes. Each commit on the connection is
+   * recorded on the session. The connection is returned to its pool when it is closed.
+   *
+   * @param session the session making the changes
+   * @return a connection with auto-commit disabled
+   * @throws SQLException if no connection can be borrowed
+   */
+  public Connection getWriteConnection(Session session) throws SQLException {
+    writeCount.incrementAndGet();
+    return primary.getConnection(session::recordCommit);
+  }
+
+  /**
+   * Borrows a connection for reading. If the session committed within the replica lag, the
+   * connection is to the primary, otherwise it is a read-only connection from the read pool.
+   *
+   * @param session the session reading, or null to always use the read pool
+   * @return a connection with auto-commit disabled
+   * @throws SQLException if no connection can be borrowed
+   */
+  public Connection getReadConnection(Session session) throws SQLException {
+    readCount.incrementAndGet();
+    if (session != null && session.committedWithin(replicaLagNanos)) {
+      pinnedReadCount.incrementAndGet();
+      return primary.getConnection();
+    }
+    return reads.getConnection();
+  }
+
+  /**
+   * Returns the pool of connections to the primary database.
+   *
+   * @return the pool
+   */
+  public ConnectionPool getPrimary() {
+    return primary;
+  }
+
+  /**
+   * Returns the pool of read-only connections.
+   *
+   * @return the pool
+   */
+  public ConnectionPool getReads() {
+    return reads;
+  }
+
+  /**
+   * Returns the number of connections borrowed for changes and for reads.
+   *
+   * @return the statistics
+   */
+  public String getStatistics() {
+    return "Write connections: " + writeCount.get() + " | read connections: " + readCount.get()
+        + " (" + pinnedReadCount.get() + " from the primary after a commit)";
+  }
+}
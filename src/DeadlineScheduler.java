@@ -0,0 +1,450 @@
+//importing libraries
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * DeadlineScheduler sends alerts about the deadlines of open projects: a number of days before a
+ * deadline, on the day and once a project is overdue. The days alerts are sent on are set when
+ * the scheduler is created, such as 7, 0 and -1 for a week before, on the day and the day after.
+ *
+ * <p>The alerts are kept in a timing wheel with two levels. The first level has a slot for each
+ * of the next 256 days and the second has a slot for each of the next 64 blocks of 256 days.
+ * Moving on a day only reads the slot for that day, and at the start of each block the alerts of
+ * the block are moved down from the second level, so a day costs the same however many projects
+ * are open. Alerts further away than the second level are kept in a list that is checked once
+ * the wheel has gone all the way round.
+ *
+ * <p>Changing the deadline of a project schedules new alerts for it. The alerts scheduled for the
+ * old deadline stay in the wheel but are dropped when their day comes, because each alert keeps
+ * the generation of the deadline it was scheduled for. Alerts for days that have already passed
+ * are not sent, and alerts for today scheduled after today's alerts were sent are sent by the next
+ * call to {@link #advanceTo(LocalDate)}.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class DeadlineScheduler {
+
+  private static final int SLOTS = 256;
+  private static final int BLOCKS = 64;
+
+  /**
+   * Receives the alerts sent on a day.
+   */
+  public interface Sink {
+
+    /**
+     * Sends alerts. A sink handles its own errors, so one sink failing does not stop the others.
+     *
+     * @param alerts the alerts, at least one
+     */
+    void send(List<Alert> alerts);
+  }
+
+  /**
+   * An alert about the deadline of a project.
+   */
+  public static final class Alert {
+
+    private final int projNum;
+    private final String name;
+    private final LocalDate deadline;
+    private final int daysBefore;
+
+    /**
+     * Constructor to initialise an alert.
+     *
+     * @param projNum    project number
+     * @param name       project name
+     * @param deadline   deadline of the project
+     * @param daysBefore number of days before the deadline, negative once it has passed
+     */
+    private Alert(int projNum, String name, LocalDate deadline, int daysBefore) {
+      this.projNum = projNum;
+      this.name = name;
+      this.deadline = deadline;
+      this.daysBefore = daysBefore;
+    }
+
+    /**
+     * Returns the project number.
+     *
+     * @return project number
+     */
+    public int getProjNum() {
+      return projNum;
+    }
+
+    /**
+     * Returns the project name.
+     *
+     * @return project name
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Returns the deadline of the project.
+     *
+     * @return the deadline
+     */
+    public LocalDate getDeadline() {
+      return deadline;
+    }
+
+    /**
+     * Returns the number of days before the deadline the alert is for.
+     *
+     * @return number of days, 0 on the day and negative once the project is overdue
+     */
+    public int getDaysBefore() {
+      return daysBefore;
+    }
+
+    /**
+     * Returns the alert as a line of text.
+     *
+     * @return the alert
+     */
+    @Override
+    public String toString() {
+      String when;
+      if (daysBefore > 0) {
+        when = "is due in " + daysBefore + (daysBefore == 1 ? " day" : " days");
+      } else if (daysBefore == 0) {
+        when = "is due today";
+      } else {
+        when = "is " + -daysBefore + (daysBefore == -1 ? " day" : " days") + " overdue";
+      }
+      return "Project " + projNum + " (" + name + ") " + when + ", deadline " + deadline;
+    }
+  }
+
+  /**
+   * Sink that appends each alert as a line to a file.
+   */
+  public static final class FileSink implements Sink {
+
+    private final Path file;
+
+    /**
+     * Constructor to initialise a file sink.
+     *
+     * @param file file the alerts are appended to, created if it does not exist
+     */
+    public FileSink(Path file) {
+      this.file = file;
+    }
+
+    /**
+     * Appends the alerts to the file.
+     *
+     * @param alerts the alerts
+     */
+    @Override
+    public void send(List<Alert> alerts) {
+      try (Writer out = Files.newBufferedWriter(file, StandardOpenOption.CREATE,
+          StandardOpenOption.APPEND)) {
+        String today = LocalDate.now().toString();
+        for (Alert alert : alerts) {
+          out.write(today + " " + alert + "\n");
+        }
+      } catch (IOException error) {
+        System.out.println("Unable to write alerts: " + error.getMessage());
+      }
+    }
+  }
+
+  /**
+   * The deadline of an open project.
+   */
+  private static final class Entry {
+
+    private String name;
+    private final long deadline;
+    private final long generation;
+
+    private Entry(String name, long deadline, long generation) {
+      this.name = name;
+      this.deadline = deadline;
+      this.generation = generation;
+    }
+  }
+
+  /**
+   * An alert scheduled for a day.
+   */
+  private static final class Timer {
+
+    private final int projNum;
+    private final long generation;
+    private final int daysBefore;
+    private final long day;
+
+    private Timer(int projNum, long generation, int daysBefore, long day) {
+      this.projNum = projNum;
+      this.generation = generation;
+      this.daysBefore = daysBefore;
+      this.day = day;
+    }
+  }
+
+  private final int[] alertDays;
+  private final List<Sink> sinks = new CopyOnWriteArrayList<>();
+  private final Map<Integer, Entry> projects = new HashMap<>();
+  private final List<List<Timer>> days = new ArrayList<>(SLOTS);
+  private final List<List<Timer>> blocks = new ArrayList<>(BLOCKS);
+  private List<Timer> later = new ArrayList<>();
+  //alerts for today scheduled after today's slot was read
+  private final List<Timer> dueNow = new ArrayList<>();
+  //last day whose alerts have been sent, as an epoch day
+  private long today;
+  private long nextGeneration = 0;
+  private long sentCount = 0;
+
+  /**
+   * Constructor to initialise a scheduler with no projects.
+   *
+   * @param today     the current date, alerts for it are sent by the first call to
+   *                  {@link #advanceTo(LocalDate)}
+   * @param alertDays days before a deadline to send alerts on, 0 for the day itself and negative
+   *                  for the days after
+   */
+  public DeadlineScheduler(LocalDate today, int[] alertDays) {
+    this.alertDays = Arrays.copyOf(alertDays, alertDays.length);
+    this.today = today.toEpochDay() - 1;
+    for (int i = 0; i < SLOTS; i++) {
+      days.add(new ArrayList<>());
+    }
+    for (int i = 0; i < BLOCKS; i++) {
+      blocks.add(new ArrayList<>());
+    }
+  }
+
+  /**
+   * Reads the days alerts are sent on from text, such as "7,1,0,-1".
+   *
+   * @param text days before a deadline, separated by commas
+   * @return the days
+   * @throws NumberFormatException if a day is not a number
+   */
+  public static int[] parseAlertDays(String text) {
+    List<Integer> parsed = new ArrayList<>();
+    for (String day : text.split(",")) {
+      if (!day.trim().isEmpty()) {
+        parsed.add(Integer.parseInt(day.trim()));
+      }
+    }
+    int[] alertDays = new int[parsed.size()];
+    for (int i = 0; i < alertDays.length; i++) {
+      alertDays[i] = parsed.get(i);
+    }
+    return alertDays;
+  }
+
+  /**
+   * Creates a scheduler with the deadlines of all open projects in the database.
+   *
+   * @param connection database connection
+   * @param today      the current date
+   * @param alertDays  days before a deadline to send alerts on
+   * @return the scheduler
+   * @throws SQLException if there are errors accessing the database
+   */
+  public static DeadlineScheduler load(Connection connection, LocalDate today, int[] alertDays)
+      throws SQLException {
+    DeadlineScheduler scheduler = new DeadlineScheduler(today, alertDays);
+    try (PreparedStatement statement = connection.prepareStatement("SELECT proj_num, proj_name,"
+        + " deadline FROM projects WHERE completion_date IS NULL AND deadline IS NOT NULL")) {
+      statement.setFetchSize(1000);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          scheduler.put(resultSet.getInt(1), resultSet.getString(2), resultSet.getDate(3), null);
+        }
+      }
+    }
+    return scheduler;
+  }
+
+  /**
+   * Adds a sink the alerts are sent to.
+   *
+   * @param sink the sink
+   */
+  public void addSink(Sink sink) {
+    sinks.add(sink);
+  }
+
+  /**
+   * Schedules the alerts of a saved project, replacing those for its earlier deadline, or stops
+   * its alerts if it has been finalised.
+   *
+   * @param project the project
+   */
+  public void put(Project project) {
+    put(project.getNum(), project.getName(), project.getDeadline(), project.getCompletionDate());
+  }
+
+  /**
+   * Schedules the alerts of a project, replacing those for its earlier deadline, or stops its
+   * alerts if it has been finalised or has no deadline.
+   *
+   * @param projNum        project number
+   * @param name           project name
+   * @param deadline       deadline, or null if there is none
+   * @param completionDate completion date, or null if the project is open
+   */
+  public synchronized void put(int projNum, String name, Date deadline, Date completionDate) {
+    if (completionDate != null || deadline == null) {
+      //its alerts are dropped when their days come
+      projects.remove(projNum);
+      return;
+    }
+    long day = deadline.toLocalDate().toEpochDay();
+    Entry old = projects.get(projNum);
+    if (old != null && old.deadline == day) {
+      old.name = name;
+      return;
+    }
+    Entry entry = new Entry(name, day, nextGeneration++);
+    projects.put(projNum, entry);
+    for (int daysBefore : alertDays) {
+      long alertDay = day - daysBefore;
+      //alerts for days already passed are not sent
+      if (alertDay > today) {
+        schedule(new Timer(projNum, entry.generation, daysBefore, alertDay));
+      } else if (alertDay == today) {
+        dueNow.add(new Timer(projNum, entry.generation, daysBefore, alertDay));
+      }
+    }
+  }
+
+  /**
+   * Adds an alert to the slot for its day, or for its block of days if it is further away.
+   *
+   * @param timer the alert
+   */
+  private void schedule(Timer timer) {
+    long ahead = timer.day - today;
+    if (ahead < SLOTS) {
+      days.get((int) Math.floorMod(timer.day, (long) SLOTS)).add(timer);
+    } else if (ahead < (long) SLOTS * BLOCKS) {
+      blocks.get((int) Math.floorMod(Math.floorDiv(timer.day, SLOTS), (long) BLOCKS)).add(timer);
+    } else {
+      later.add(timer);
+    }
+  }
+
+  /**
+   * Moves the scheduler on to a day, sending the alerts of each day passed to the sinks. Only
+   * alerts scheduled for today since the last call are sent if the day has already been reached.
+   *
+   * @param date the current date
+   * @return number of alerts sent
+   */
+  public int advanceTo(LocalDate date) {
+    List<Alert> alerts = new ArrayList<>();
+    synchronized (this) {
+      long target = date.toEpochDay();
+      if (target == today) {
+        addAlerts(alerts, dueNow);
+      } else {
+        //the day they were for has passed
+        dueNow.clear();
+      }
+      while (today < target) {
+        today++;
+        if (Math.floorMod(today, (long) SLOTS) == 0) {
+          cascade();
+        }
+        addAlerts(alerts, days.get((int) Math.floorMod(today, (long) SLOTS)));
+      }
+      sentCount += alerts.size();
+    }
+    //the sinks are called without holding the lock, so a slow sink does not hold up saves
+    if (!alerts.isEmpty()) {
+      for (Sink sink : sinks) {
+        sink.send(alerts);
+      }
+    }
+    return alerts.size();
+  }
+
+  /**
+   * Adds the alerts of a slot that are still for the current deadline of their project, and
+   * empties the slot.
+   *
+   * @param alerts list to add the alerts to
+   * @param slot   the slot
+   */
+  private void addAlerts(List<Alert> alerts, List<Timer> slot) {
+    for (Timer timer : slot) {
+      Entry entry = projects.get(timer.projNum);
+      if (entry != null && entry.generation == timer.generation) {
+        alerts.add(new Alert(timer.projNum, entry.name, LocalDate.ofEpochDay(entry.deadline),
+            timer.daysBefore));
+      }
+    }
+    slot.clear();
+  }
+
+  /**
+   * Moves the alerts of the block starting today down to the slots for their days, and at the
+   * start of each turn of the wheel, the alerts further away into the wheel.
+   */
+  private void cascade() {
+    long block = Math.floorDiv(today, SLOTS);
+    if (Math.floorMod(block, (long) BLOCKS) == 0) {
+      List<Timer> waiting = later;
+      later = new ArrayList<>();
+      for (Timer timer : waiting) {
+        schedule(timer);
+      }
+    }
+    List<Timer> slot = blocks.get((int) Math.floorMod(block, (long) BLOCKS));
+    List<Timer> moving = new ArrayList<>(slot);
+    slot.clear();
+    for (Timer timer : moving) {
+      //dropping alerts for old deadlines instead of moving them
+      Entry entry = projects.get(timer.projNum);
+      if (entry != null && entry.generation == timer.generation) {
+        schedule(timer);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of open projects with a deadline.
+   *
+   * @return number of projects
+   */
+  public synchronized int size() {
+    return projects.size();
+  }
+
+  /**
+   * Returns the number of projects and the alerts sent so far.
+   *
+   * @return the statistics
+   */
+  public synchronized String getStatistics() {
+    return "Tracking " + projects.size() + " deadlines, sent " + sentCount + " alerts.";
+  }
+}
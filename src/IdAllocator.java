@@ -0,0 +1,178 @@
+//importing libraries
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IdAllocator hands out primary keys for new projects and stakeholders. Keys are reserved from the
+ * id_blocks table a block at a time, so most keys are handed out from memory without a query. A
+ * block is reserved in its own transaction on a connection kept for the allocator, so keys are
+ * never handed out twice, even to other programs using the same database, and a block can be
+ * reserved while every connection of the pool is held by a caller. Keys of a block that is not
+ * used up are skipped.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class IdAllocator implements AutoCloseable {
+
+  //primary key column of each table ids are allocated for
+  private static final Map<String, String> ID_COLUMNS;
+
+  static {
+    Map<String, String> columns = new HashMap<>();
+    columns.put("projects", "proj_num");
+    columns.put("structural_engineers", "struc_eng_id");
+    columns.put("project_managers", "proj_mgr_id");
+    columns.put("architects", "architect_id");
+    columns.put("customers", "cust_id");
+    ID_COLUMNS = Collections.unmodifiableMap(columns);
+  }
+
+  private final ConnectionPool pool;
+  private final int blockSize;
+  private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor to initialise an IdAllocator.
+   *
+   * @param pool      connection pool of the database, the allocator opens its own connection to
+   *                  it so it never waits for the connections held by callers
+   * @param blockSize number of ids reserved at a time
+   */
+  public IdAllocator(ConnectionPool pool, int blockSize) {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("Block size must be at least 1.");
+    }
+    this.pool = pool.newPool(1);
+    this.blockSize = blockSize;
+  }
+
+  /**
+   * Returns the next free primary key for a table.
+   *
+   * @param tableName name of the table
+   * @return the next primary key
+   * @throws SQLException             if a new block cannot be reserved
+   * @throws IllegalArgumentException if ids are not allocated for the table
+   */
+  public int nextId(String tableName) throws SQLException {
+    if (!ID_COLUMNS.containsKey(tableName)) {
+      throw new IllegalArgumentException("Ids are not allocated for table: " + tableName);
+    }
+    return blocks.computeIfAbsent(tableName, Block::new).next();
+  }
+
+  /**
+   * Closes the connection used to reserve blocks.
+   */
+  @Override
+  public void close() {
+    pool.close();
+  }
+
+  /**
+   * Reserves the next block of ids for a table.
+   *
+   * @param tableName name of the table
+   * @return the first id of the block
+   * @throws SQLException if there are errors accessing the database
+   */
+  private int reserveBlock(String tableName) throws SQLException {
+    try (Connection connection = pool.getConnection()) {
+      while (true) {
+        try {
+          int first = tryReserve(connection, tableName);
+          connection.commit();
+          return first;
+        } catch (SQLIntegrityConstraintViolationException error) {
+          //another program created the counter row first, the update will find it now
+          connection.rollback();
+        }
+      }
+    }
+  }
+
+  /**
+   * Moves the counter for a table on by one block, creating the counter from the table's highest
+   * key if it does not exist yet.
+   *
+   * @param connection database connection
+   * @param tableName  name of the table
+   * @return the first id of the reserved block
+   * @throws SQLException if there are errors accessing the database
+   */
+  private int tryReserve(Connection connection, String tableName) throws SQLException {
+    //the update locks the counter row until the transaction ends
+    try (PreparedStatement update = connection
+        .prepareStatement("UPDATE id_blocks SET next_id=next_id+? WHERE table_name=?")) {
+      update.setInt(1, blockSize);
+      update.setString(2, tableName);
+      if (update.executeUpdate() > 0) {
+        try (PreparedStatement select = connection
+            .prepareStatement("SELECT next_id FROM id_blocks WHERE table_name=?")) {
+          select.setString(1, tableName);
+          try (ResultSet resultSet = select.executeQuery()) {
+            resultSet.next();
+            return resultSet.getInt(1) - blockSize;
+          }
+        }
+      }
+    }
+
+    //first block for this table starts after the highest existing key, including archived
+    //projects
+    String idColumn = ID_COLUMNS.get(tableName);
+    String query = "SELECT MAX(" + idColumn + ") FROM " + tableName;
+    int first = 1;
+    try (PreparedStatement select = connection.prepareStatement(
+        tableName.equals("projects") ? ProjectArchiver.withArchive(query) : query);
+        ResultSet resultSet = select.executeQuery()) {
+      while (resultSet.next()) {
+        first = Math.max(first, resultSet.getInt(1) + 1);
+      }
+    }
+    try (PreparedStatement insert = connection
+        .prepareStatement("INSERT INTO id_blocks VALUES(?,?)")) {
+      insert.setString(1, tableName);
+      insert.setInt(2, first + blockSize);
+      insert.executeUpdate();
+    }
+    return first;
+  }
+
+  /**
+   * The block of ids currently being handed out for a table.
+   */
+  private final class Block {
+
+    private final String tableName;
+    private int next = 0;
+    private int limit = 0;
+
+    private Block(String tableName) {
+      this.tableName = tableName;
+    }
+
+    /**
+     * Returns the next id in the block, reserving a new block when this one is used up.
+     *
+     * @return the next id
+     * @throws SQLException if a new block cannot be reserved
+     */
+    private synchronized int next() throws SQLException {
+      if (next >= limit) {
+        next = reserveBlock(tableName);
+        limit = next + blockSize;
+      }
+      return next++;
+    }
+  }
+}
@@ -0,0 +1,266 @@
+//importing libraries
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InvoicePipeline writes the invoices of all finalised projects that still have an amount due,
+ * either as one file per invoice or as one archive file with every invoice.
+ *
+ * <p>The projects are read with their customers by one streamed query on the calling thread and
+ * handed to a fixed pool of workers a chunk at a time. Each worker renders its chunk with an
+ * {@link InvoiceTemplate} and encodes it into a byte buffer, then writes the invoice files itself
+ * or hands the buffer back to be written to the archive in project number order. Only a few
+ * chunks are waiting at any time, so reading the database waits for the workers to catch up.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class InvoicePipeline {
+
+  //finalised projects with an amount due, archived or not, with their customers
+  private static final String SELECT_DUE = ProjectArchiver.withArchive(
+      Project.SELECT_WITH_CUSTOMER
+          + " WHERE p.completion_date IS NOT NULL AND p.total_fee>p.amount_paid")
+      + " ORDER BY proj_num";
+
+  private final Connection connection;
+  private final int threads;
+  private final int chunkSize;
+
+  private final AtomicLong invoiceCount = new AtomicLong();
+  private final AtomicLong byteCount = new AtomicLong();
+  private long elapsedNanos = 0;
+
+  /**
+   * Constructor to initialise a pipeline.
+   *
+   * @param connection database connection
+   * @param threads    number of workers rendering invoices
+   * @param chunkSize  number of invoices given to a worker at a time
+   */
+  public InvoicePipeline(Connection connection, int threads, int chunkSize) {
+    this.connection = connection;
+    this.threads = Math.max(1, threads);
+    this.chunkSize = Math.max(1, chunkSize);
+  }
+
+  /**
+   * Writes each invoice to its own file, named invoice-&lt;project number&gt;.txt.
+   *
+   * @param directory directory for the files, created if it does not exist
+   * @return number of invoices written
+   * @throws IOException  if the invoices cannot be written
+   * @throws SQLException if there are errors accessing the database
+   */
+  public long writeFiles(Path directory) throws IOException, SQLException {
+    Files.createDirectories(directory);
+    return run(directory, null);
+  }
+
+  /**
+   * Writes all invoices to one file, in project number order.
+   *
+   * @param file the archive file, replaced if it exists
+   * @return number of invoices written
+   * @throws IOException  if the invoices cannot be written
+   * @throws SQLException if there are errors accessing the database
+   */
+  public long writeArchive(Path file) throws IOException, SQLException {
+    try (FileChannel archive = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      return run(null, archive);
+    }
+  }
+
+  /**
+   * Reads the projects and renders their invoices on the workers.
+   *
+   * @param directory directory for one file per invoice, or null to write to the archive
+   * @param archive   archive to write to, or null to write one file per invoice
+   * @return number of invoices written
+   * @throws IOException  if the invoices cannot be written
+   * @throws SQLException if there are errors accessing the database
+   */
+  private long run(Path directory, FileChannel archive) throws IOException, SQLException {
+    long start = System.nanoTime();
+    invoiceCount.set(0);
+    byteCount.set(0);
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    //chunks handed to the workers and not yet written, oldest first
+    Deque<Future<ByteBuffer>> pending = new ArrayDeque<>();
+    try (PreparedStatement statement = connection.prepareStatement(SELECT_DUE)) {
+      statement.setFetchSize(1000);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        List<Project> chunk = new ArrayList<>(chunkSize);
+        while (resultSet.next()) {
+          chunk.add(Project.createProjectWithCustomer(resultSet));
+          if (chunk.size() == chunkSize) {
+            submit(workers, pending, chunk, directory, archive);
+            chunk = new ArrayList<>(chunkSize);
+          }
+        }
+        if (!chunk.isEmpty()) {
+          submit(workers, pending, chunk, directory, archive);
+        }
+      }
+      while (!pending.isEmpty()) {
+        finish(pending.poll(), archive);
+      }
+    } finally {
+      workers.shutdownNow();
+      elapsedNanos = System.nanoTime() - start;
+    }
+    return invoiceCount.get();
+  }
+
+  /**
+   * Hands a chunk to the workers, first waiting for the oldest chunk if too many are waiting.
+   *
+   * @param workers   the workers
+   * @param pending   chunks not yet written
+   * @param chunk     the projects of the chunk
+   * @param directory directory for one file per invoice, or null
+   * @param archive   archive to write to, or null
+   * @throws IOException if an invoice cannot be written
+   */
+  private void submit(ExecutorService workers, Deque<Future<ByteBuffer>> pending,
+      List<Project> chunk, Path directory, FileChannel archive) throws IOException {
+    if (pending.size() >= threads * 2) {
+      finish(pending.poll(), archive);
+    }
+    pending.add(workers.submit(() -> render(chunk, directory)));
+  }
+
+  /**
+   * Waits for a chunk to be rendered and writes it to the archive.
+   *
+   * @param rendered the chunk being rendered
+   * @param archive  archive to write to, or null if the worker wrote the files
+   * @throws IOException if the chunk cannot be rendered or written
+   */
+  private void finish(Future<ByteBuffer> rendered, FileChannel archive) throws IOException {
+    ByteBuffer bytes;
+    try {
+      bytes = rendered.get();
+    } catch (InterruptedException error) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing invoices.");
+    } catch (ExecutionException error) {
+      if (error.getCause() instanceof IOException) {
+        throw (IOException) error.getCause();
+      }
+      throw new IOException("Unable to render invoices: " + error.getCause(), error.getCause());
+    }
+    if (archive != null) {
+      while (bytes.hasRemaining()) {
+        archive.write(bytes);
+      }
+    }
+  }
+
+  /**
+   * Renders the invoices of a chunk, on a worker.
+   *
+   * @param chunk     the projects, with their customers
+   * @param directory directory to write one file per invoice to, or null to return the chunk
+   * @return the encoded invoices of the chunk, or null if they were written to files
+   * @throws IOException if an invoice file cannot be written
+   */
+  private ByteBuffer render(List<Project> chunk, Path directory) throws IOException {
+    CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    if (directory == null) {
+      StringBuilder text = new StringBuilder(chunk.size() * 640);
+      for (Project project : chunk) {
+        InvoiceTemplate.forProject(project).render(text, project).append('\n');
+      }
+      ByteBuffer bytes = encode(encoder, text, ByteBuffer.allocate(text.length() + 64));
+      invoiceCount.addAndGet(chunk.size());
+      byteCount.addAndGet(bytes.remaining());
+      return bytes;
+    }
+    //one builder and buffer for all invoices of the chunk
+    StringBuilder text = new StringBuilder(1024);
+    ByteBuffer bytes = ByteBuffer.allocate(2048);
+    for (Project project : chunk) {
+      text.setLength(0);
+      InvoiceTemplate.forProject(project).render(text, project);
+      bytes = encode(encoder, text, bytes);
+      byteCount.addAndGet(bytes.remaining());
+      try (FileChannel file = FileChannel.open(
+          directory.resolve("invoice-" + project.getNum() + ".txt"), StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        while (bytes.hasRemaining()) {
+          file.write(bytes);
+        }
+      }
+      invoiceCount.incrementAndGet();
+    }
+    return null;
+  }
+
+  /**
+   * Encodes text as UTF-8 into a buffer, replacing it with a larger buffer if it is too small.
+   *
+   * @param encoder the encoder
+   * @param text    the text
+   * @param bytes   buffer to reuse
+   * @return the buffer, ready to be read
+   * @throws IOException if the text cannot be encoded
+   */
+  private static ByteBuffer encode(CharsetEncoder encoder, CharSequence text, ByteBuffer bytes)
+      throws IOException {
+    while (true) {
+      bytes.clear();
+      encoder.reset();
+      CoderResult result = encoder.encode(CharBuffer.wrap(text), bytes, true);
+      if (!result.isOverflow()) {
+        result = encoder.flush(bytes);
+      }
+      if (result.isOverflow()) {
+        bytes = ByteBuffer.allocate(bytes.capacity() * 2);
+        continue;
+      }
+      if (result.isError()) {
+        result.throwException();
+      }
+      bytes.flip();
+      return bytes;
+    }
+  }
+
+  /**
+   * Returns the results of the last run.
+   *
+   * @return invoices written, bytes written, time taken and invoices per second
+   */
+  public String getStatistics() {
+    double seconds = elapsedNanos / 1e9;
+    return "Wrote " + invoiceCount.get() + " invoices (" + byteCount.get() / 1024 + " KB) in "
+        + String.format("%.2f", seconds) + "s ("
+        + String.format("%.0f", seconds > 0 ? invoiceCount.get() / seconds : 0)
+        + " invoices/sec) with " + threads + " workers.";
+  }
+}
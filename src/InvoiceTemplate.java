@@ -0,0 +1,153 @@
+//importing libraries
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * InvoiceTemplate renders invoices from a template that is split into its text and fields once,
+ * when it is created, so rendering an invoice only appends to a StringBuilder. Amounts are
+ * written by {@link Money#append(StringBuilder, long)} instead of String.format, and dates and
+ * the customer by {@link ProjectRenderer}, so no objects are created for each invoice.
+ *
+ * <p>The fields of a template are written in braces: {projNum}, {name}, {completionDate},
+ * {customer}, {customerName}, {customerPhone}, {customerEmail}, {customerAddress}, {totalFee},
+ * {amountPaid} and {amountDue}.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class InvoiceTemplate {
+
+  private static final String[] FIELDS = {"projNum", "name", "completionDate", "customer",
+      "customerName", "customerPhone", "customerEmail", "customerAddress", "totalFee",
+      "amountPaid", "amountDue"};
+
+  private static final String HEADER = "Project: {projNum}\n{name}\n"
+      + "Completion date: {completionDate}\n{customer}\n";
+
+  //invoice for a project with an amount due
+  public static final InvoiceTemplate INVOICE = new InvoiceTemplate(HEADER
+      + "\nInvoice\n______________\nProject Fee\n___________________________________"
+      + "\nTotal fee: R{totalFee}\nAmount paid: R{amountPaid}"
+      + "\n___________________________________\nAmount due: R{amountDue}"
+      + "\n___________________________________\n");
+
+  //note for a project whose fee has been paid
+  public static final InvoiceTemplate PAID =
+      new InvoiceTemplate(HEADER + "Customer has paid total fee [R{totalFee}].\n\n");
+
+  //text before each field, and the text after the last field
+  private final String[] text;
+  //index in FIELDS of each field
+  private final int[] fields;
+
+  /**
+   * Constructor to initialise a template.
+   *
+   * @param template the template text
+   * @throws IllegalArgumentException if the template has an unknown or unclosed field
+   */
+  public InvoiceTemplate(String template) {
+    List<String> textParts = new ArrayList<>();
+    List<Integer> fieldParts = new ArrayList<>();
+    int position = 0;
+    int open;
+    while ((open = template.indexOf('{', position)) >= 0) {
+      int close = template.indexOf('}', open);
+      if (close < 0) {
+        throw new IllegalArgumentException("Unclosed field at " + open + ".");
+      }
+      String field = template.substring(open + 1, close);
+      int index = indexOfField(field);
+      if (index < 0) {
+        throw new IllegalArgumentException("Unknown field {" + field + "}.");
+      }
+      textParts.add(template.substring(position, open));
+      fieldParts.add(index);
+      position = close + 1;
+    }
+    textParts.add(template.substring(position));
+    this.text = textParts.toArray(new String[0]);
+    this.fields = new int[fieldParts.size()];
+    for (int i = 0; i < fields.length; i++) {
+      fields[i] = fieldParts.get(i);
+    }
+  }
+
+  /**
+   * Returns the index of a field.
+   *
+   * @param field name of the field
+   * @return the index in FIELDS, or -1 if there is no such field
+   */
+  private static int indexOfField(String field) {
+    for (int i = 0; i < FIELDS.length; i++) {
+      if (FIELDS[i].equals(field)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the invoice template for a project: {@link #INVOICE} if there is an amount due, else
+   * {@link #PAID}.
+   *
+   * @param project the project
+   * @return the template
+   */
+  public static InvoiceTemplate forProject(Project project) {
+    return project.getAmountDueCents() > 0 ? INVOICE : PAID;
+  }
+
+  /**
+   * Appends the invoice for a project.
+   *
+   * @param out     builder to append to
+   * @param project the project, with its customer
+   * @return the builder
+   */
+  public StringBuilder render(StringBuilder out, Project project) {
+    Person customer = project.getStakeholder("Customer");
+    for (int i = 0; i < fields.length; i++) {
+      out.append(text[i]);
+      switch (fields[i]) {
+        case 0:
+          out.append(project.getNum());
+          break;
+        case 1:
+          out.append(project.getName());
+          break;
+        case 2:
+          ProjectRenderer.appendDate(out, project.getCompletionDate());
+          break;
+        case 3:
+          ProjectRenderer.appendPerson(out, customer);
+          break;
+        case 4:
+          out.append(customer.getName());
+          break;
+        case 5:
+          out.append(customer.getContactNumber());
+          break;
+        case 6:
+          out.append(customer.getEmail());
+          break;
+        case 7:
+          out.append(customer.getAddress());
+          break;
+        case 8:
+          Money.append(out, project.getTotalFeeCents());
+          break;
+        case 9:
+          Money.append(out, project.getAmountPaidCents());
+          break;
+        default:
+          Money.append(out, project.getAmountDueCents());
+          break;
+      }
+    }
+    return out.append(text[text.length - 1]);
+  }
+
+}
@@ -0,0 +1,259 @@
+//importing libraries
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Json reads and writes the small JSON documents used by {@link ProjectServer}. Only objects whose
+ * values are strings, numbers, booleans or null can be read, which is all a request body needs.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class Json {
+
+  private final String text;
+  private int position = 0;
+
+  /**
+   * Constructor to initialise a reader of a JSON document.
+   *
+   * @param text the document
+   */
+  private Json(String text) {
+    this.text = text;
+  }
+
+  /**
+   * Reads a JSON object. Numbers are read as BigDecimals, exactly as they were written, so an
+   * amount such as 1.005 is not changed by a conversion to binary.
+   *
+   * @param text the JSON text
+   * @return the names and values of the object, in the order they were written
+   * @throws IllegalArgumentException if the text is not a flat JSON object
+   */
+  public static Map<String, Object> parseObject(String text) {
+    Json json = new Json(text);
+    Map<String, Object> values = new LinkedHashMap<>();
+    json.expect('{');
+    if (json.peek() == '}') {
+      json.position++;
+    } else {
+      while (true) {
+        String name = json.readString();
+        json.expect(':');
+        values.put(name, json.readValue());
+        char next = json.next();
+        if (next == '}') {
+          break;
+        }
+        if (next != ',') {
+          throw json.error("expected ',' or '}'");
+        }
+      }
+    }
+    if (json.peek() != 0) {
+      throw json.error("unexpected text after the object");
+    }
+    return values;
+  }
+
+  /**
+   * Reads a string, number, boolean or null.
+   *
+   * @return the value
+   * @throws IllegalArgumentException if there is no value
+   */
+  private Object readValue() {
+    char c = peek();
+    if (c == '"') {
+      return readString();
+    }
+    if (text.startsWith("true", position)) {
+      position += 4;
+      return Boolean.TRUE;
+    }
+    if (text.startsWith("false", position)) {
+      position += 5;
+      return Boolean.FALSE;
+    }
+    if (text.startsWith("null", position)) {
+      position += 4;
+      return null;
+    }
+    int start = position;
+    while (position < text.length() && "+-.0123456789eE".indexOf(text.charAt(position)) >= 0) {
+      position++;
+    }
+    try {
+      return new BigDecimal(text.substring(start, position));
+    } catch (NumberFormatException error) {
+      throw error("expected a value");
+    }
+  }
+
+  /**
+   * Reads a quoted string.
+   *
+   * @return the string without quotes and escapes
+   * @throws IllegalArgumentException if there is no string
+   */
+  private String readString() {
+    expect('"');
+    StringBuilder value = new StringBuilder();
+    while (position < text.length()) {
+      char c = text.charAt(position++);
+      if (c == '"') {
+        return value.toString();
+      }
+      if (c != '\\') {
+        value.append(c);
+        continue;
+      }
+      if (position >= text.length()) {
+        break;
+      }
+      char escaped = text.charAt(position++);
+      switch (escaped) {
+        case 'n':
+          value.append('\n');
+          break;
+        case 't':
+          value.append('\t');
+          break;
+        case 'r':
+          value.append('\r');
+          break;
+        case 'b':
+          value.append('\b');
+          break;
+        case 'f':
+          value.append('\f');
+          break;
+        case 'u':
+          if (position + 4 > text.length()) {
+            throw error("bad unicode escape");
+          }
+          value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+          position += 4;
+          break;
+        default:
+          value.append(escaped);
+          break;
+      }
+    }
+    throw error("unterminated string");
+  }
+
+  /**
+   * Skips spaces and reads the next character, which must be the one expected.
+   *
+   * @param expected the character expected
+   * @throws IllegalArgumentException if the next character is different
+   */
+  private void expect(char expected) {
+    if (next() != expected) {
+      throw error("expected '" + expected + "'");
+    }
+  }
+
+  /**
+   * Skips spaces and reads the next character.
+   *
+   * @return the character, or 0 at the end of the text
+   */
+  private char next() {
+    char c = peek();
+    if (c != 0) {
+      position++;
+    }
+    return c;
+  }
+
+  /**
+   * Skips spaces and returns the next character without reading it.
+   *
+   * @return the character, or 0 at the end of the text
+   */
+  private char peek() {
+    while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+      position++;
+    }
+    return position < text.length() ? text.charAt(position) : 0;
+  }
+
+  /**
+   * Creates an error for the current position.
+   *
+   * @param message what was wrong
+   * @return the error
+   */
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException("Invalid JSON at " + position + ": " + message);
+  }
+
+  /**
+   * Appends a value as JSON. Strings are quoted, numbers and booleans are written as they are and
+   * anything else is written as a quoted string.
+   *
+   * @param json  builder to append to
+   * @param value the value
+   * @return the builder
+   */
+  public static StringBuilder appendValue(StringBuilder json, Object value) {
+    if (value == null) {
+      return json.append("null");
+    }
+    if (value instanceof Number || value instanceof Boolean) {
+      return json.append(value);
+    }
+    String string = value.toString();
+    json.append('"');
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+        case '\\':
+          json.append("\\\\");
+          break;
+        case '\n':
+          json.append("\\n");
+          break;
+        case '\r':
+          json.append("\\r");
+          break;
+        case '\t':
+          json.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            json.append(String.format("\\u%04x", (int) c));
+          } else {
+            json.append(c);
+          }
+          break;
+      }
+    }
+    return json.append('"');
+  }
+
+  /**
+   * Appends a name and value of an object as JSON, with a comma before it unless it is the first.
+   *
+   * @param json  builder to append to
+   * @param name  the name
+   * @param value the value
+   * @return the builder
+   */
+  public static StringBuilder appendField(StringBuilder json, String name, Object value) {
+    char last = json.length() > 0 ? json.charAt(json.length() - 1) : 0;
+    if (last != '{' && last != '[' && last != 0) {
+      json.append(',');
+    }
+    appendValue(json, name).append(':');
+    return appendValue(json, value);
+  }
+}
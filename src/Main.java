@@ -6,11 +6,24 @@
 
 //importing libraries to create date and scanner objects
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Queue;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class contains the main method and is used to run the program. It requests user input and
@@ -23,6 +36,19 @@ import java.util.Scanner;
 public class Main {
 
   private static Scanner scanner = new Scanner(System.in);
+  private static ConnectionPool pool = null;
+  private static ConnectionRouter router = null;
+  //the menu's changes, so its reports and searches see them
+  private static final ConnectionRouter.Session session = new ConnectionRouter.Session();
+  private static IdAllocator idAllocator = null;
+  private static ProjectCache projectCache = null;
+  private static ProjectSearchIndex searchIndex = null;
+  private static PortfolioAnalytics analytics = null;
+  private static CompletedProjectsExporter exporter = null;
+  private static DeadlineScheduler deadlines = null;
+  //deadline alerts waiting to be shown above the menu
+  private static final Queue<DeadlineScheduler.Alert> pendingAlerts =
+      new ConcurrentLinkedQueue<>();
   private static Connection connection = null;
 
   /**
@@ -32,234 +58,624 @@ public class Main {
    * @throws SQLException if there are errors accessing the database
    */
   public static void main(String[] args) throws SQLException {
-    //connecting to database
-    try {
-      connection = DriverManager.getConnection(
-          "jdbc:mysql://localhost:3306/poisepms?allowPublicKeyRetrieval=true&useSSL=false",
-          "otheruser",
-          "28961234");
-      connection.setAutoCommit(false);
+    //creating the connection pool, the url can be changed to use another database
+    String url = System.getProperty("poise.db.url",
+        "jdbc:mysql://localhost:3306/poisepms?allowPublicKeyRetrieval=true&useSSL=false"
+            + "&useCursorFetch=true&rewriteBatchedStatements=true");
+    String user = System.getProperty("poise.db.user", "otheruser");
+    String password = System.getProperty("poise.db.password", "28961234");
+    pool = new ConnectionPool(url, user, password,
+        Integer.parseInt(System.getProperty("poise.db.poolSize", "10")));
+    //reports and searches read through their own read-only connections, from a replica if one
+    //is set, so they never hold a transaction that changes wait on
+    String replicaUrl = System.getProperty("poise.db.replicaUrl");
+    ConnectionPool readPool = new ConnectionPool(replicaUrl != null ? replicaUrl : url,
+        System.getProperty("poise.db.replicaUser", user),
+        System.getProperty("poise.db.replicaPassword", password),
+        Integer.parseInt(System.getProperty("poise.db.readPoolSize", "4")));
+    readPool.setReadOnly(true);
+    readPool.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+    router = new ConnectionRouter(pool, readPool, replicaUrl == null ? 0
+        : Long.parseLong(System.getProperty("poise.db.replicaLagMillis", "2000")));
+    idAllocator = new IdAllocator(pool,
+        Integer.parseInt(System.getProperty("poise.db.idBlockSize", "50")));
+    projectCache = new ProjectCache(
+        Integer.parseInt(System.getProperty("poise.cache.size", "1000")),
+        Long.parseLong(System.getProperty("poise.cache.ttlSeconds", "300")));
+    exporter = new CompletedProjectsExporter(
+        Paths.get(System.getProperty("poise.export.file", "Completed Projects.txt")),
+        Integer.parseInt(System.getProperty("poise.export.syncEvery", "100")));
+    //connecting to database, creating any missing tables, indexing the project names and adding
+    //up the totals
+    try (Connection setup = pool.getConnection()) {
+      Schema.migrate(setup);
+      loadFromSnapshot(setup);
+      deadlines = DeadlineScheduler.load(setup, LocalDate.now(), DeadlineScheduler
+          .parseAlertDays(System.getProperty("poise.alerts.days", "7,1,0,-1")));
     } catch (SQLException error) {
       //handling exception if unable to connect
       System.out.println("Error connecting to database !");
       System.out.println(error.getMessage());
-      error.printStackTrace();
+      closePools();
+      //showing the reports from the last snapshot instead
+      if (args.length == 0 && Files.exists(getSnapshotFile())) {
+        runOffline();
+      } else {
+        error.printStackTrace();
+      }
+      return;
+    }
+
+    //writing the metrics to a file when the program closes
+    Runtime.getRuntime().addShutdownHook(new Thread(Main::writeMetricsSnapshot));
+
+    //running a command from the command line instead of showing the menu
+    if (args.length > 0) {
+      runCommand(args);
+      closePools();
       return;
     }
 
+    deadlines.addSink(pendingAlerts::addAll);
+    startBackgroundTasks();
+
+    //loop that keeps the program running until user decides to close it
     while (true) {
+      //a connection to the primary database is only borrowed by the options making changes
+      connection = null;
       //savepoint to rollback changes to if an error occurs
       Savepoint savepoint = null;
+      //name the database time of this operation is recorded under
+      String operation = "menu";
       //try-catch to handle SQL exceptions
       try {
-        //loop that keeps the program running until user decides to close it
-        while (true) {
-          //setting savepoint
-          savepoint = connection.setSavepoint();
-          System.out.println("______________________\nProject Manager\n______________________");
-          //method to show menu options
-          showOptions();
-          System.out.println("\nSelect an option: ");
-          String choice = scanner.nextLine();
-          //switch to handle the user's input and call the appropriate method
-          switch (choice) {
-            case "0":
-              showOptions();
-              break;
-            case "1":
-              newProject();
-              break;
-            case "2":
-              // project selected by the user
-              ResultSet resultSet = userSelectProjectFromDB();
-              //allowing user to update the project details, finalise it or go back
-              if (resultSet.next()) {
-                String projectInfo = getProjectStringFromResultSet(resultSet)
-                    + getStakeholdersString(resultSet.getInt("struc_eng_id"),
-                    resultSet.getInt("proj_mgr_id"),
-                    resultSet.getInt("architect_id"), resultSet.getInt("cust_id"));
-                System.out.println(projectInfo + "\n\n-- Options:"
-                    + "\n1 - Update"
-                    + "\n2 - Mark as finalised"
-                    + "\nEnter option (any other key to go back):");
-                String option = scanner.nextLine();
-                if (option.equals("1")) {
-                  updateProject(resultSet);
-                } else if (option.equals("2")) {
-                  finalise(resultSet);
-                } else {
-                  System.out.println("Back to Main menu...");
-                }
+        System.out.println("______________________\nProject Manager\n______________________");
+        showAlerts();
+        //method to show menu options
+        showOptions();
+        System.out.println("\nSelect an option: ");
+        String choice = scanner.nextLine();
+        Metrics.beginOperation();
+        //switch to handle the user's input and call the appropriate method
+        switch (choice) {
+          case "0":
+            showOptions();
+            break;
+          case "1":
+            operation = "newProject";
+            connection = router.getWriteConnection(session);
+            savepoint = connection.setSavepoint();
+            newProject();
+            break;
+          case "2":
+            operation = "searchProject";
+            // project selected by the user, fetched with its stakeholders
+            Project project;
+            try (Connection readConnection = router.getReadConnection(session)) {
+              project = userSelectProjectFromDB(readConnection);
+            }
+            //allowing user to update the project details, finalise it or go back
+            if (project != null) {
+              StringBuilder projectInfo = ProjectRenderer.appendStakeholders(
+                  ProjectRenderer.appendProject(new StringBuilder(1024), project), project);
+              System.out.println(projectInfo.append("\n\n-- Options:"
+                  + "\n1 - Update"
+                  + "\n2 - Mark as finalised"
+                  + "\nEnter option (any other key to go back):"));
+              String option = scanner.nextLine();
+              if (option.equals("1") || option.equals("2")) {
+                //recording the update or finalise separately from the search
+                Metrics.endOperation(operation);
+                Metrics.beginOperation();
+                connection = router.getWriteConnection(session);
+                savepoint = connection.setSavepoint();
+              }
+              if (option.equals("1")) {
+                operation = "updateProject";
+                updateProject(project);
+              } else if (option.equals("2")) {
+                operation = "finalise";
+                finalise(project);
               } else {
-                System.out.println("Project not found.");
+                System.out.println("Back to Main menu...");
               }
-              break;
-            case "3":
-              viewProjectsToComplete();
-              break;
-            case "4":
-              viewPastDueProjects();
-              break;
-            case "5":
-              scanner.close();
-              connection.close();
-              System.out.println("Closing Project Manager...");
-              return;
-            default:
-              System.out.println("Option not found. Try again.");
-              break;
-          }
+            } else {
+              System.out.println("Project not found.");
+            }
+            break;
+          case "3":
+            operation = "viewProjectsToComplete";
+            viewProjectsToComplete();
+            break;
+          case "4":
+            operation = "viewPastDueProjects";
+            viewPastDueProjects();
+            break;
+          case "5":
+            scanner.close();
+            closePools();
+            System.out.println("Closing Project Manager...");
+            return;
+          case "6":
+            operation = "viewAnalytics";
+            System.out.println(analytics.getReport(LocalDate.now(), 6));
+            break;
+          default:
+            System.out.println("Option not found. Try again.");
+            break;
         }
       } catch (SQLException | NullPointerException error) {
-        connection.rollback(savepoint);
+        rollback(savepoint);
         System.out.println("An error has occurred.");
       } catch (NumberFormatException | InputMismatchException inputError) {
-        connection.rollback(savepoint);
+        rollback(savepoint);
         System.out.println("An error has occurred. Invalid input.");
+      } finally {
+        Metrics.endOperation(operation);
+        //returning the connection to the pool
+        if (connection != null) {
+          connection.close();
+        }
       }
     }
   }
 
   /**
-   * Finalises a project selected by the user and generates an invoice if the user has not settled
-   * their fees.
+   * Closes the connection pools for the primary database, for reads and for the id allocator.
+   */
+  private static void closePools() {
+    pool.close();
+    router.getReads().close();
+    idAllocator.close();
+  }
+
+  /**
+   * Writes a snapshot of the metrics to the file set by the poise.metrics.file property.
+   */
+  private static void writeMetricsSnapshot() {
+    try (Writer out = Files.newBufferedWriter(
+        Paths.get(System.getProperty("poise.metrics.file", "metrics.txt")))) {
+      Metrics.writeSnapshot(out);
+    } catch (IOException error) {
+      System.out.println("Unable to write metrics: " + error.getMessage());
+    }
+  }
+
+  /**
+   * Shows the deadline alerts sent since the menu was last shown.
+   */
+  private static void showAlerts() {
+    DeadlineScheduler.Alert alert;
+    while ((alert = pendingAlerts.poll()) != null) {
+      System.out.println("! " + alert);
+    }
+  }
+
+  /**
+   * Returns the snapshot file set by the poise.snapshot.file property.
    *
-   * @param project the project to be finalised
-   * @throws SQLException         if an error occurs with updating the project in the database
-   * @throws NullPointerException if null pointer exception occurs
+   * @return path of the snapshot file
    */
-  private static void finalise(ResultSet project) throws SQLException, NullPointerException {
-    //if project already finalised
-    if (project.getDate("completion_date") != null) {
-      System.out.println("\nProject has already been finalised!");
-      return;
+  private static Path getSnapshotFile() {
+    return Paths.get(System.getProperty("poise.snapshot.file", "projects.snapshot"));
+  }
+
+  /**
+   * Fills the search index and totals from the snapshot file and reads the projects changed
+   * since it was written. If there is no snapshot, or it cannot be read, every project is read
+   * from the database.
+   *
+   * @param setup database connection
+   * @throws SQLException if there are errors accessing the database
+   */
+  private static void loadFromSnapshot(Connection setup) throws SQLException {
+    Path file = getSnapshotFile();
+    if (Files.exists(file)) {
+      try {
+        ProjectSnapshot snapshot = ProjectSnapshot.open(file);
+        searchIndex = new ProjectSearchIndex();
+        analytics = new PortfolioAnalytics();
+        snapshot.addTo(searchIndex);
+        snapshot.addTo(analytics);
+        snapshot.catchUp(setup, searchIndex, analytics);
+        return;
+      } catch (IOException | RuntimeException error) {
+        //a damaged snapshot can fail in many ways, the database has every project
+        System.out.println("Unable to read snapshot: " + error.getMessage());
+      }
     }
+    searchIndex = ProjectSearchIndex.load(setup);
+    analytics = PortfolioAnalytics.load(setup);
+  }
 
-    // calculating the amount due
-    double totalFee = project.getDouble("total_fee");
-    double amountPaid = project.getDouble("amount_paid");
-    double amountDue = totalFee - amountPaid;
-    int projNum = project.getInt("proj_num");
-    //setting the completion date as current date
-    Date completionDate = Date.valueOf(LocalDate.now());
-    Statement statement = connection.createStatement();
-    statement.executeUpdate(
-        "UPDATE projects SET completion_date='" + completionDate + "' WHERE proj_num='" + projNum
-            + "'");
-    System.out
-        .println("\nProject Finalised.\n___________________________________\nProject: " + projNum);
-    System.out.println(project.getString("proj_name"));
-    System.out.println("Completion date: " + completionDate);
-
-    //retrieving and printing the details of the customer for the project
-    Person customer = createPersonObjectFromResultSet(
-        getPersonFromDB("customers", project.getInt("cust_id")), "Customer");
-    System.out.println(customer.toString());
-
-    //if there is an amount owed by the customer generate an invoice
-    if (amountDue > 0) {
-      //generating the invoice for the customer
-      System.out.print(
-          "\nInvoice\n______________\nProject Fee\n___________________________________"
-              + "\nTotal fee: R"
-              + String
-              .format("%.2f", totalFee)
-              + "\nAmount paid: R" + String.format("%.2f", amountPaid)
-              + "\n___________________________________\nAmount due: R" + String
-              .format("%.2f", amountDue)
-              + "\n___________________________________\n");
-    } else {
-      //if the customer has already paid
-      System.out.println("Customer has paid total fee [R" + String
-          .format("%.2f", totalFee) + "].\n");
+  /**
+   * Sends today's deadline alerts and starts the background tasks, which run on one background
+   * thread until the program closes: the deadline alerts are checked every
+   * poise.alerts.checkMinutes minutes, a snapshot of the projects is written every
+   * poise.snapshot.intervalMinutes minutes, and old finalised projects are archived every
+   * poise.archive.intervalMinutes minutes. An interval of 0 turns a task off.
+   */
+  private static void startBackgroundTasks() {
+    String alertFile = System.getProperty("poise.alerts.file", "deadline-alerts.txt");
+    if (!alertFile.isEmpty()) {
+      deadlines.addSink(new DeadlineScheduler.FileSink(Paths.get(alertFile)));
+    }
+    deadlines.advanceTo(LocalDate.now());
+    ScheduledExecutorService tasks = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "background-tasks");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long alertInterval = Long.parseLong(System.getProperty("poise.alerts.checkMinutes", "5"));
+    if (alertInterval > 0) {
+      //only sends alerts once the date has changed
+      tasks.scheduleWithFixedDelay(() -> deadlines.advanceTo(LocalDate.now()), alertInterval,
+          alertInterval, TimeUnit.MINUTES);
+    }
+    long snapshotInterval =
+        Long.parseLong(System.getProperty("poise.snapshot.intervalMinutes", "30"));
+    if (snapshotInterval > 0) {
+      tasks.scheduleWithFixedDelay(Main::writeSnapshot, snapshotInterval, snapshotInterval,
+          TimeUnit.MINUTES);
+    }
+    long archiveInterval =
+        Long.parseLong(System.getProperty("poise.archive.intervalMinutes", "60"));
+    if (archiveInterval > 0) {
+      tasks.scheduleWithFixedDelay(() -> archiveProjects(getArchiveAfterDays()), 0,
+          archiveInterval, TimeUnit.MINUTES);
     }
-    //committing changes to database
-    connection.commit();
   }
 
   /**
-   * Returns the ResultSet for a person in a table.
+   * Returns the age at which finalised projects are archived, set by the poise.archive.afterDays
+   * property.
    *
-   * @param tableName the table to query
-   * @param id        the primary key for the person in the table
-   * @return the ResultSet for a person in a table
-   * @throws SQLException if an SQL exception occurs
+   * @return number of days after completion, 0 to never archive projects
+   */
+  private static int getArchiveAfterDays() {
+    return Integer.parseInt(System.getProperty("poise.archive.afterDays", "365"));
+  }
+
+  /**
+   * Moves the projects finalised more than a number of days ago to the archive table.
+   *
+   * @param afterDays number of days after completion, 0 or less does nothing
+   * @return the archiver's statistics, or the error if archiving failed
    */
-  private static ResultSet getPersonFromDB(String tableName, int id) throws SQLException {
-    //sql query
-    String query = "SELECT * FROM " + tableName + " WHERE id=?";
-    String sqlQuery = "";
-    //completing the query based on the table and primary key (id) passed in
-    switch (tableName) {
-      case "structural_engineers":
-        sqlQuery = query.replace("id", "struc_eng_id");
+  private static String archiveProjects(int afterDays) {
+    if (afterDays <= 0) {
+      return "Archiving is turned off.";
+    }
+    try (Connection archiveConnection = pool.getConnection()) {
+      ProjectArchiver archiver = new ProjectArchiver(archiveConnection,
+          Integer.parseInt(System.getProperty("poise.archive.batchSize", "500")), projectCache);
+      archiver.archive(Date.valueOf(LocalDate.now().minusDays(afterDays)));
+      return archiver.getStatistics();
+    } catch (SQLException error) {
+      return "Archive failed: " + error.getMessage();
+    }
+  }
+
+  /**
+   * Writes a snapshot of the projects to the file set by the poise.snapshot.file property.
+   */
+  private static void writeSnapshot() {
+    //read from a replica if there is one, the next start catches up on anything it is behind
+    try (Connection snapshotConnection = router.getReadConnection(null)) {
+      ProjectSnapshot.write(snapshotConnection, getSnapshotFile());
+    } catch (IOException | SQLException error) {
+      System.out.println("Unable to write snapshot: " + error.getMessage());
+    }
+  }
+
+  /**
+   * Shows a menu of the reports that can be shown from the snapshot file, for when the database
+   * cannot be reached. Projects cannot be changed from this menu.
+   */
+  private static void runOffline() {
+    ProjectSnapshot snapshot;
+    try {
+      snapshot = ProjectSnapshot.open(getSnapshotFile());
+    } catch (IOException error) {
+      System.out.println("Unable to read snapshot: " + error.getMessage());
+      return;
+    }
+    PortfolioAnalytics offlineAnalytics = new PortfolioAnalytics();
+    snapshot.addTo(offlineAnalytics);
+    System.out.println("Showing projects as of " + new Timestamp(snapshot.getCreated())
+        + ". Changes cannot be made until the database can be reached.");
+    Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 65536);
+    while (true) {
+      System.out.println("______________________\nProject Manager (read only)"
+          + "\n______________________\n"
+          + "3 - View projects to be completed\n"
+          + "4 - View projects past due date\n"
+          + "5 - Close Project Manager\n"
+          + "6 - View portfolio totals\n\nSelect an option: ");
+      String choice = scanner.nextLine();
+      try {
+        switch (choice) {
+          case "3":
+            System.out.println("\n_________________________\nProjects to be completed:"
+                + "\n_________________________");
+            ProjectReport.projectsToComplete().write(snapshot, out);
+            returnToMenu();
+            break;
+          case "4":
+            System.out.println("\n________________________\nProjects Past Deadline:"
+                + "\n________________________");
+            ProjectReport.pastDueProjects(Date.valueOf(LocalDate.now())).write(snapshot, out);
+            returnToMenu();
+            break;
+          case "5":
+            scanner.close();
+            System.out.println("Closing Project Manager...");
+            return;
+          case "6":
+            System.out.println(offlineAnalytics.getReport(LocalDate.now(), 6));
+            break;
+          default:
+            System.out.println("Option not found. Try again.");
+            break;
+        }
+      } catch (IOException error) {
+        System.out.println("Unable to show projects: " + error.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Runs a command passed in on the command line.
+   *
+   * <p>Commands:
+   * <ul>
+   *   <li>import &lt;file&gt; [chunk size] - imports projects from a file in the Projects.txt
+   *   layout</li>
+   *   <li>batch &lt;commands file&gt; &lt;results file&gt; [group size] - runs a file of
+   *   commands without prompts, see {@link ProjectBatch}</li>
+   *   <li>finalise &lt;paid|type=building type|project numbers&gt; &lt;invoices file&gt;
+   *   [chunk size] - finalises the matching open projects and writes their invoices, see
+   *   {@link BulkFinaliser}</li>
+   *   <li>invoices &lt;files|archive&gt; &lt;directory or file&gt; [threads] - writes the
+   *   invoices of finalised projects with an amount due, see {@link InvoicePipeline}</li>
+   *   <li>totals - prints the amounts billed, paid and outstanding for each building type, see
+   *   {@link PortfolioTotals}</li>
+   *   <li>snapshot [file] - writes a snapshot of the projects, see {@link ProjectSnapshot}</li>
+   *   <li>export - appends the projects finalised since the last export to the Completed
+   *   Projects file, see {@link CompletedProjectsExporter}</li>
+   *   <li>archive [days] - moves the projects finalised more than a number of days ago to the
+   *   archive table, see {@link ProjectArchiver}</li>
+   *   <li>serve [port] - runs the HTTP API until the program is stopped, see
+   *   {@link ProjectServer}</li>
+   * </ul>
+   *
+   * @param args command line arguments
+   */
+  private static void runCommand(String[] args) {
+    switch (args[0]) {
+      case "import":
+        if (args.length < 2) {
+          System.out.println("Usage: import <file> [chunk size]");
+          return;
+        }
+        int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        try (Connection importConnection = pool.getConnection()) {
+          ProjectImporter importer = new ProjectImporter(importConnection, idAllocator,
+              searchIndex, chunkSize);
+          importer.importFile(Paths.get(args[1]));
+          System.out.println(importer.getStatistics());
+          for (String skipped : importer.getSkippedLines()) {
+            System.out.println("Skipped " + skipped);
+          }
+        } catch (IOException | SQLException error) {
+          System.out.println("Import failed: " + error.getMessage());
+        }
+        break;
+      case "batch":
+        if (args.length < 3) {
+          System.out.println("Usage: batch <commands file> <results file> [group size]");
+          return;
+        }
+        int groupSize = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+        try (Connection batchConnection = pool.getConnection()) {
+          ProjectBatch batch = new ProjectBatch(batchConnection, idAllocator, searchIndex,
+              groupSize);
+          batch.run(Paths.get(args[1]), Paths.get(args[2]));
+          System.out.println(batch.getStatistics());
+          //adding the projects finalised by the batch to the Completed Projects file
+          if (exportCompletedProjects(batchConnection)) {
+            System.out.println(exporter.getStatistics());
+          }
+        } catch (IOException | SQLException error) {
+          System.out.println("Batch failed: " + error.getMessage());
+        }
+        break;
+      case "finalise":
+        if (args.length < 3) {
+          System.out.println("Usage: finalise <paid|type=building type|project numbers>"
+              + " <invoices file> [chunk size]");
+          return;
+        }
+        int finaliseChunkSize = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        try (Connection finaliseConnection = pool.getConnection();
+            Writer invoices = Files.newBufferedWriter(Paths.get(args[2]))) {
+          BulkFinaliser finaliser = new BulkFinaliser(finaliseConnection, finaliseChunkSize);
+          finaliser.finalise(BulkFinaliser.Selection.parse(args[1]), invoices);
+          System.out.println(finaliser.getStatistics());
+          for (int projNum : finaliser.getSkippedProjects()) {
+            System.out.println("Skipped project " + projNum + ": it was changed by someone else.");
+          }
+          if (exportCompletedProjects(finaliseConnection)) {
+            System.out.println(exporter.getStatistics());
+          }
+        } catch (IOException | SQLException | IllegalArgumentException error) {
+          System.out.println("Finalise failed: " + error.getMessage());
+        }
         break;
-      case "project_managers":
-        sqlQuery = query.replace("id", "proj_mgr_id");
+      case "invoices":
+        if (args.length < 3 || !(args[1].equals("files") || args[1].equals("archive"))) {
+          System.out.println("Usage: invoices <files|archive> <directory or file> [threads]");
+          return;
+        }
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+            : Runtime.getRuntime().availableProcessors();
+        try (Connection invoiceConnection = pool.getConnection()) {
+          InvoicePipeline pipeline = new InvoicePipeline(invoiceConnection, threads, 256);
+          if (args[1].equals("files")) {
+            pipeline.writeFiles(Paths.get(args[2]));
+          } else {
+            pipeline.writeArchive(Paths.get(args[2]));
+          }
+          System.out.println(pipeline.getStatistics());
+        } catch (IOException | SQLException error) {
+          System.out.println("Invoices failed: " + error.getMessage());
+        }
+        break;
+      case "totals":
+        try (Connection totalsConnection = pool.getConnection()) {
+          System.out.print(PortfolioTotals.load(totalsConnection));
+        } catch (SQLException error) {
+          System.out.println("Totals failed: " + error.getMessage());
+        }
+        break;
+      case "snapshot":
+        Path snapshotFile = args.length > 1 ? Paths.get(args[1]) : getSnapshotFile();
+        try (Connection snapshotConnection = pool.getConnection()) {
+          long start = System.nanoTime();
+          int written = ProjectSnapshot.write(snapshotConnection, snapshotFile);
+          System.out.println("Wrote " + written + " projects to " + snapshotFile + " in "
+              + (System.nanoTime() - start) / 1000000 + " ms");
+        } catch (IOException | SQLException error) {
+          System.out.println("Snapshot failed: " + error.getMessage());
+        }
+        break;
+      case "export":
+        try (Connection exportConnection = pool.getConnection()) {
+          if (exportCompletedProjects(exportConnection)) {
+            System.out.println(exporter.getStatistics());
+          }
+        } catch (SQLException error) {
+          System.out.println("Export failed: " + error.getMessage());
+        }
         break;
-      case "architects":
-        sqlQuery = query.replace("id", "architect_id");
+      case "archive":
+        System.out.println(archiveProjects(args.length > 1 ? Integer.parseInt(args[1])
+            : getArchiveAfterDays()));
         break;
-      case "customers":
-        sqlQuery = query.replace("id", "cust_id");
+      case "serve":
+        deadlines.addSink(alerts -> alerts.forEach(System.out::println));
+        startBackgroundTasks();
+        int port = Integer.parseInt(args.length > 1 ? args[1]
+            : System.getProperty("poise.http.port", "8080"));
+        ProjectServer server = new ProjectServer(pool, idAllocator, projectCache, searchIndex,
+            analytics, deadlines, exporter);
+        try {
+          System.out.println("Listening on port " + server.start(port) + "...");
+          Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+          server.awaitStop();
+        } catch (IOException | InterruptedException error) {
+          System.out.println("Server failed: " + error.getMessage());
+          server.stop();
+        }
         break;
       default:
-        System.out.println("Table not found.");
+        System.out.println("Unknown command: " + args[0]);
         break;
     }
-    PreparedStatement prepStatement = connection.prepareStatement(sqlQuery);
-    //setting the id value in the statement
-    prepStatement.setInt(1, id);
-    return prepStatement.executeQuery();
   }
 
   /**
-   * Creates a Person object from a ResultSet.
+   * Rolls back the current connection to a savepoint. If the connection has been dropped it is
+   * left for the pool to replace.
    *
-   * @param resultSet the resultSet for a person
-   * @param role      the role of the person
-   * @return a Person object
-   * @throws SQLException         if a SQL exception occurs
-   * @throws NullPointerException if a null pointer exception occurs
+   * @param savepoint the savepoint to roll back to
    */
-  private static Person createPersonObjectFromResultSet(ResultSet resultSet, String role)
-      throws SQLException, NullPointerException {
-    if (resultSet.next()) {
-      Person person = new Person(role, resultSet.getString(2), resultSet.getString(3),
-          resultSet.getString(4), resultSet.getString(5));
-      person.setId(resultSet.getInt(1));
-      return person;
-    }
-    return null;
+  private static void rollback(Savepoint savepoint) {
+    if (connection == null) {
+      return;
+    }
+    try {
+      if (savepoint != null) {
+        connection.rollback(savepoint);
+      } else {
+        connection.rollback();
+      }
+    } catch (SQLException error) {
+      System.out.println("Unable to roll back changes: " + error.getMessage());
+    }
   }
 
   /**
-   * Updates data for a Person in the database.
+   * Finalises a project selected by the user and generates an invoice if the user has not settled
+   * their fees.
    *
-   * @param role      role of the person
-   * @param tableName table the person is in
-   * @param id        primary key for the person
-   * @throws SQLException if an SQL exception occurs
+   * @param project the project to be finalised
+   * @throws SQLException         if an error occurs with updating the project in the database
+   * @throws NullPointerException if null pointer exception occurs
    */
-  private static void updatePerson(String role, String tableName, int id) throws SQLException {
-    //creating a person object
-    ResultSet personResultSet = getPersonFromDB(tableName, id);
-    Person person = createPersonObjectFromResultSet(personResultSet, role);
-    String columnPrefix = "";
-    if (role.equals("Structural Engineer")) {
-      columnPrefix = "struc_eng_";
-    }
-    if (role.equals("Project Manager")) {
-      columnPrefix = "proj_mgr_";
+  private static void finalise(Project project) throws SQLException, NullPointerException {
+    //if project already finalised
+    if (project.getCompletionDate() != null) {
+      System.out.println("\nProject has already been finalised!");
+      return;
     }
-    if (role.equals("Architect")) {
-      columnPrefix = "architect_";
+
+    int projNum = project.getNum();
+    //setting the completion date as current date
+    Date completionDate = Date.valueOf(LocalDate.now());
+    project.setCompletionDate(completionDate);
+    UnitOfWork work = new UnitOfWork(connection, 1);
+    work.register(project);
+    try {
+      work.flush();
+    } catch (ConcurrentUpdateException conflict) {
+      //the project may have been finalised or changed by someone else
+      connection.rollback();
+      projectCache.invalidate(projNum);
+      System.out.println("\nProject not finalised -- it was changed by someone else. Search for"
+          + " the project again to see the latest details.");
+      return;
     }
-    if (role.equals("Customer")) {
-      columnPrefix = "cust_";
+    System.out.println("\nProject Finalised.\n___________________________________");
+    //printing the invoice with the details of the customer fetched with the project
+    System.out.print(project.getInvoice());
+    //committing changes to database
+    connection.commit();
+    projectCache.put(project);
+    analytics.put(project);
+    deadlines.put(project);
+    //adding the project to the Completed Projects file
+    exportCompletedProjects(connection);
+  }
+
+  /**
+   * Appends the projects finalised since the last export to the Completed Projects file.
+   *
+   * @param exportConnection database connection
+   * @return true if the file was updated, else false
+   */
+  private static boolean exportCompletedProjects(Connection exportConnection) {
+    try {
+      exporter.export(exportConnection);
+      return true;
+    } catch (IOException | SQLException error) {
+      System.out.println("Unable to update the Completed Projects file: " + error.getMessage());
+      return false;
     }
+  }
 
+  /**
+   * Updates data for a Person. The changes are saved with the rest of the project's changes when
+   * the user exits.
+   *
+   * @param project the project being updated
+   * @param person  the stakeholder to update
+   * @throws SQLException if an SQL exception occurs
+   */
+  private static void updatePerson(Project project, Person person) throws SQLException {
     if (person != null) {
+      String role = person.getRole();
+
       while (true) {
         //displaying the current details to the user and requesting them to choose
         //what they want to update
@@ -277,48 +693,36 @@ public class Main {
         String choice = scanner.nextLine();
         if (!choice.equals("1") && !choice.equals("2") && !choice.equals("3") && !choice
             .equals("4")) {
-          exitUpdatingOptions();
+          if (exitUpdatingOptions(project)) {
+            //other cached projects with this stakeholder are now out of date
+            projectCache.invalidatePerson(person);
+          }
           return;
         }
         //updating the details for the Person object
         System.out.println("Enter update:");
         String update = scanner.nextLine();
-        String column = "";
         String oldData = "";
+        //the change is only made to the object until it is saved
         switch (choice) {
           case "1":
-            column = columnPrefix + "name";
             person.setName(update);
             oldData = name;
             break;
           case "2":
-            column = columnPrefix + "phone_num";
             person.setContactNumber(update);
             oldData = phoneNum;
             break;
           case "3":
-            column = columnPrefix + "email";
             person.setEmail(update);
             oldData = email;
             break;
           case "4":
-            column = columnPrefix + "address";
             person.setAddress(update);
             oldData = address;
             break;
         }
-        //updating those changes in the database
-        String query = "UPDATE " + tableName + " SET " + column + "=? WHERE column=?";
-        String sqlUpdate = query.replace("column", columnPrefix + "id");
-        PreparedStatement prepStatement = connection.prepareStatement(sqlUpdate);
-        prepStatement.setString(1, update);
-        prepStatement.setInt(2, id);
-        int rows = prepStatement.executeUpdate();
-        if (rows > 0) {
-          System.out.println("Stakeholder updated [ " + oldData + " -> '" + update + "'].\n");
-        } else {
-          System.out.println("Update failed !");
-        }
+        System.out.println("Stakeholder updated [ " + oldData + " -> '" + update + "'].\n");
       }
     }
   }
@@ -326,24 +730,20 @@ public class Main {
   /**
    * Updates data for a project in the database.
    *
-   * @param resultSet of the project to be updated
+   * @param project the project to be updated
    * @throws SQLException           if a SQL exception occurs
    * @throws NumberFormatException  if a null pointer exception occurs
    * @throws InputMismatchException if an input mismatch exception occurs
    */
-  private static void updateProject(ResultSet resultSet)
+  private static void updateProject(Project project)
       throws SQLException, NumberFormatException, InputMismatchException {
     System.out.println("\nUpdate project selected.");
-    // project selected by the user
-    String statement = "UPDATE projects SET column=? WHERE proj_num=?";
-    String projectInfo = getProjectStringFromResultSet(resultSet);
-    int strucEngId = resultSet.getInt("struc_eng_id");
-    int projMgrId = resultSet.getInt("proj_mgr_id");
-    int architectId = resultSet.getInt("architect_id");
-    int custId = resultSet.getInt("cust_id");
     while (true) {
-      System.out.println(
-          projectInfo + getStakeholdersString(strucEngId, projMgrId, architectId, custId));
+      //the project is edited in memory so it is taken out of the cache until it is saved, again
+      //after the changes to a stakeholder were saved
+      projectCache.invalidate(project.getNum());
+      System.out.println(ProjectRenderer.appendStakeholders(
+          ProjectRenderer.appendProject(new StringBuilder(1024), project), project));
       //showing update options
       showUpdateProjectOptions();
       //getting input from user for choice from options
@@ -352,114 +752,131 @@ public class Main {
           && !choice.equals("5") && !choice.equals("6") && !choice.equals("7") && !choice
           .equals("8") && !choice.equals("9") && !choice.equals("10") && !choice.equals("11")
           && !choice.equals("12")) {
-        exitUpdatingOptions();
+        exitUpdatingOptions(project);
         break;
       }
-      String column = "";
       switch (choice) {
-        case "1":
-          column = "proj_name";
-          break;
-        case "2":
-          column = "building_type";
-          break;
-        case "3":
-          column = "address";
-          break;
-        case "4":
-          column = "erf_num";
-          break;
-        case "5":
-          column = "total_fee";
-          break;
-        case "6":
-          column = "amount_paid";
-          break;
-        case "7":
-          column = "deadline";
-          break;
         case "8":
-          if (resultSet.getDate(10) == null) {
+          if (project.getCompletionDate() == null) {
             System.out
                 .println("\nCannot update Completion Date -- Project has not been finalised.\n");
             return;
           }
-          column = "completion_date";
           break;
         case "9":
           //calling updatePerson() to update details for a person
-          updatePerson("Structural Engineer", "structural_engineers", strucEngId);
+          updatePerson(project, project.getStakeholder("Structural Engineer"));
           break;
         case "10":
-          updatePerson("Project Manager", "project_managers", projMgrId);
+          updatePerson(project, project.getStakeholder("Project Manager"));
           break;
         case "11":
-          updatePerson("Architect", "architects", architectId);
+          updatePerson(project, project.getStakeholder("Architect"));
           break;
         case "12":
-          updatePerson("Customer", "customers", custId);
+          updatePerson(project, project.getStakeholder("Customer"));
+          break;
+        default:
           break;
       }
-      //if updating a project detail that is not for a person
+      //if updating a project detail that is not for a person, the change is only made to the
+      //object until it is saved
       if (!choice.equals("9") && !choice.equals("10") && !choice.equals("11")
           && !choice.equals("12")) {
-        String query = statement.replace("column", column);
-        int id = resultSet.getInt(1);
-        PreparedStatement prepStatement = connection.prepareStatement(query);
-        prepStatement.setInt(2, id);
         System.out.println("Enter update:");
         String update = "";
         String oldData = "";
-        int oldDataIndex = Integer.parseInt(choice) + 2;
         if (choice.equals("1") || choice.equals("2") || choice.equals("3") || choice
             .equals("4")) {
           update = scanner.nextLine();
-          prepStatement.setString(1, update);
-          oldData = resultSet.getString(oldDataIndex);
+          switch (choice) {
+            case "1":
+              oldData = project.getName();
+              project.setName(update);
+              break;
+            case "2":
+              oldData = project.getBuildingType();
+              project.setBuildingType(update);
+              break;
+            case "3":
+              oldData = project.getAddress();
+              project.setAddress(update);
+              break;
+            default:
+              oldData = project.getErfNum();
+              project.setErfNum(update);
+              break;
+          }
         }
 
         if (choice.equals("5") || choice.equals("6")) {
-          double amount = Double.parseDouble(scanner.nextLine());
-          prepStatement.setDouble(1, amount);
-          oldData = "R" + String.format("%.2f", resultSet.getDouble(oldDataIndex));
-          update = "R" + String.format("%.2f", amount);
+          long amount = Money.parse(scanner.nextLine());
+          if (choice.equals("5")) {
+            oldData = "R" + Money.format(project.getTotalFeeCents());
+            project.setTotalFeeCents(amount);
+          } else {
+            oldData = "R" + Money.format(project.getAmountPaidCents());
+            project.setAmountPaidCents(amount);
+          }
+          update = "R" + Money.format(amount);
         }
         if (choice.equals("7") || choice.equals("8")) {
           Date date = getDateInput();
           update = date.toString();
-          prepStatement.setDate(1, date);
-          oldData = resultSet.getDate(oldDataIndex).toString();
-        }
-        //updating the project
-        int rows = prepStatement.executeUpdate();
-        if (rows > 0) {
-          System.out.println("Update complete [" + oldData + " -> " + update + "].\n");
-          projectInfo = projectInfo.replace(oldData, update);
-        } else {
-          System.out.println("Update failed.");
+          if (choice.equals("7")) {
+            oldData = project.getDeadline().toString();
+            project.setDeadline(date);
+          } else {
+            oldData = project.getCompletionDate().toString();
+            project.setCompletionDate(date);
+          }
         }
+        System.out.println("Update complete [" + oldData + " -> " + update + "].\n");
       }
     }
   }
 
   /**
-   * Exits update options and allows user option to save changes to database or not.
+   * Exits update options and allows user option to save changes to database or not. The changed
+   * fields of the project and its stakeholders are saved with one update for each changed row,
+   * and once they are committed the cache, search index, totals and deadline alerts are updated.
    *
+   * @param project the project being updated
+   * @return true if the changes were saved, false if they were discarded
    * @throws SQLException if an SQL exception occurs
    */
-  private static void exitUpdatingOptions() throws SQLException {
+  private static boolean exitUpdatingOptions(Project project) throws SQLException {
+    UnitOfWork work = new UnitOfWork(connection, 5);
+    work.register(project);
     while (true) {
       System.out.println("Exiting update...\nDo you want to save changes (Y/N) ?\nEnter option:");
       String option = scanner.nextLine().toLowerCase();
       switch (option) {
         case "y":
           System.out.println("Saving changes...");
+          try {
+            work.flush();
+          } catch (ConcurrentUpdateException conflict) {
+            //someone else saved the project first, so these changes would overwrite theirs
+            work.discard();
+            connection.rollback();
+            projectCache.invalidate(project.getNum());
+            System.out.println("Changes not saved -- the project was changed by someone else while"
+                + " you were editing it.\nSearch for the project again to see the latest details"
+                + " and make your changes again.");
+            return false;
+          }
           connection.commit();
-          return;
+          projectCache.put(project);
+          searchIndex.put(project);
+          analytics.put(project);
+          deadlines.put(project);
+          return true;
         case "n":
           System.out.println("Discarding changes...");
+          work.discard();
           connection.rollback();
-          return;
+          return false;
         default:
           System.out.println("Invalid input. Please select an option.");
           break;
@@ -475,14 +892,8 @@ public class Main {
   private static void viewProjectsToComplete() throws SQLException {
     System.out.println("\n_________________________\nProjects to be completed:"
         + "\n_________________________");
-    Statement statement = connection.createStatement();
-    //getting all incomplete projects and printing them
-    ResultSet resultSet = statement
-        .executeQuery("SELECT * FROM projects WHERE completion_date IS NULL");
-    while (resultSet.next()) {
-      System.out.println(getProjectStringFromResultSet(resultSet));
-      System.out.println("-----------------------------------------------------------");
-    }
+    //streaming all incomplete projects to the console
+    writeReport(ProjectReport.projectsToComplete());
     returnToMenu();
   }
 
@@ -495,17 +906,24 @@ public class Main {
     System.out.println("\n________________________\nProjects Past Deadline:"
         + "\n________________________");
     Date date = Date.valueOf(LocalDate.now());
-    Statement statement = connection.createStatement();
-    ResultSet resultSet = statement
-        .executeQuery(
-            "SELECT * FROM projects WHERE deadline<'" + date + "' AND completion_date IS NULL");
-    while (resultSet.next()) {
-      System.out.println(getProjectStringFromResultSet(resultSet));
-      System.out.println("-----------------------------------------------------------");
-    }
+    writeReport(ProjectReport.pastDueProjects(date));
     returnToMenu();
   }
 
+  /**
+   * Writes a report to the console through a buffered writer.
+   *
+   * @param report the report to write
+   * @throws SQLException if an SQL exception occurs
+   */
+  private static void writeReport(ProjectReport report) throws SQLException {
+    Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 65536);
+    try (Connection readConnection = router.getReadConnection(session)) {
+      report.write(readConnection, out);
+    } catch (IOException error) {
+      System.out.println("Unable to show projects: " + error.getMessage());
+    }
+  }
 
   /**
    * Returns to the main menu.
@@ -527,7 +945,8 @@ public class Main {
         + "2 - Search - view, update or finalise projects.\n"
         + "3 - View projects to be completed\n"
         + "4 - View projects past due date\n"
-        + "5 - Close Project Manager");
+        + "5 - Close Project Manager\n"
+        + "6 - View portfolio totals");
   }
 
   /**
@@ -554,7 +973,7 @@ public class Main {
     /* asking user to try again or return to main menu if they enter a name
      * that is already taken
      */
-    while (Project.projectExists(name, connection)) {
+    while (projectCache.nameExists(connection, name)) {
       System.out.println(
           "This name is already taken. \nEnter: 1 - Try again\nAny other key - back to Menu");
       String option = scanner.nextLine();
@@ -573,16 +992,16 @@ public class Main {
     String address = scanner.nextLine();
     System.out.println("ERF no.: ");
     String erfNum = scanner.nextLine();
-    double totalFee;
-    double amountPaid;
+    long totalFee;
+    long amountPaid;
     //loop to request input until valid values are entered
     while (true) {
       //try catch block to handle exception
       try {
         System.out.println("Total Fee: ");
-        totalFee = Double.parseDouble(scanner.nextLine());
+        totalFee = Money.parse(scanner.nextLine());
         System.out.println("Amount Paid: ");
-        amountPaid = Double.parseDouble(scanner.nextLine());
+        amountPaid = Money.parse(scanner.nextLine());
         break;
       } catch (NumberFormatException error) {
         System.out.println("Invalid entry. Try again.");
@@ -622,7 +1041,7 @@ public class Main {
     Project project = Project.createNewProject(name, buildingType, address, erfNum,
         totalFee, amountPaid, deadline);
     //setting project number
-    project.setNumForNewProject(connection);
+    project.setNumForNewProject(idAllocator);
     // adding the stakeholders to the stakeholders array list in the project object
     project.addStakeholder(strucEng);
     project.addStakeholder(projMgr);
@@ -633,6 +1052,10 @@ public class Main {
      *and that the project has been added.*/
     if (project.addProjectToDb(connection)) {
       connection.commit();
+      projectCache.put(project);
+      searchIndex.put(project);
+      analytics.put(project);
+      deadlines.put(project);
       System.out.println(
           "\n__________________\nProject added.\n__________________\n" + project.toString());
     } else {
@@ -658,36 +1081,47 @@ public class Main {
       switch (choice.toLowerCase()) {
         //getting an existing person
         case "y":
-          Statement statement = connection.createStatement();
-          ResultSet countSet = statement.executeQuery("SELECT COUNT(*) FROM " + tableName);
-          countSet.next();
-          int count = countSet.getInt(1);
-          if (count > 0) {
-            for (int i = 1; i <= count; i++) {
-              ResultSet personSet = getPersonFromDB(tableName, i);
-              personSet.next();
-              String name = personSet.getString(2);
-              String phoneNum = personSet.getString(3);
-              System.out.println(i + " - " + name + " | " + phoneNum);
+          //showing the existing people a page at a time
+          StakeholderBrowser browser = new StakeholderBrowser(role, 10);
+          List<Person> people = browser.first(connection);
+          if (people.isEmpty()) {
+            System.out.println("\nNo existing " + role + "s.\n");
+            break;
+          }
+          while (true) {
+            for (Person person : people) {
+              System.out.println(
+                  person.getId() + " - " + person.getName() + " | " + person.getContactNumber());
             }
-            while (true) {
-              System.out.println("Select an option (0 - to go back):");
-              String option = scanner.nextLine();
+            if (people.isEmpty()) {
+              System.out.println("No " + role + "s match '" + browser.getFilter() + "'.");
+            }
+            System.out.println("Select by number, " + (browser.hasNext() ? "N - next page, " : "")
+                + (browser.hasPrevious() ? "P - previous page, " : "")
+                + "F - filter by name or phone (0 - to go back):");
+            String option = scanner.nextLine().trim();
+            if (option.equalsIgnoreCase("n")) {
+              people = browser.next(connection);
+            } else if (option.equalsIgnoreCase("p")) {
+              people = browser.previous(connection);
+            } else if (option.equalsIgnoreCase("f")) {
+              System.out.println("Filter (empty to show all):");
+              people = browser.filter(connection, scanner.nextLine());
+            } else {
               try {
-                int index = Integer.parseInt(option);
-                if (index == 0) {
+                int id = Integer.parseInt(option);
+                if (id == 0) {
                   break;
-                } else if (index <= count) {
-                  return createPersonObjectFromResultSet(getPersonFromDB(tableName, index), role);
-                } else {
-                  System.out.println("Invalid input. Try again.\n");
                 }
+                Person selected = browser.select(id);
+                if (selected != null) {
+                  return selected;
+                }
+                System.out.println("Invalid input. Try again.\n");
               } catch (NumberFormatException error) {
                 System.out.println("Invalid input. Enter a number.\n");
               }
             }
-          } else {
-            System.out.println("\nNo existing " + role + "s.\n");
           }
           break;
         //creating and updating a new person for the database
@@ -719,7 +1153,7 @@ public class Main {
           String address = scanner.nextLine();
           //returning a Person object with the values inputted
           Person newPerson = new Person(role, name, contactNum, email, address);
-          newPerson.setNewId(connection, tableName);
+          newPerson.setNewId(idAllocator, tableName);
           //adding to the database
           newPerson.addPersonToDB(connection);
           return newPerson;
@@ -765,14 +1199,15 @@ public class Main {
   }
 
   /**
-   * Searches a project by number or name and returns it.
+   * Searches a project by number or name and returns it with its stakeholders.
    *
-   * @return resultSet for project
-   * @throws SQLException if an SQL exception occurs
+   * @param readConnection database connection to read the project with
+   * @return the project, or null if not found
+   * @throws SQLException          if an SQL exception occurs
+   * @throws NumberFormatException if the project number entered is not a number
    */
-  private static ResultSet userSelectProjectFromDB() throws SQLException {
-    String statement = "SELECT * FROM projects WHERE col=$";
-    String query;
+  private static Project userSelectProjectFromDB(Connection readConnection)
+      throws SQLException, NumberFormatException {
     while (true) {
       System.out.print("Search for project by:\t1 - Project name\t2 - Project number"
           + "\nEnter option (1 or 2):");
@@ -780,86 +1215,45 @@ public class Main {
       if (choice.equals("1")) {
         System.out.println("Search by project name:");
         // user to search for the project by name
-        query = statement.replace("col", "proj_name")
-            .replace("$", "'" + scanner.nextLine().trim() + "'");
-        break;
+        String projectName = scanner.nextLine().trim();
+        Project project = projectCache.getByName(readConnection, projectName);
+        //offering the closest matches if the name is not found exactly
+        return project != null ? project : selectFromMatches(readConnection, projectName);
       } else if (choice.equals("2")) {
         System.out.println("Search by project number:");
-        String projectNum = scanner.nextLine();
-        query = statement.replace("col", "proj_num").replace("$", projectNum);
-        break;
+        int projectNum = Integer.parseInt(scanner.nextLine().trim());
+        return projectCache.getByNum(readConnection, projectNum);
       } else {
         System.out.println("Incorrect input. Please select an option.\n");
       }
     }
-    PreparedStatement prepStatement = connection.prepareStatement(query);
-    return prepStatement.executeQuery();
   }
 
   /**
-   * Returns a string with the information for a project.
+   * Shows the projects closest to a name that was not found and lets the user pick one.
    *
-   * @param resultSet of the project
-   * @return a string with the information for a project
+   * @param readConnection database connection to read the project with
+   * @param projectName    the name searched for
+   * @return the project picked, or null if none was picked
    * @throws SQLException if an SQL exception occurs
    */
-  private static String getProjectStringFromResultSet(ResultSet resultSet) throws SQLException {
-
-    //string with all the object properties and values
-    int id = resultSet.getInt(1);
-    String projectInfo =
-        "\nProject details:\n-----------------\n[Project no.: " + id + "]\nName: " + resultSet
-            .getString(3)
-            + "\nBuilding type: " + resultSet.getString(4)
-            + "\nAddress: " + resultSet.getString(5) + "\nERF no.: " + resultSet.getString(6)
-            + "\nTotal fee: R" + String
-            .format("%.2f", resultSet.getDouble(7))
-            + "\nAmount paid: R" + String.format("%.2f", resultSet.getDouble(8)) + "\nDeadline: "
-            + resultSet.getDate(9);
-    String finalised;
-    // if project has been finalised include the completion date in the string
-    if (resultSet.getDate(10) != null) {
-      finalised = "Yes";
-      projectInfo += "\nCompletion date: " + resultSet.getDate(10);
-    } else {
-      finalised = "No";
+  private static Project selectFromMatches(Connection readConnection, String projectName)
+      throws SQLException {
+    List<ProjectSearchIndex.Match> matches = searchIndex.search(projectName, 10);
+    if (matches.isEmpty()) {
+      return null;
+    }
+    System.out.println("\nNo exact match. Closest projects:");
+    for (ProjectSearchIndex.Match match : matches) {
+      System.out.println(match);
+    }
+    System.out.println("Enter project number (any other key to go back):");
+    try {
+      return projectCache.getByNum(readConnection,
+          Integer.parseInt(scanner.nextLine().trim()));
+    } catch (NumberFormatException error) {
+      return null;
     }
-    projectInfo += "\nFinalised: " + finalised;
-    return projectInfo;
-  }
-
-  /**
-   * Returns a string with the details of the stakeholders for a project using the primary key(id)
-   * passed in.
-   *
-   * @param strucEngId  primary key for a structural engineer
-   * @param projMgrId   primary key for a project manager
-   * @param architectId primary key for an architect
-   * @param custId      primary key for a customer
-   * @return a string with the details of a person
-   * @throws SQLException         if a SQL exception occurs
-   * @throws NullPointerException if a null pointer exception occurs
-   */
-  private static String getStakeholdersString(int strucEngId, int projMgrId, int architectId,
-      int custId) throws SQLException, NullPointerException {
-    String stakeholders = "\n\nStakeholders\n-------------\n";
-    //creating person object from the database
-    Person strucEng = createPersonObjectFromResultSet(
-        getPersonFromDB("structural_engineers", strucEngId),
-        "Structural Engineer");
-    Person projMgr = createPersonObjectFromResultSet(getPersonFromDB("project_managers", projMgrId),
-        "Project Manager");
-    Person architect = createPersonObjectFromResultSet(getPersonFromDB("architects", architectId),
-        "Architect");
-    Person customer = createPersonObjectFromResultSet(getPersonFromDB("customers", custId),
-        "Customer");
-    //string containing the stakeholders details
-    stakeholders += strucEng.toString() + "\n\n"
-        + projMgr.toString() + "\n\n"
-        + architect.toString() + "\n\n"
-        + customer.toString();
-
-    return stakeholders;
   }
 }
 
@@ -0,0 +1,407 @@
+//importing libraries
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.sql.PreparedStatement;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics records how long database work takes. Each SQL template and each menu operation gets a
+ * latency histogram with its count, rows and percentiles, and the number of statements prepared,
+ * commits and rollbacks are counted. The numbers are published over JMX under the "poise" domain
+ * and can be written out as a text snapshot.
+ *
+ * <p>Recording only adds to counters, so it is cheap enough to leave on.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class Metrics {
+
+  private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+  //timer of each SQL string prepared, so its template is only built the first time. Limited, so
+  //SQL with values written into it cannot fill memory
+  private static final int MAX_SQL_STRINGS = 2000;
+  private static final Map<String, Timer> timersBySql = new ConcurrentHashMap<>();
+  private static final LongAdder prepares = new LongAdder();
+  private static final LongAdder commits = new LongAdder();
+  private static final LongAdder rollbacks = new LongAdder();
+
+  //database time and rows of the operation running on each thread
+  private static final ThreadLocal<long[]> operation = new ThreadLocal<>();
+
+  //quoted strings and numbers written into the SQL, and lists of parameters after IN
+  private static final Pattern LITERAL =
+      Pattern.compile("'(?:[^']|'')*'|(?<![\\w.])\\d+(?:\\.\\d+)?(?![\\w.])");
+  private static final Pattern IN_LIST =
+      Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+
+  static {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      server.registerMBean(new Counters(), new ObjectName("poise:type=Counters"));
+    } catch (JMException error) {
+      System.err.println("Unable to publish metrics over JMX: " + error.getMessage());
+    }
+  }
+
+  /**
+   * Wraps a prepared statement so each execution is timed under its SQL template and the rows it
+   * returns or changes are counted.
+   *
+   * @param statement the statement
+   * @param sql       the SQL it was prepared from
+   * @return the timed statement
+   */
+  public static PreparedStatement instrument(PreparedStatement statement, String sql) {
+    prepares.increment();
+    Timer timer = timersBySql.get(sql);
+    if (timer == null) {
+      timer = timer("sql", template(sql));
+      if (timersBySql.size() < MAX_SQL_STRINGS) {
+        timersBySql.put(sql, timer);
+      }
+    }
+    return new TimedStatement(statement, timer);
+  }
+
+  /**
+   * Returns the template of an SQL statement, with each literal replaced by ? and each list of
+   * parameters after IN written as one parameter, so statements that only differ in their values
+   * share a timer.
+   *
+   * @param sql the SQL
+   * @return the SQL template
+   */
+  static String template(String sql) {
+    String template = LITERAL.matcher(sql).replaceAll("?");
+    return IN_LIST.matcher(template).replaceAll("IN (?)");
+  }
+
+  /**
+   * Records an execution of a statement, adding it to the current operation.
+   *
+   * @param timer timer for the statement
+   * @param nanos time taken
+   * @param rows  rows changed
+   */
+  static void record(Timer timer, long nanos, long rows) {
+    timer.record(nanos, rows);
+    long[] current = operation.get();
+    if (current != null) {
+      current[0] += nanos;
+      current[1] += rows;
+    }
+  }
+
+  /**
+   * Records a row read from a ResultSet, adding it to the current operation.
+   *
+   * @param timer timer for the statement that returned the ResultSet
+   */
+  static void recordRow(Timer timer) {
+    timer.rows.increment();
+    long[] current = operation.get();
+    if (current != null) {
+      current[1]++;
+    }
+  }
+
+  /**
+   * Starts an operation on this thread. The database time and rows of the statements run until
+   * {@link #endOperation(String)} are recorded under the operation's name.
+   */
+  public static void beginOperation() {
+    operation.set(new long[2]);
+  }
+
+  /**
+   * Ends the operation on this thread and records its database time and rows.
+   *
+   * @param name name of the operation
+   */
+  public static void endOperation(String name) {
+    long[] current = operation.get();
+    operation.remove();
+    if (current != null) {
+      timer("operation", name).record(current[0], current[1]);
+    }
+  }
+
+  /**
+   * Counts a commit.
+   */
+  public static void recordCommit() {
+    commits.increment();
+  }
+
+  /**
+   * Counts a rollback.
+   */
+  public static void recordRollback() {
+    rollbacks.increment();
+  }
+
+  /**
+   * Returns the timer for a name, creating and publishing it the first time.
+   *
+   * @param type type of the timer, "sql" or "operation"
+   * @param name SQL or operation name
+   * @return the timer
+   */
+  private static Timer timer(String type, String name) {
+    Timer timer = timers.get(type + ":" + name);
+    if (timer != null) {
+      return timer;
+    }
+    return timers.computeIfAbsent(type + ":" + name, key -> {
+      Timer created = new Timer();
+      try {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(created, new ObjectName(
+            "poise:type=" + type + ",name=" + ObjectName.quote(name)));
+      } catch (JMException error) {
+        //the timer still records if it cannot be published
+      }
+      return created;
+    });
+  }
+
+  /**
+   * Writes a snapshot of all counters and timers.
+   *
+   * @param out writer to write to
+   * @throws IOException if the snapshot cannot be written
+   */
+  public static void writeSnapshot(Writer out) throws IOException {
+    out.write("Prepares: " + prepares.sum() + " | commits: " + commits.sum() + " | rollbacks: "
+        + rollbacks.sum() + "\n");
+    out.write(String.format("%-12s %10s %10s %10s %10s %10s %10s  %s%n", "type", "count", "rows",
+        "p50 ms", "p99 ms", "p999 ms", "max ms", "name"));
+    for (Map.Entry<String, Timer> entry : new TreeMap<>(timers).entrySet()) {
+      String[] key = entry.getKey().split(":", 2);
+      Timer timer = entry.getValue();
+      out.write(String.format("%-12s %10d %10d %10.3f %10.3f %10.3f %10.3f  %s%n", key[0],
+          timer.getCount(), timer.getRows(), timer.getP50Millis(), timer.getP99Millis(),
+          timer.getP999Millis(), timer.getMaxMillis(), key[1].replaceAll("\\s+", " ")));
+    }
+    out.flush();
+  }
+
+  /**
+   * Published counters for the whole program.
+   */
+  public interface CountersMXBean {
+
+    /**
+     * Returns the number of statements prepared.
+     *
+     * @return number of prepares
+     */
+    long getPrepareCount();
+
+    /**
+     * Returns the number of commits.
+     *
+     * @return number of commits
+     */
+    long getCommitCount();
+
+    /**
+     * Returns the number of rollbacks.
+     *
+     * @return number of rollbacks
+     */
+    long getRollbackCount();
+  }
+
+  /**
+   * Counters published over JMX.
+   */
+  private static final class Counters implements CountersMXBean {
+
+    @Override
+    public long getPrepareCount() {
+      return prepares.sum();
+    }
+
+    @Override
+    public long getCommitCount() {
+      return commits.sum();
+    }
+
+    @Override
+    public long getRollbackCount() {
+      return rollbacks.sum();
+    }
+  }
+
+  /**
+   * Published statistics for one timer.
+   */
+  public interface TimerMXBean {
+
+    /**
+     * Returns the number of times recorded.
+     *
+     * @return count
+     */
+    long getCount();
+
+    /**
+     * Returns the number of rows returned or changed.
+     *
+     * @return rows
+     */
+    long getRows();
+
+    /**
+     * Returns the median time.
+     *
+     * @return 50th percentile in milliseconds
+     */
+    double getP50Millis();
+
+    /**
+     * Returns the 99th percentile time.
+     *
+     * @return 99th percentile in milliseconds
+     */
+    double getP99Millis();
+
+    /**
+     * Returns the 99.9th percentile time.
+     *
+     * @return 99.9th percentile in milliseconds
+     */
+    double getP999Millis();
+
+    /**
+     * Returns the longest time.
+     *
+     * @return maximum in milliseconds
+     */
+    double getMaxMillis();
+  }
+
+  /**
+   * Latency histogram with buckets that grow in powers of two, each split into 16 sub-buckets,
+   * so percentiles are within about 6% of the real value.
+   */
+  static final class Timer implements TimerMXBean {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a time.
+     *
+     * @param nanos      time in nanoseconds
+     * @param rowsCount  rows returned or changed
+     */
+    void record(long nanos, long rowsCount) {
+      long value = Math.max(0, nanos);
+      buckets.incrementAndGet(bucketOf(value));
+      count.increment();
+      rows.add(rowsCount);
+      max.accumulate(value);
+    }
+
+    /**
+     * Returns the bucket for a value.
+     *
+     * @param value value in nanoseconds
+     * @return bucket index
+     */
+    private static int bucketOf(long value) {
+      if (value < SUB_BUCKETS) {
+        return (int) value;
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+      return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the highest value that falls in a bucket.
+     *
+     * @param bucket bucket index
+     * @return value in nanoseconds
+     */
+    private static long upperBoundOf(int bucket) {
+      if (bucket < SUB_BUCKETS) {
+        return bucket;
+      }
+      int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+      long sub = bucket % SUB_BUCKETS;
+      long base = (SUB_BUCKETS | sub) << (exponent - SUB_BUCKET_BITS);
+      return base + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Returns a percentile of the recorded times.
+     *
+     * @param percentile percentile between 0 and 100
+     * @return the time in milliseconds
+     */
+    double percentileMillis(double percentile) {
+      long total = count.sum();
+      if (total == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+      long seen = 0;
+      for (int i = 0; i < buckets.length(); i++) {
+        seen += buckets.get(i);
+        if (seen >= rank) {
+          return Math.min(upperBoundOf(i), max.get()) / 1e6;
+        }
+      }
+      return max.get() / 1e6;
+    }
+
+    @Override
+    public long getCount() {
+      return count.sum();
+    }
+
+    @Override
+    public long getRows() {
+      return rows.sum();
+    }
+
+    @Override
+    public double getP50Millis() {
+      return percentileMillis(50);
+    }
+
+    @Override
+    public double getP99Millis() {
+      return percentileMillis(99);
+    }
+
+    @Override
+    public double getP999Millis() {
+      return percentileMillis(99.9);
+    }
+
+    @Override
+    public double getMaxMillis() {
+      return max.get() / 1e6;
+    }
+  }
+}
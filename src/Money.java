@@ -0,0 +1,150 @@
+//importing libraries
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Money reads, converts and writes amounts of money held as a whole number of cents in a long, so
+ * fees and payments are added and subtracted exactly. Amounts are stored in the database as
+ * decimals and read and written with {@link BigDecimal}.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public final class Money {
+
+  /**
+   * Money only has static methods.
+   */
+  private Money() {
+  }
+
+  /**
+   * Reads an amount typed by a user or written in a file, such as "1500", "R1500.5" or
+   * "-20.75". Digits after the second decimal place are rounded half up.
+   *
+   * @param text the amount
+   * @return the amount in cents
+   * @throws NumberFormatException if the text is not an amount
+   */
+  public static long parse(String text) {
+    String amount = text.trim();
+    if (amount.startsWith("R")) {
+      amount = amount.substring(1);
+    }
+    boolean negative = amount.startsWith("-");
+    int position = negative || amount.startsWith("+") ? 1 : 0;
+    long cents = 0;
+    int digits = 0;
+    int decimals = -1;
+    boolean roundUp = false;
+    for (; position < amount.length(); position++) {
+      char c = amount.charAt(position);
+      if (c == '.' && decimals < 0) {
+        decimals = 0;
+      } else if (c >= '0' && c <= '9') {
+        digits++;
+        if (decimals < 0) {
+          cents = Math.addExact(Math.multiplyExact(cents, 10), c - '0');
+        } else if (decimals < 2) {
+          cents = Math.addExact(Math.multiplyExact(cents, 10), c - '0');
+          decimals++;
+        } else if (decimals == 2) {
+          //only the third decimal place decides the rounding
+          roundUp = c >= '5';
+          decimals++;
+        }
+      } else {
+        throw new NumberFormatException("Not an amount: \"" + text + "\"");
+      }
+    }
+    if (digits == 0) {
+      throw new NumberFormatException("Not an amount: \"" + text + "\"");
+    }
+    //adding the missing decimal places
+    for (int i = Math.max(decimals, 0); i < 2; i++) {
+      cents = Math.multiplyExact(cents, 10);
+    }
+    if (roundUp) {
+      cents = Math.addExact(cents, 1);
+    }
+    return negative ? -cents : cents;
+  }
+
+  /**
+   * Converts an amount in cents to rand.
+   *
+   * @param cents the amount in cents
+   * @return the amount in rand, with two decimal places
+   */
+  public static BigDecimal toDecimal(long cents) {
+    return BigDecimal.valueOf(cents, 2);
+  }
+
+  /**
+   * Converts an amount in rand to cents, rounding half up to the nearest cent.
+   *
+   * @param amount the amount in rand
+   * @return the amount in cents
+   * @throws ArithmeticException if the amount is too large
+   */
+  public static long fromDecimal(BigDecimal amount) {
+    return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+  }
+
+  /**
+   * Reads an amount from a column of the current row of a ResultSet.
+   *
+   * @param resultSet the ResultSet
+   * @param column    name of the column
+   * @return the amount in cents, or 0 if it is null
+   * @throws SQLException if there are errors accessing the database
+   */
+  public static long read(ResultSet resultSet, String column) throws SQLException {
+    BigDecimal amount = resultSet.getBigDecimal(column);
+    return amount == null ? 0 : fromDecimal(amount);
+  }
+
+  /**
+   * Reads an amount from a column of the current row of a ResultSet, by the column's position.
+   *
+   * @param resultSet the ResultSet
+   * @param column    position of the column, from 1
+   * @return the amount in cents, or 0 if it is null
+   * @throws SQLException if there are errors accessing the database
+   */
+  public static long read(ResultSet resultSet, int column) throws SQLException {
+    BigDecimal amount = resultSet.getBigDecimal(column);
+    return amount == null ? 0 : fromDecimal(amount);
+  }
+
+  /**
+   * Appends an amount with two decimal places, such as "1500.00", without creating any objects.
+   *
+   * @param out   builder to append to
+   * @param cents the amount in cents
+   * @return the builder
+   */
+  public static StringBuilder append(StringBuilder out, long cents) {
+    if (cents < 0) {
+      out.append('-');
+    }
+    //the remainder is negative for negative amounts
+    long rand = Math.abs(cents / 100);
+    int remainder = (int) Math.abs(cents % 100);
+    return out.append(rand).append('.').append((char) ('0' + remainder / 10))
+        .append((char) ('0' + remainder % 10));
+  }
+
+  /**
+   * Returns an amount with two decimal places, such as "1500.00".
+   *
+   * @param cents the amount in cents
+   * @return the amount
+   */
+  public static String format(long cents) {
+    return append(new StringBuilder(24), cents).toString();
+  }
+}
@@ -4,6 +4,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Person class is used for storing person information. It contains methods to manipulate a person
@@ -20,6 +22,13 @@ public class Person {
   private String contactNumber;
   private String email;
   private String address;
+  //version of the row when it was read, increased by each update
+  private int version = 0;
+  //columns changed since the person was read or saved, without the table's prefix
+  private final Set<String> dirtyColumns = new HashSet<>();
+
+  //columns that can be updated without the table's prefix, in the order they are written
+  static final String[] COLUMNS = {"name", "phone_num", "email", "address"};
 
   /**
    * This is a constructor to initialize a Person object from values passed in.
@@ -57,70 +66,106 @@ public class Person {
   }
 
   /**
-   * Sets the ID based on the last ID in the column.
+   * Sets the ID to the next free ID for the table.
    *
-   * @param connection database connection
+   * @param idAllocator allocator for new IDs
    * @param tableName name of the table
    * @throws SQLException if there are errors accessing the database
    */
-  public void setNewId(Connection connection, String tableName) throws SQLException {
-    String columnID = "";
-    switch (tableName) {
-      case "structural_engineers":
-        columnID = "struc_eng_id";
-        break;
-      case "project_managers":
-        columnID = "proj_mgr_id";
-        break;
-      case "architects":
-        columnID = "architect_id";
-        break;
-      case "customers":
-        columnID = "cust_id";
-        break;
-    }
-    String query =
-        "SELECT " + columnID + " FROM " + tableName + " ORDER BY " + columnID + " DESC LIMIT 1";
-    PreparedStatement preparedStatement = connection.prepareStatement(query);
-    ResultSet resultSet = preparedStatement.executeQuery();
-    if (resultSet.next()) {
-      this.id = resultSet.getInt(1) + 1;
+  public void setNewId(IdAllocator idAllocator, String tableName) throws SQLException {
+    this.id = idAllocator.nextId(tableName);
+  }
+
+  /**
+   * Returns the database table for a role.
+   *
+   * @param role role of a person
+   * @return name of the table for the role
+   * @throws IllegalArgumentException if the role is not known
+   */
+  public static String getTableName(String role) {
+    switch (role) {
+      case "Structural Engineer":
+        return "structural_engineers";
+      case "Project Manager":
+        return "project_managers";
+      case "Architect":
+        return "architects";
+      case "Customer":
+        return "customers";
+      default:
+        throw new IllegalArgumentException("Unknown role: " + role);
     }
   }
 
   /**
-   * Adds a person to the database.
+   * Returns the prefix of the column names for a role, e.g. "cust_" for "cust_name".
    *
-   * @param connection database connection
-   * @throws SQLException if there are errors accessing the database
+   * @param role role of a person
+   * @return column prefix for the role
+   * @throws IllegalArgumentException if the role is not known
    */
-  public void addPersonToDB(Connection connection) throws SQLException {
-    String statement = "INSERT INTO $ VALUES(?,?,?,?,?)";
-    String tableName = "";
-    switch (this.role) {
+  public static String getColumnPrefix(String role) {
+    switch (role) {
       case "Structural Engineer":
-        tableName = "structural_engineers";
-        break;
+        return "struc_eng_";
       case "Project Manager":
-        tableName = "project_managers";
-        break;
+        return "proj_mgr_";
       case "Architect":
-        tableName = "architects";
-        break;
+        return "architect_";
       case "Customer":
-        tableName = "customers";
-        break;
+        return "cust_";
       default:
-        System.out.println("Unable to add person to database.");
+        throw new IllegalArgumentException("Unknown role: " + role);
     }
-    String update = statement.replace("$", tableName);
-    PreparedStatement preparedStatement = connection.prepareStatement(update);
+  }
+
+  /**
+   * Creates a Person object from the current row of a ResultSet containing the columns of the
+   * table for the role.
+   *
+   * @param resultSet the ResultSet positioned on a row
+   * @param role      role of the person
+   * @return a Person object
+   * @throws SQLException if there are errors accessing the database
+   */
+  public static Person createPersonFromResultSet(ResultSet resultSet, String role)
+      throws SQLException {
+    String columnPrefix = getColumnPrefix(role);
+    Person person = new Person(role, resultSet.getString(columnPrefix + "name"),
+        resultSet.getString(columnPrefix + "phone_num"),
+        resultSet.getString(columnPrefix + "email"),
+        resultSet.getString(columnPrefix + "address"));
+    person.setId(resultSet.getInt(columnPrefix + "id"));
+    person.version = resultSet.getInt(columnPrefix + "version");
+    return person;
+  }
+
+  /**
+   * Adds a person to the database.
+   *
+   * @param connection database connection
+   * @throws SQLException if there are errors accessing the database
+   */
+  public void addPersonToDB(Connection connection) throws SQLException {
+    PreparedStatement preparedStatement = StatementRegistry
+        .prepare(connection, getTableName(this.role), StatementRegistry.INSERT);
+    setInsertValues(preparedStatement);
+    preparedStatement.executeUpdate();
+  }
+
+  /**
+   * Sets the values of this person on an insert statement from the StatementRegistry.
+   *
+   * @param preparedStatement the insert statement
+   * @throws SQLException if there are errors accessing the database
+   */
+  void setInsertValues(PreparedStatement preparedStatement) throws SQLException {
     preparedStatement.setInt(1, this.id);
     preparedStatement.setString(2, this.name);
     preparedStatement.setString(3, this.contactNumber);
     preparedStatement.setString(4, this.email);
     preparedStatement.setString(5, this.address);
-    preparedStatement.executeUpdate();
   }
 
   /**
@@ -130,8 +175,7 @@ public class Person {
    */
   @Override
   public String toString() {
-    return "[" + role + "]\nName: " + name + "\nPhone Number: " + contactNumber
-        + "\nE-mail Address: " + email + "\nPhysical Address: " + address;
+    return ProjectRenderer.appendPerson(new StringBuilder(160), this).toString();
   }
 
   /**
@@ -141,6 +185,7 @@ public class Person {
    */
   public void setContactNumber(String contactNumber) {
     this.contactNumber = contactNumber;
+    dirtyColumns.add("phone_num");
   }
 
   /**
@@ -150,6 +195,7 @@ public class Person {
    */
   public void setEmail(String email) {
     this.email = email;
+    dirtyColumns.add("email");
   }
 
   /**
@@ -159,6 +205,7 @@ public class Person {
    */
   public void setAddress(String address) {
     this.address = address;
+    dirtyColumns.add("address");
   }
 
   /**
@@ -168,6 +215,73 @@ public class Person {
    */
   public void setName(String name) {
     this.name = name;
+    dirtyColumns.add("name");
+  }
+
+  /**
+   * Returns the columns changed by the setters since the person was read or last saved, without
+   * the table's prefix.
+   *
+   * @return names of the changed columns
+   */
+  Set<String> getDirtyColumns() {
+    return dirtyColumns;
+  }
+
+  /**
+   * Returns the value of this person for a column that can be updated.
+   *
+   * @param column name of the column without the table's prefix
+   * @return the value
+   * @throws IllegalArgumentException if the column cannot be updated
+   */
+  Object getColumnValue(String column) {
+    switch (column) {
+      case "name":
+        return name;
+      case "phone_num":
+        return contactNumber;
+      case "email":
+        return email;
+      case "address":
+        return address;
+      default:
+        throw new IllegalArgumentException("Column cannot be updated: " + column);
+    }
+  }
+
+  /**
+   * Returns the version of the person's row when it was read or last saved.
+   *
+   * @return the version
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * Sets the version of the person's row.
+   *
+   * @param version the version
+   */
+  void setVersion(int version) {
+    this.version = version;
+  }
+
+  /**
+   * Marks the person as the same as the database.
+   */
+  void markClean() {
+    dirtyColumns.clear();
+  }
+
+  /**
+   * Gets the role of this person.
+   *
+   * @return role of this person
+   */
+  public String getRole() {
+    return role;
   }
 
   /**
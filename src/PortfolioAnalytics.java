@@ -0,0 +1,259 @@
+//importing libraries
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * PortfolioAnalytics keeps the totals management asks for in memory: the fees billed, paid and
+ * outstanding for each building type, the amount outstanding on open projects past their
+ * deadline, and the number of projects finalised each month. The totals are added up from the
+ * projects table once, when the program starts, and each saved project then replaces its earlier
+ * figures, so reading a total does not scan the table.
+ *
+ * <p>The amount outstanding of open projects is also kept for each deadline. Projects whose
+ * deadline passes while the program runs are added to the past due totals by the next read, so
+ * a read only looks at the deadlines that have passed since the one before.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class PortfolioAnalytics {
+
+  //deadline of a project without one
+  private static final long NO_DEADLINE = Long.MIN_VALUE;
+
+  //figures each project was last added with
+  private final Map<Integer, Entry> projects = new HashMap<>();
+  private final PortfolioTotals totals = new PortfolioTotals();
+  //amount outstanding and number of open projects for each deadline, as epoch days
+  private final NavigableMap<Long, long[]> openByDeadline = new TreeMap<>();
+  private final NavigableMap<YearMonth, Long> finalisedByMonth = new TreeMap<>();
+  //open projects with a deadline before this day are counted as past due
+  private long pastDueBefore = NO_DEADLINE + 1;
+  private long pastDueOutstanding = 0;
+  private long pastDueCount = 0;
+
+  /**
+   * The figures of a project included in the totals.
+   */
+  private static final class Entry {
+
+    private final String buildingType;
+    private final long totalFee;
+    private final long amountPaid;
+    private final long deadline;
+    private final YearMonth completed;
+
+    private Entry(String buildingType, long totalFee, long amountPaid, long deadline,
+        YearMonth completed) {
+      this.buildingType = buildingType;
+      this.totalFee = totalFee;
+      this.amountPaid = amountPaid;
+      this.deadline = deadline;
+      this.completed = completed;
+    }
+
+    /**
+     * Returns the amount still owed for the project.
+     *
+     * @return amount outstanding, in cents
+     */
+    private long outstanding() {
+      return Math.max(0, totalFee - amountPaid);
+    }
+  }
+
+  /**
+   * Adds up the totals of all projects in the database, including archived projects.
+   *
+   * @param connection database connection
+   * @return the analytics
+   * @throws SQLException if there are errors accessing the database
+   */
+  public static PortfolioAnalytics load(Connection connection) throws SQLException {
+    PortfolioAnalytics analytics = new PortfolioAnalytics();
+    try (PreparedStatement statement = connection.prepareStatement(ProjectArchiver.withArchive(
+        "SELECT proj_num, building_type, total_fee, amount_paid, deadline, completion_date"
+            + " FROM projects"))) {
+      statement.setFetchSize(1000);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          analytics.put(resultSet.getInt("proj_num"), resultSet.getString("building_type"),
+              Money.read(resultSet, "total_fee"), Money.read(resultSet, "amount_paid"),
+              resultSet.getDate("deadline"), resultSet.getDate("completion_date"));
+        }
+      }
+    }
+    return analytics;
+  }
+
+  /**
+   * Adds a saved project to the totals, replacing its figures from before it was updated.
+   *
+   * @param project the project
+   */
+  public void put(Project project) {
+    put(project.getNum(), project.getBuildingType(), project.getTotalFeeCents(),
+        project.getAmountPaidCents(), project.getDeadline(), project.getCompletionDate());
+  }
+
+  /**
+   * Adds a project to the totals, replacing any earlier figures for the same project number.
+   *
+   * @param projNum        project number
+   * @param buildingType   building type
+   * @param totalFee       total fee, in cents
+   * @param amountPaid     amount paid, in cents
+   * @param deadline       deadline, or null if there is none
+   * @param completionDate completion date, or null if the project is open
+   */
+  public synchronized void put(int projNum, String buildingType, long totalFee,
+      long amountPaid, Date deadline, Date completionDate) {
+    Entry entry = new Entry(buildingType, totalFee, amountPaid,
+        deadline == null ? NO_DEADLINE : deadline.toLocalDate().toEpochDay(),
+        completionDate == null ? null : YearMonth.from(completionDate.toLocalDate()));
+    Entry old = projects.put(projNum, entry);
+    if (old != null) {
+      apply(old, -1);
+    }
+    apply(entry, 1);
+  }
+
+  /**
+   * Adds the figures of a project to the totals, or takes them away.
+   *
+   * @param entry the figures
+   * @param sign  1 to add them, -1 to take them away
+   */
+  private void apply(Entry entry, int sign) {
+    if (sign > 0) {
+      totals.add(entry.buildingType, entry.totalFee, entry.amountPaid);
+    } else {
+      totals.remove(entry.buildingType, entry.totalFee, entry.amountPaid);
+    }
+    if (entry.completed != null) {
+      long count = finalisedByMonth.getOrDefault(entry.completed, 0L) + sign;
+      if (count == 0) {
+        finalisedByMonth.remove(entry.completed);
+      } else {
+        finalisedByMonth.put(entry.completed, count);
+      }
+    } else if (entry.deadline != NO_DEADLINE) {
+      long outstanding = sign * entry.outstanding();
+      long[] open = openByDeadline.computeIfAbsent(entry.deadline, ignored -> new long[2]);
+      open[0] += outstanding;
+      open[1] += sign;
+      if (open[1] == 0) {
+        openByDeadline.remove(entry.deadline);
+      }
+      if (entry.deadline < pastDueBefore) {
+        pastDueOutstanding += outstanding;
+        pastDueCount += sign;
+      }
+    }
+  }
+
+  /**
+   * Moves the past due totals on to a day, adding the open projects whose deadlines have passed
+   * since the last read, or taking them away if the clock has gone back.
+   *
+   * @param today the current date
+   */
+  private void moveTo(LocalDate today) {
+    long day = today.toEpochDay();
+    if (day > pastDueBefore) {
+      for (long[] open : openByDeadline.subMap(pastDueBefore, true, day, false).values()) {
+        pastDueOutstanding += open[0];
+        pastDueCount += open[1];
+      }
+    } else if (day < pastDueBefore) {
+      for (long[] open : openByDeadline.subMap(day, true, pastDueBefore, false).values()) {
+        pastDueOutstanding -= open[0];
+        pastDueCount -= open[1];
+      }
+    }
+    pastDueBefore = day;
+  }
+
+  /**
+   * Returns a copy of the fees billed, paid and outstanding, in total and for each building
+   * type.
+   *
+   * @return the totals
+   */
+  public synchronized PortfolioTotals getTotals() {
+    PortfolioTotals copy = new PortfolioTotals();
+    copy.addAll(totals);
+    return copy;
+  }
+
+  /**
+   * Returns the amount outstanding on open projects past their deadline.
+   *
+   * @param today the current date
+   * @return amount outstanding, in cents
+   */
+  public synchronized long getPastDueOutstandingCents(LocalDate today) {
+    moveTo(today);
+    return pastDueOutstanding;
+  }
+
+  /**
+   * Returns the number of open projects past their deadline.
+   *
+   * @param today the current date
+   * @return number of projects
+   */
+  public synchronized long getPastDueCount(LocalDate today) {
+    moveTo(today);
+    return pastDueCount;
+  }
+
+  /**
+   * Returns the number of projects finalised in a month.
+   *
+   * @param month the month
+   * @return number of projects
+   */
+  public synchronized long getFinalisedCount(YearMonth month) {
+    return finalisedByMonth.getOrDefault(month, 0L);
+  }
+
+  /**
+   * Returns the number of projects finalised in each month that has any.
+   *
+   * @return number of projects by month, oldest first
+   */
+  public synchronized NavigableMap<YearMonth, Long> getFinalisedByMonth() {
+    return new TreeMap<>(finalisedByMonth);
+  }
+
+  /**
+   * Returns the totals as text for the menu.
+   *
+   * @param today  the current date
+   * @param months number of recent months to show the finalised projects of
+   * @return the totals
+   */
+  public synchronized String getReport(LocalDate today, int months) {
+    StringBuilder text = new StringBuilder(1024);
+    text.append(totals);
+    text.append("\nPast due: ").append(getPastDueCount(today))
+        .append(" open projects with R");
+    Money.append(text, pastDueOutstanding).append(" outstanding\n\nFinalised per month\n");
+    YearMonth month = YearMonth.from(today);
+    for (int i = 0; i < months; i++, month = month.minusMonths(1)) {
+      text.append(month).append(": ").append(getFinalisedCount(month)).append('\n');
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,276 @@
+//importing libraries
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * PortfolioTotals adds up the fees of many projects: the amount billed, the amount paid and the
+ * amount outstanding, for all projects and for each building type. Amounts are kept in cents in
+ * long arrays indexed by building type, so adding a project does not create any objects once its
+ * building type has been seen, and the totals are exact however many projects are added.
+ *
+ * <p>The amount outstanding of a project is its total fee less the amount paid, or nothing if it
+ * has been paid in full, so an overpaid project does not reduce what other customers owe.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class PortfolioTotals {
+
+  //index of each building type in the arrays
+  private final Map<String, Integer> typeIndex = new HashMap<>();
+  private String[] types = new String[8];
+  private long[] counts = new long[8];
+  private long[] billed = new long[8];
+  private long[] paid = new long[8];
+  private long[] outstanding = new long[8];
+  private int typeCount = 0;
+
+  /**
+   * Reads the totals of all projects in the database, including archived projects.
+   *
+   * @param connection database connection
+   * @return the totals
+   * @throws SQLException if there are errors accessing the database
+   */
+  public static PortfolioTotals load(Connection connection) throws SQLException {
+    PortfolioTotals totals = new PortfolioTotals();
+    try (PreparedStatement statement = connection.prepareStatement(ProjectArchiver
+        .withArchive("SELECT building_type, total_fee, amount_paid FROM projects"))) {
+      statement.setFetchSize(1000);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          totals.add(resultSet.getString("building_type"), Money.read(resultSet, "total_fee"),
+              Money.read(resultSet, "amount_paid"));
+        }
+      }
+    }
+    return totals;
+  }
+
+  /**
+   * Adds a project to the totals.
+   *
+   * @param project the project
+   */
+  public void add(Project project) {
+    add(project.getBuildingType(), project.getTotalFeeCents(), project.getAmountPaidCents());
+  }
+
+  /**
+   * Adds the fees of a project to the totals.
+   *
+   * @param buildingType building type of the project
+   * @param totalFee     total fee, in cents
+   * @param amountPaid   amount paid, in cents
+   * @throws ArithmeticException if a total becomes too large for a long
+   */
+  public void add(String buildingType, long totalFee, long amountPaid) {
+    int index = indexOf(buildingType);
+    counts[index]++;
+    billed[index] = Math.addExact(billed[index], totalFee);
+    paid[index] = Math.addExact(paid[index], amountPaid);
+    outstanding[index] = Math.addExact(outstanding[index], Math.max(0, totalFee - amountPaid));
+  }
+
+  /**
+   * Takes the fees of a project away from the totals, such as before the project is added again
+   * with new fees.
+   *
+   * @param buildingType building type the project was added with
+   * @param totalFee     total fee it was added with, in cents
+   * @param amountPaid   amount paid it was added with, in cents
+   * @throws ArithmeticException if a total becomes too large for a long
+   */
+  public void remove(String buildingType, long totalFee, long amountPaid) {
+    int index = indexOf(buildingType);
+    counts[index]--;
+    billed[index] = Math.subtractExact(billed[index], totalFee);
+    paid[index] = Math.subtractExact(paid[index], amountPaid);
+    outstanding[index] =
+        Math.subtractExact(outstanding[index], Math.max(0, totalFee - amountPaid));
+  }
+
+  /**
+   * Adds the totals of another set of projects, such as one added up on another thread.
+   *
+   * @param other the other totals
+   * @throws ArithmeticException if a total becomes too large for a long
+   */
+  public void addAll(PortfolioTotals other) {
+    for (int i = 0; i < other.typeCount; i++) {
+      int index = indexOf(other.types[i]);
+      counts[index] += other.counts[i];
+      billed[index] = Math.addExact(billed[index], other.billed[i]);
+      paid[index] = Math.addExact(paid[index], other.paid[i]);
+      outstanding[index] = Math.addExact(outstanding[index], other.outstanding[i]);
+    }
+  }
+
+  /**
+   * Returns the index of a building type, adding it if it is new.
+   *
+   * @param buildingType the building type, null is counted as an empty type
+   * @return the index in the arrays
+   */
+  private int indexOf(String buildingType) {
+    String type = buildingType == null ? "" : buildingType;
+    Integer index = typeIndex.get(type);
+    if (index != null) {
+      return index;
+    }
+    if (typeCount == types.length) {
+      int size = typeCount * 2;
+      types = Arrays.copyOf(types, size);
+      counts = Arrays.copyOf(counts, size);
+      billed = Arrays.copyOf(billed, size);
+      paid = Arrays.copyOf(paid, size);
+      outstanding = Arrays.copyOf(outstanding, size);
+    }
+    types[typeCount] = type;
+    typeIndex.put(type, typeCount);
+    return typeCount++;
+  }
+
+  /**
+   * Returns the building types that have been added, in the order they were first seen.
+   *
+   * @return the building types
+   */
+  public String[] getBuildingTypes() {
+    return Arrays.copyOf(types, typeCount);
+  }
+
+  /**
+   * Returns the number of projects added.
+   *
+   * @return number of projects
+   */
+  public long getCount() {
+    return sum(counts);
+  }
+
+  /**
+   * Returns the total fees of all projects.
+   *
+   * @return amount billed, in cents
+   */
+  public long getBilledCents() {
+    return sum(billed);
+  }
+
+  /**
+   * Returns the amount paid for all projects.
+   *
+   * @return amount paid, in cents
+   */
+  public long getPaidCents() {
+    return sum(paid);
+  }
+
+  /**
+   * Returns the amount still owed for all projects.
+   *
+   * @return amount outstanding, in cents
+   */
+  public long getOutstandingCents() {
+    return sum(outstanding);
+  }
+
+  /**
+   * Returns the number of projects of a building type.
+   *
+   * @param buildingType the building type
+   * @return number of projects, 0 if none have been added
+   */
+  public long getCount(String buildingType) {
+    Integer index = typeIndex.get(buildingType);
+    return index == null ? 0 : counts[index];
+  }
+
+  /**
+   * Returns the total fees of the projects of a building type.
+   *
+   * @param buildingType the building type
+   * @return amount billed, in cents
+   */
+  public long getBilledCents(String buildingType) {
+    Integer index = typeIndex.get(buildingType);
+    return index == null ? 0 : billed[index];
+  }
+
+  /**
+   * Returns the amount paid for the projects of a building type.
+   *
+   * @param buildingType the building type
+   * @return amount paid, in cents
+   */
+  public long getPaidCents(String buildingType) {
+    Integer index = typeIndex.get(buildingType);
+    return index == null ? 0 : paid[index];
+  }
+
+  /**
+   * Returns the amount still owed for the projects of a building type.
+   *
+   * @param buildingType the building type
+   * @return amount outstanding, in cents
+   */
+  public long getOutstandingCents(String buildingType) {
+    Integer index = typeIndex.get(buildingType);
+    return index == null ? 0 : outstanding[index];
+  }
+
+  /**
+   * Adds up the values of a total for every building type.
+   *
+   * @param values the totals for each building type
+   * @return the sum
+   * @throws ArithmeticException if the sum is too large for a long
+   */
+  private long sum(long[] values) {
+    long total = 0;
+    for (int i = 0; i < typeCount; i++) {
+      total = Math.addExact(total, values[i]);
+    }
+    return total;
+  }
+
+  /**
+   * Returns a table of the totals for each building type and for all projects.
+   *
+   * @return the table
+   */
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder(128 + typeCount * 80);
+    text.append(String.format("%-20s %10s %18s %18s %18s%n", "Building type", "Projects",
+        "Billed", "Paid", "Outstanding"));
+    for (int i = 0; i < typeCount; i++) {
+      appendLine(text, types[i], counts[i], billed[i], paid[i], outstanding[i]);
+    }
+    appendLine(text, "All", getCount(), getBilledCents(), getPaidCents(), getOutstandingCents());
+    return text.toString();
+  }
+
+  /**
+   * Appends a line of the table.
+   *
+   * @param text        builder to append to
+   * @param name        name of the line
+   * @param count       number of projects
+   * @param billed      amount billed, in cents
+   * @param paid        amount paid, in cents
+   * @param outstanding amount outstanding, in cents
+   */
+  private static void appendLine(StringBuilder text, String name, long count, long billed,
+      long paid, long outstanding) {
+    text.append(String.format("%-20s %10d %18s %18s %18s%n", name, count,
+        "R" + Money.format(billed), "R" + Money.format(paid), "R" + Money.format(outstanding)));
+  }
+}
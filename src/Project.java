@@ -6,6 +6,9 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * This class stores the information for a project. It contains
@@ -21,12 +24,62 @@ public class Project {
   private String buildingType;
   private String address;
   private String erfNum;
-  private double totalFee;
-  private double amountPaid;
+  //amounts are held in cents so they are added and subtracted exactly
+  private long totalFee;
+  private long amountPaid;
   private Date deadline;
   private ArrayList<Person> stakeholders;
-  private String finalised;
   private Date completionDate;
+  //version of the row when it was read, increased by each update
+  private int version = 0;
+  //true if the project was read from the archive table
+  private boolean archived = false;
+  //columns changed since the project was read or saved
+  private final Set<String> dirtyColumns = new HashSet<>();
+
+  //columns that can be updated, in the order they are written in an update
+  static final String[] COLUMNS = {"proj_name", "building_type", "address", "erf_num",
+      "total_fee", "amount_paid", "deadline", "completion_date"};
+
+  //statement to insert a project
+  static final String INSERT = "INSERT INTO projects (proj_num, struc_eng_id, proj_name,"
+      + " building_type, address, erf_num, total_fee, amount_paid, deadline, completion_date,"
+      + " proj_mgr_id, architect_id, cust_id) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+  //query for a project joined with all four of its stakeholders
+  static final String SELECT_WITH_STAKEHOLDERS = "SELECT p.*,"
+      + " s.struc_eng_name, s.struc_eng_phone_num, s.struc_eng_email, s.struc_eng_address,"
+      + " s.struc_eng_version,"
+      + " m.proj_mgr_name, m.proj_mgr_phone_num, m.proj_mgr_email, m.proj_mgr_address,"
+      + " m.proj_mgr_version,"
+      + " a.architect_name, a.architect_phone_num, a.architect_email, a.architect_address,"
+      + " a.architect_version,"
+      + " c.cust_name, c.cust_phone_num, c.cust_email, c.cust_address, c.cust_version"
+      + " FROM projects p"
+      + " JOIN structural_engineers s ON s.struc_eng_id=p.struc_eng_id"
+      + " JOIN project_managers m ON m.proj_mgr_id=p.proj_mgr_id"
+      + " JOIN architects a ON a.architect_id=p.architect_id"
+      + " JOIN customers c ON c.cust_id=p.cust_id";
+
+  //the same query on the archive table
+  private static final String SELECT_ARCHIVED_WITH_STAKEHOLDERS = SELECT_WITH_STAKEHOLDERS
+      .replace(" FROM projects p", " FROM " + ProjectArchiver.ARCHIVE_TABLE + " p");
+
+  //a project by number, by name and if a name is taken, on the projects table and then on the
+  //archive, built once so the SQL is not put together again for every search
+  private static final String[] SELECT_BY_NUM = {SELECT_WITH_STAKEHOLDERS + " WHERE p.proj_num=?",
+      SELECT_ARCHIVED_WITH_STAKEHOLDERS + " WHERE p.proj_num=?"};
+  private static final String[] SELECT_BY_NAME = {
+      SELECT_WITH_STAKEHOLDERS + " WHERE p.proj_name=?",
+      SELECT_ARCHIVED_WITH_STAKEHOLDERS + " WHERE p.proj_name=?"};
+  private static final String[] SELECT_NAME = {"SELECT proj_name FROM projects WHERE proj_name=?",
+      "SELECT proj_name FROM " + ProjectArchiver.ARCHIVE_TABLE + " WHERE proj_name=?"};
+
+  //query for a project joined with only its customer, for invoices
+  static final String SELECT_WITH_CUSTOMER = "SELECT p.*,"
+      + " c.cust_name, c.cust_phone_num, c.cust_email, c.cust_address, c.cust_version"
+      + " FROM projects p"
+      + " JOIN customers c ON c.cust_id=p.cust_id";
 
   /**
    * Constructor to initialise Project object.
@@ -35,38 +88,31 @@ public class Project {
    * @param buildingType building type for this project
    * @param address      physical address for this project
    * @param erfNum       ERF number for this project
-   * @param totalFee     total fee for this project
-   * @param amountPaid   amount paid to date for this project
+   * @param totalFee     total fee for this project, in cents
+   * @param amountPaid   amount paid to date for this project, in cents
    * @param deadline     deadline for this project
    */
-  public Project(String name, String buildingType, String address, String erfNum, double totalFee,
-      double amountPaid, Date deadline) {
+  public Project(String name, String buildingType, String address, String erfNum, long totalFee,
+      long amountPaid, Date deadline) {
     this.name = name;
     this.buildingType = buildingType;
     this.address = address;
     this.erfNum = erfNum;
-    this.totalFee = Math.round(totalFee);
-    this.amountPaid = Math.round(amountPaid);
+    this.totalFee = totalFee;
+    this.amountPaid = amountPaid;
     this.deadline = deadline;
-    this.finalised = "No";
     this.completionDate = null;
     this.stakeholders = new ArrayList<>();
   }
 
   /**
-   * Sets the project number.
+   * Sets the project number to the next free project number.
    *
-   * @param connection database connection
+   * @param idAllocator allocator for new project numbers
    * @throws SQLException if there are errors accessing the database
    */
-  public void setNumForNewProject(Connection connection) throws SQLException {
-    String query = "SELECT proj_num FROM projects ORDER BY proj_num DESC LIMIT 1";
-    try(PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-      ResultSet resultSet = preparedStatement.executeQuery();
-      if (resultSet.next()) {
-        this.num = resultSet.getInt(1) + 1;
-      }
-    }
+  public void setNumForNewProject(IdAllocator idAllocator) throws SQLException {
+    this.num = idAllocator.nextId("projects");
   }
 
   /**
@@ -76,13 +122,13 @@ public class Project {
    * @param buildingType building type for this project
    * @param address      physical address for this project
    * @param erfNum       ERF number for this project
-   * @param totalFee     total fee for this project
-   * @param amountPaid   amount paid to date for this project
+   * @param totalFee     total fee for this project, in cents
+   * @param amountPaid   amount paid to date for this project, in cents
    * @param deadline     deadline for this project
    * @return new project object
    */
   public static Project createNewProject(String name, String buildingType, String address,
-      String erfNum, double totalFee, double amountPaid, Date deadline) {
+      String erfNum, long totalFee, long amountPaid, Date deadline) {
     return new Project(name, buildingType, address, erfNum, totalFee, amountPaid, deadline);
   }
 
@@ -94,30 +140,22 @@ public class Project {
    */
   @Override
   public String toString() {
-    StringBuilder people = new StringBuilder();
-    // adding the string for each person object to the project string
-    for (Person person : this.stakeholders) {
-      people.append(person.toString()).append("\n\n");
-    }
-    //string with all the object properties and values
-    String objString =
-        "Project no.: " + num + "\nName: " + name + "\nBuilding type: " + buildingType
-            + "\nAddress: " + address + "\nERF no.: " + erfNum + "\nTotal fee: R" + String
-            .format("%.2f", totalFee)
-            + "\nAmount paid: R" + String.format("%.2f", amountPaid) + "\nDeadline: " + deadline
-            + "\nFinalised: " + finalised;
-
-    // if project has been finalised include the completion date in the string
-    if (finalised.equals("Yes")) {
-      objString +=
-          "\nCompletion date: " + completionDate + "\n\nStakeholders\n-------------\n" + people;
-    } else {
-      objString += "\n\nStakeholders\n-------------\n" + people;
-    }
+    StringBuilder text = new StringBuilder(256 + 160 * stakeholders.size());
+    return ProjectRenderer.appendStakeholders(ProjectRenderer.appendProject(text, this), this)
+        .toString();
+  }
 
-    return objString;
+  /**
+   * Returns the invoice for this finalised project, with its customer's details and the amount
+   * still owed, or a note that the customer has paid the total fee.
+   *
+   * @return the invoice
+   */
+  public String getInvoice() {
+    return InvoiceTemplate.forProject(this).render(new StringBuilder(512), this).toString();
   }
 
+
   /**
    * Adds a person to this project's stakeholder list
    *
@@ -136,28 +174,38 @@ public class Project {
    * @throws SQLException if there are errors accessing the database
    */
   public boolean addProjectToDb(Connection connection) throws SQLException {
-    PreparedStatement preparedStatement = connection
-        .prepareStatement("INSERT INTO projects VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)");
+    try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT)) {
+      setInsertValues(preparedStatement);
+      int rows = preparedStatement.executeUpdate();
+      return rows > 0;
+    }
+  }
+
+  /**
+   * Sets the values of this project on a statement prepared from {@link #INSERT}.
+   *
+   * @param preparedStatement the insert statement
+   * @throws SQLException if there are errors accessing the database
+   */
+  void setInsertValues(PreparedStatement preparedStatement) throws SQLException {
     preparedStatement.setInt(1, this.num);
     preparedStatement.setInt(2, this.stakeholders.get(0).getId());
     preparedStatement.setString(3, this.name);
     preparedStatement.setString(4, this.buildingType);
     preparedStatement.setString(5, this.address);
     preparedStatement.setString(6, this.erfNum);
-    preparedStatement.setDouble(7, this.totalFee);
-    preparedStatement.setDouble(8, this.amountPaid);
+    preparedStatement.setBigDecimal(7, Money.toDecimal(this.totalFee));
+    preparedStatement.setBigDecimal(8, Money.toDecimal(this.amountPaid));
     preparedStatement.setDate(9, this.deadline);
     preparedStatement.setDate(10, this.completionDate);
     preparedStatement.setInt(11, this.stakeholders.get(1).getId());
     preparedStatement.setInt(12, this.stakeholders.get(2).getId());
     preparedStatement.setInt(13, this.stakeholders.get(3).getId());
-
-    int rows = preparedStatement.executeUpdate();
-    return rows > 0;
   }
 
    /**
-   * Searches for a project by name and returns true if found else false.
+   * Searches for a project by name and returns true if found else false. Archived projects are
+   * only searched if the name is not found in the projects table.
    *
    * @param projectName name to search for
    * @param connection database connection
@@ -166,11 +214,398 @@ public class Project {
    */
   public static boolean projectExists(String projectName, Connection connection)
       throws SQLException {
-    PreparedStatement preparedStatement = connection
-        .prepareStatement("SELECT proj_name FROM projects WHERE proj_name='" + projectName + "'");
+    for (String query : SELECT_NAME) {
+      try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+        preparedStatement.setString(1, projectName);
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+          // return true if an existing project found
+          if (resultSet.next()) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the project with the project number passed in, with its stakeholders, using a single
+   * query, or a second query on the archive table if it is not in the projects table.
+   *
+   * @param connection database connection
+   * @param projNum    project number to search for
+   * @return the project, or null if not found
+   * @throws SQLException if there are errors accessing the database
+   */
+  public static Project getProjectByNum(Connection connection, int projNum) throws SQLException {
+    Project project = null;
+    for (int i = 0; i < 2 && project == null; i++) {
+      try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_BY_NUM[i])) {
+        preparedStatement.setInt(1, projNum);
+        project = createProjectFromResultSet(preparedStatement.executeQuery());
+        if (project != null) {
+          project.archived = i == 1;
+        }
+      }
+    }
+    return project;
+  }
+
+  /**
+   * Returns the project with the name passed in, with its stakeholders, using a single query,
+   * or a second query on the archive table if it is not in the projects table.
+   *
+   * @param connection database connection
+   * @param projName   project name to search for
+   * @return the project, or null if not found
+   * @throws SQLException if there are errors accessing the database
+   */
+  public static Project getProjectByName(Connection connection, String projName)
+      throws SQLException {
+    Project project = null;
+    for (int i = 0; i < 2 && project == null; i++) {
+      try (PreparedStatement preparedStatement = connection
+          .prepareStatement(SELECT_BY_NAME[i])) {
+        preparedStatement.setString(1, projName);
+        project = createProjectFromResultSet(preparedStatement.executeQuery());
+        if (project != null) {
+          project.archived = i == 1;
+        }
+      }
+    }
+    return project;
+  }
+
+  /**
+   * Creates a project object, with its stakeholders, from the next row of a ResultSet from the
+   * joined project query.
+   *
+   * @param resultSet the ResultSet for the joined project query
+   * @return the project, or null if there are no more rows
+   * @throws SQLException if there are errors accessing the database
+   */
+  static Project createProjectFromResultSet(ResultSet resultSet) throws SQLException {
+    if (!resultSet.next()) {
+      return null;
+    }
+    Project project = readProject(resultSet);
+    //adding the stakeholders in the same order as a new project
+    project.addStakeholder(Person.createPersonFromResultSet(resultSet, "Structural Engineer"));
+    project.addStakeholder(Person.createPersonFromResultSet(resultSet, "Project Manager"));
+    project.addStakeholder(Person.createPersonFromResultSet(resultSet, "Architect"));
+    project.addStakeholder(Person.createPersonFromResultSet(resultSet, "Customer"));
+    project.markClean();
+    return project;
+  }
+
+  /**
+   * Creates a project object, with only its customer, from the current row of a ResultSet from
+   * {@link #SELECT_WITH_CUSTOMER}.
+   *
+   * @param resultSet the ResultSet, on the row to read
+   * @return the project
+   * @throws SQLException if there are errors accessing the database
+   */
+  static Project createProjectWithCustomer(ResultSet resultSet) throws SQLException {
+    Project project = readProject(resultSet);
+    project.addStakeholder(Person.createPersonFromResultSet(resultSet, "Customer"));
+    project.markClean();
+    return project;
+  }
+
+  /**
+   * Creates a project object, without stakeholders, from the current row of a ResultSet.
+   *
+   * @param resultSet the ResultSet, on the row to read
+   * @return the project
+   * @throws SQLException if there are errors accessing the database
+   */
+  static Project readProject(ResultSet resultSet) throws SQLException {
+    Project project = new Project(resultSet.getString("proj_name"),
+        resultSet.getString("building_type"), resultSet.getString("address"),
+        resultSet.getString("erf_num"), 0, 0, resultSet.getDate("deadline"));
+    project.num = resultSet.getInt("proj_num");
+    project.totalFee = Money.read(resultSet, "total_fee");
+    project.amountPaid = Money.read(resultSet, "amount_paid");
+    project.version = resultSet.getInt("version");
+    project.setCompletionDate(resultSet.getDate("completion_date"));
+    return project;
+  }
+
+  /**
+   * Returns the stakeholder for a role.
+   *
+   * @param role role of the stakeholder
+   * @return the stakeholder, or null if the project has no stakeholder in that role
+   */
+  public Person getStakeholder(String role) {
+    for (Person person : stakeholders) {
+      if (person.getRole().equals(role)) {
+        return person;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the stakeholders for this project.
+   *
+   * @return list of stakeholders
+   */
+  public List<Person> getStakeholders() {
+    return stakeholders;
+  }
 
-    ResultSet resultSet = preparedStatement.executeQuery();
-    // return true if an existing project found else false
-    return resultSet.next();
+  /**
+   * Returns the project number.
+   *
+   * @return project number
+   */
+  public int getNum() {
+    return num;
+  }
+
+  /**
+   * Sets the project number.
+   *
+   * @param num project number
+   */
+  void setNum(int num) {
+    this.num = num;
+  }
+
+  /**
+   * Returns the project name.
+   *
+   * @return project name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Sets the project name.
+   *
+   * @param name project name
+   */
+  public void setName(String name) {
+    this.name = name;
+    dirtyColumns.add("proj_name");
+  }
+
+  /**
+   * Returns the building type.
+   *
+   * @return building type
+   */
+  public String getBuildingType() {
+    return buildingType;
+  }
+
+  /**
+   * Sets the building type.
+   *
+   * @param buildingType building type
+   */
+  public void setBuildingType(String buildingType) {
+    this.buildingType = buildingType;
+    dirtyColumns.add("building_type");
+  }
+
+  /**
+   * Returns the physical address.
+   *
+   * @return physical address
+   */
+  public String getAddress() {
+    return address;
+  }
+
+  /**
+   * Sets the physical address.
+   *
+   * @param address physical address
+   */
+  public void setAddress(String address) {
+    this.address = address;
+    dirtyColumns.add("address");
+  }
+
+  /**
+   * Returns the ERF number.
+   *
+   * @return ERF number
+   */
+  public String getErfNum() {
+    return erfNum;
+  }
+
+  /**
+   * Sets the ERF number.
+   *
+   * @param erfNum ERF number
+   */
+  public void setErfNum(String erfNum) {
+    this.erfNum = erfNum;
+    dirtyColumns.add("erf_num");
+  }
+
+  /**
+   * Returns the total fee.
+   *
+   * @return total fee, in cents
+   */
+  public long getTotalFeeCents() {
+    return totalFee;
+  }
+
+  /**
+   * Sets the total fee.
+   *
+   * @param totalFee total fee, in cents
+   */
+  public void setTotalFeeCents(long totalFee) {
+    this.totalFee = totalFee;
+    dirtyColumns.add("total_fee");
+  }
+
+  /**
+   * Returns the amount paid to date.
+   *
+   * @return amount paid, in cents
+   */
+  public long getAmountPaidCents() {
+    return amountPaid;
+  }
+
+  /**
+   * Sets the amount paid to date.
+   *
+   * @param amountPaid amount paid, in cents
+   */
+  public void setAmountPaidCents(long amountPaid) {
+    this.amountPaid = amountPaid;
+    dirtyColumns.add("amount_paid");
+  }
+
+  /**
+   * Returns the amount the customer still owes, which is negative if they have paid more than
+   * the total fee.
+   *
+   * @return total fee less the amount paid, in cents
+   */
+  public long getAmountDueCents() {
+    return totalFee - amountPaid;
+  }
+
+  /**
+   * Returns the deadline.
+   *
+   * @return deadline
+   */
+  public Date getDeadline() {
+    return deadline;
+  }
+
+  /**
+   * Sets the deadline.
+   *
+   * @param deadline deadline
+   */
+  public void setDeadline(Date deadline) {
+    this.deadline = deadline;
+    dirtyColumns.add("deadline");
+  }
+
+  /**
+   * Returns the completion date.
+   *
+   * @return completion date, or null if the project has not been finalised
+   */
+  public Date getCompletionDate() {
+    return completionDate;
+  }
+
+  /**
+   * Sets the completion date. The project is finalised if the date is not null.
+   *
+   * @param completionDate completion date
+   */
+  public void setCompletionDate(Date completionDate) {
+    this.completionDate = completionDate;
+    dirtyColumns.add("completion_date");
+  }
+
+  /**
+   * Returns the columns changed by the setters since the project was read or last saved.
+   *
+   * @return names of the changed columns
+   */
+  Set<String> getDirtyColumns() {
+    return dirtyColumns;
+  }
+
+  /**
+   * Returns the value of this project for a column that can be updated.
+   *
+   * @param column name of the column
+   * @return the value
+   * @throws IllegalArgumentException if the column cannot be updated
+   */
+  Object getColumnValue(String column) {
+    switch (column) {
+      case "proj_name":
+        return name;
+      case "building_type":
+        return buildingType;
+      case "address":
+        return address;
+      case "erf_num":
+        return erfNum;
+      case "total_fee":
+        return Money.toDecimal(totalFee);
+      case "amount_paid":
+        return Money.toDecimal(amountPaid);
+      case "deadline":
+        return deadline;
+      case "completion_date":
+        return completionDate;
+      default:
+        throw new IllegalArgumentException("Column cannot be updated: " + column);
+    }
+  }
+
+  /**
+   * Returns the version of the project's row when it was read or last saved.
+   *
+   * @return the version
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * Sets the version of the project's row.
+   *
+   * @param version the version
+   */
+  void setVersion(int version) {
+    this.version = version;
+  }
+
+  /**
+   * Checks if the project was read from the archive table, so its changes are saved there.
+   *
+   * @return true if the project is archived, else false
+   */
+  public boolean isArchived() {
+    return archived;
+  }
+
+  /**
+   * Marks the project as the same as the database.
+   */
+  void markClean() {
+    dirtyColumns.clear();
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,157 @@
+//importing libraries
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ProjectArchiver moves projects finalised before a date out of the projects table into the
+ * archive table, so the lists of open projects and the project searches only read the projects
+ * still being worked on. The archive table has the same columns as the projects table.
+ *
+ * <p>The projects are moved a batch at a time in project number order. Each batch is copied to
+ * the archive and deleted from the projects table in one transaction, so a project is always in
+ * exactly one of the tables. A project is found by number or name in the archive when it is not
+ * in the projects table, and the totals and search index include archived projects.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class ProjectArchiver {
+
+  //table finalised projects are moved to
+  static final String ARCHIVE_TABLE = "projects_archive";
+
+  private final Connection connection;
+  private final int batchSize;
+  private final ProjectCache projectCache;
+
+  private long archivedCount = 0;
+  private long batchCount = 0;
+  private long elapsedNanos = 0;
+
+  /**
+   * Constructor to initialise an archiver.
+   *
+   * @param connection   database connection, with auto-commit disabled
+   * @param batchSize    number of projects to move in each transaction
+   * @param projectCache cache to remove moved projects from, or null if there is none
+   */
+  public ProjectArchiver(Connection connection, int batchSize, ProjectCache projectCache) {
+    this.connection = connection;
+    this.batchSize = Math.max(1, batchSize);
+    this.projectCache = projectCache;
+  }
+
+  /**
+   * Returns a query that reads from the projects table and then from the archive table, for
+   * reading every project whether it has been archived or not. The query must read from the
+   * projects table with "FROM projects" and have no ORDER BY, and any parameters must be set
+   * twice, once for each table.
+   *
+   * @param query query on the projects table
+   * @return the query on both tables
+   */
+  static String withArchive(String query) {
+    return query + " UNION ALL " + query.replace("FROM projects", "FROM " + ARCHIVE_TABLE);
+  }
+
+  /**
+   * Moves the projects finalised before a date to the archive table.
+   *
+   * @param completedBefore projects with an earlier completion date are moved
+   * @return number of projects moved
+   * @throws SQLException if there are errors accessing the database
+   */
+  public long archive(Date completedBefore) throws SQLException {
+    long start = System.nanoTime();
+    long moved = 0;
+    try {
+      List<Integer> batch;
+      while (!(batch = selectBatch(completedBefore)).isEmpty()) {
+        moveBatch(batch);
+        connection.commit();
+        //cached copies would still save their changes to the projects table
+        if (projectCache != null) {
+          for (int projNum : batch) {
+            projectCache.invalidate(projNum);
+          }
+        }
+        moved += batch.size();
+        batchCount++;
+      }
+    } catch (SQLException error) {
+      connection.rollback();
+      throw error;
+    } finally {
+      archivedCount += moved;
+      elapsedNanos += System.nanoTime() - start;
+    }
+    return moved;
+  }
+
+  /**
+   * Reads the numbers of the next batch of projects to move.
+   *
+   * @param completedBefore projects with an earlier completion date are moved
+   * @return project numbers, empty if there are none left
+   * @throws SQLException if there are errors accessing the database
+   */
+  private List<Integer> selectBatch(Date completedBefore) throws SQLException {
+    List<Integer> batch = new ArrayList<>(batchSize);
+    try (PreparedStatement statement = connection.prepareStatement("SELECT proj_num"
+        + " FROM projects WHERE completion_date IS NOT NULL AND completion_date<?"
+        + " ORDER BY proj_num LIMIT ?")) {
+      statement.setDate(1, completedBefore);
+      statement.setInt(2, batchSize);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          batch.add(resultSet.getInt(1));
+        }
+      }
+    }
+    return batch;
+  }
+
+  /**
+   * Copies a batch of projects to the archive table and deletes them from the projects table,
+   * without committing.
+   *
+   * @param batch project numbers
+   * @throws SQLException if there are errors accessing the database
+   */
+  private void moveBatch(List<Integer> batch) throws SQLException {
+    StringBuilder in = new StringBuilder(" WHERE proj_num IN (");
+    for (int i = 0; i < batch.size(); i++) {
+      in.append(i == 0 ? "?" : ",?");
+    }
+    in.append(')');
+    //the copy locks the rows, so an update made before the delete waits and then finds no row
+    try (PreparedStatement copy = connection.prepareStatement(
+        "INSERT INTO " + ARCHIVE_TABLE + " SELECT * FROM projects" + in);
+        PreparedStatement delete = connection.prepareStatement("DELETE FROM projects" + in)) {
+      for (int i = 0; i < batch.size(); i++) {
+        copy.setInt(i + 1, batch.get(i));
+        delete.setInt(i + 1, batch.get(i));
+      }
+      int copied = copy.executeUpdate();
+      if (delete.executeUpdate() != copied) {
+        throw new SQLException("Projects changed while being archived.");
+      }
+    }
+  }
+
+  /**
+   * Returns the number of projects moved and the time taken so far.
+   *
+   * @return the statistics
+   */
+  public String getStatistics() {
+    return "Archived " + archivedCount + " projects in " + batchCount + " batches in "
+        + String.format("%.2f", elapsedNanos / 1e9) + "s.";
+  }
+}
@@ -0,0 +1,610 @@
+//importing libraries
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ProjectBatch runs a file of commands without any prompts, one command per line with the fields
+ * separated by '|':
+ * <pre>
+ * create|name|building type|address|ERF #|total fee|amount paid|deadline|structural engineer ID|
+ *     project manager ID|architect ID|customer ID
+ * update|project #|field|value
+ * finalise|project #
+ * list|open
+ * list|past_due
+ * </pre>
+ * The fields that can be updated are name, building_type, address, erf_num, total_fee,
+ * amount_paid, deadline and completion_date. Dates are written as yyyy-mm-dd, and blank lines and
+ * lines starting with '#' are ignored.
+ *
+ * <p>Commands are run on one connection in groups. The stakeholders of the projects created in a
+ * group are looked up with one query, and a project whose stakeholder does not exist is not
+ * created. The statements in a group are sent as batches and committed together. If a group fails it is rolled back and its commands are run again one
+ * at a time, so only the commands that fail are lost.
+ *
+ * <p>The result of each command is written to the results file as a tab-separated line of the
+ * line number, "OK" or "ERROR", the command and the result: the new project number for create,
+ * the new value for update, the completion date for finalise, or the error message. A list
+ * writes a "ROW" line for each project, in the layout of
+ * {@link ProjectReport#writeRows(Connection, Writer, String)}, followed by its count.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class ProjectBatch {
+
+  private static final String SEPARATOR = "\\|";
+  private static final String[] ROLES =
+      {"Structural Engineer", "Project Manager", "Architect", "Customer"};
+  private static final String FINALISE = "UPDATE projects SET completion_date=?,"
+      + " version=version+1 WHERE proj_num=? AND completion_date IS NULL";
+
+  //columns that can be updated, by the field name used in a command
+  private static final Map<String, String> COLUMNS = new HashMap<>();
+
+  static {
+    COLUMNS.put("name", "proj_name");
+    COLUMNS.put("building_type", "building_type");
+    COLUMNS.put("address", "address");
+    COLUMNS.put("erf_num", "erf_num");
+    COLUMNS.put("total_fee", "total_fee");
+    COLUMNS.put("amount_paid", "amount_paid");
+    COLUMNS.put("deadline", "deadline");
+    COLUMNS.put("completion_date", "completion_date");
+  }
+
+  private final Connection connection;
+  private final IdAllocator idAllocator;
+  private final ProjectSearchIndex searchIndex;
+  private final int groupSize;
+
+  //statements prepared for this batch, by SQL
+  private final Map<String, PreparedStatement> statements = new HashMap<>();
+  //commands waiting to be run in the current group
+  private final List<Command> group = new ArrayList<>();
+  //columns of rows changed in the current group, with the SQL that changes them
+  private final Map<String, String> changedColumns = new HashMap<>();
+  //names of projects created in the current group
+  private final Set<String> newNames = new HashSet<>();
+
+  private long commandCount = 0;
+  private long failedCount = 0;
+  private long groupCount = 0;
+  private long elapsedNanos = 0;
+
+  /**
+   * Constructor to initialise a batch.
+   *
+   * @param connection  database connection, with auto-commit disabled
+   * @param idAllocator allocator for new project numbers
+   * @param searchIndex index of the project names, used to reject names that are taken
+   * @param groupSize   number of commands to commit together
+   */
+  public ProjectBatch(Connection connection, IdAllocator idAllocator,
+      ProjectSearchIndex searchIndex, int groupSize) {
+    this.connection = connection;
+    this.idAllocator = idAllocator;
+    this.searchIndex = searchIndex;
+    this.groupSize = Math.max(1, groupSize);
+  }
+
+  /**
+   * Runs the commands in a file and writes the results to another file.
+   *
+   * @param commands file of commands
+   * @param results  file the results are written to
+   * @return number of commands run
+   * @throws IOException  if a file cannot be read or written
+   * @throws SQLException if the connection fails
+   */
+  public long run(Path commands, Path results) throws IOException, SQLException {
+    try (BufferedReader in = Files.newBufferedReader(commands, StandardCharsets.UTF_8);
+        Writer out = Files.newBufferedWriter(results, StandardCharsets.UTF_8)) {
+      return run(in, out);
+    }
+  }
+
+  /**
+   * Runs the commands read from a reader and writes the results to a writer.
+   *
+   * @param in  reader of commands
+   * @param out writer the results are written to
+   * @return number of commands run
+   * @throws IOException  if the commands cannot be read or the results written
+   * @throws SQLException if the connection fails
+   */
+  public long run(BufferedReader in, Writer out) throws IOException, SQLException {
+    long start = System.nanoTime();
+    try {
+      String line;
+      int lineNum = 0;
+      while ((line = in.readLine()) != null) {
+        lineNum++;
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+          continue;
+        }
+        commandCount++;
+        String[] fields = trimmed.split(SEPARATOR, -1);
+        for (int i = 0; i < fields.length; i++) {
+          fields[i] = fields[i].trim();
+        }
+        if (fields[0].equalsIgnoreCase("list")) {
+          //the list has to see the changes made before it
+          runGroup(out);
+          list(lineNum, fields, out);
+          continue;
+        }
+        Command command = parse(lineNum, trimmed, fields);
+        //a row's column changed by two kinds of statement must keep the order of the file
+        if (command.key != null) {
+          String earlier = changedColumns.get(command.key);
+          if (earlier != null && !earlier.equals(command.sql)) {
+            runGroup(out);
+          }
+        }
+        group.add(command);
+        if (command.key != null) {
+          changedColumns.put(command.key, command.sql);
+        }
+        if (command.project != null) {
+          newNames.add(ProjectCache.normalise(command.project.getName()));
+        }
+        if (group.size() >= groupSize) {
+          runGroup(out);
+        }
+      }
+      runGroup(out);
+    } finally {
+      for (PreparedStatement statement : statements.values()) {
+        statement.close();
+      }
+      statements.clear();
+      elapsedNanos = System.nanoTime() - start;
+    }
+    out.flush();
+    return commandCount;
+  }
+
+  /**
+   * Creates a command from a line of the file. A line that cannot be run is returned as a failed
+   * command so its error is written in order with the other results.
+   *
+   * @param lineNum line number
+   * @param line    the line
+   * @param fields  fields of the line
+   * @return the command
+   * @throws SQLException if a new project number cannot be reserved
+   */
+  private Command parse(int lineNum, String line, String[] fields) throws SQLException {
+    Command command = new Command(lineNum, line);
+    try {
+      switch (fields[0].toLowerCase()) {
+        case "create":
+          parseCreate(command, fields);
+          break;
+        case "update":
+          parseUpdate(command, fields);
+          break;
+        case "finalise":
+          checkFieldCount(fields, 2);
+          int projNum = Integer.parseInt(fields[1]);
+          command.sql = FINALISE;
+          command.values = new Object[]{Date.valueOf(LocalDate.now()), projNum};
+          command.result = command.values[0].toString();
+          command.key = projNum + "/completion_date";
+          command.notFound = "project not found or already finalised";
+          break;
+        default:
+          throw new IllegalArgumentException("unknown command " + fields[0]);
+      }
+    } catch (IllegalArgumentException error) {
+      //NumberFormatException is an IllegalArgumentException, as are bad dates which have no message
+      command.error = error.getMessage() != null ? error.getMessage() : "invalid value";
+    }
+    return command;
+  }
+
+  /**
+   * Sets up a command that creates a project with existing stakeholders.
+   *
+   * @param command the command
+   * @param fields  fields of the line
+   * @throws SQLException             if a new project number cannot be reserved
+   * @throws IllegalArgumentException if the fields are not valid
+   */
+  private void parseCreate(Command command, String[] fields) throws SQLException {
+    checkFieldCount(fields, 12);
+    String name = fields[1];
+    if (name.isEmpty()) {
+      throw new IllegalArgumentException("project name is empty");
+    }
+    if (searchIndex.containsName(name) || newNames.contains(ProjectCache.normalise(name))) {
+      throw new IllegalArgumentException("project name already exists");
+    }
+    Project project = Project.createNewProject(name, fields[2], fields[3], fields[4],
+        Money.parse(fields[5]), Money.parse(fields[6]), Date.valueOf(fields[7]));
+    for (int i = 0; i < ROLES.length; i++) {
+      Person person = new Person(ROLES[i], "", "", "", "");
+      person.setId(Integer.parseInt(fields[8 + i]));
+      project.addStakeholder(person);
+    }
+    project.setNumForNewProject(idAllocator);
+    command.sql = Project.INSERT;
+    command.project = project;
+    command.result = String.valueOf(project.getNum());
+  }
+
+  /**
+   * Sets up a command that updates one field of a project.
+   *
+   * @param command the command
+   * @param fields  fields of the line
+   * @throws IllegalArgumentException if the fields are not valid
+   */
+  private void parseUpdate(Command command, String[] fields) {
+    checkFieldCount(fields, 4);
+    int projNum = Integer.parseInt(fields[1]);
+    String field = fields[2].toLowerCase();
+    String column = COLUMNS.get(field);
+    if (column == null) {
+      throw new IllegalArgumentException("cannot update " + fields[2]);
+    }
+    Object value;
+    switch (column) {
+      case "total_fee":
+      case "amount_paid":
+        value = Money.toDecimal(Money.parse(fields[3]));
+        break;
+      case "deadline":
+      case "completion_date":
+        value = Date.valueOf(fields[3]);
+        break;
+      default:
+        value = fields[3];
+        break;
+    }
+    //the version is increased so people editing the project see it has changed
+    command.sql = "UPDATE projects SET " + column + "=?, version=version+1 WHERE proj_num=?";
+    command.notFound = "project not found or archived";
+    if (column.equals("completion_date")) {
+      //same as the menu, only a finalised project has a completion date to change
+      command.sql += " AND completion_date IS NOT NULL";
+      command.notFound = "project not found, archived or not finalised";
+    }
+    command.values = new Object[]{value, projNum};
+    command.result = ProjectReport.clean(value.toString());
+    command.key = projNum + "/" + column;
+    command.field = field;
+  }
+
+  /**
+   * Checks that a line has the number of fields its command needs.
+   *
+   * @param fields fields of the line
+   * @param count  number of fields needed
+   * @throws IllegalArgumentException if the number of fields is wrong
+   */
+  private static void checkFieldCount(String[] fields, int count) {
+    if (fields.length != count) {
+      throw new IllegalArgumentException(
+          fields[0] + " expects " + count + " fields but found " + fields.length);
+    }
+  }
+
+  /**
+   * Runs and commits the commands in the current group and writes their results. If the group
+   * fails it is rolled back and the commands are run one at a time.
+   *
+   * @param out writer the results are written to
+   * @throws IOException  if the results cannot be written
+   * @throws SQLException if the connection fails
+   */
+  private void runGroup(Writer out) throws IOException, SQLException {
+    if (group.isEmpty()) {
+      return;
+    }
+    checkStakeholders();
+    //commands with the same SQL are sent as one batch, in the order the SQL first appears
+    Map<String, List<Command>> batches = new LinkedHashMap<>();
+    for (Command command : group) {
+      if (command.error == null) {
+        batches.computeIfAbsent(command.sql, ignored -> new ArrayList<>()).add(command);
+      }
+    }
+    try {
+      for (Map.Entry<String, List<Command>> batch : batches.entrySet()) {
+        PreparedStatement statement = prepare(batch.getKey());
+        for (Command command : batch.getValue()) {
+          command.bind(statement);
+          statement.addBatch();
+        }
+        int[] counts = statement.executeBatch();
+        for (int i = 0; i < counts.length; i++) {
+          batch.getValue().get(i).rows = counts[i];
+        }
+      }
+      connection.commit();
+    } catch (SQLException error) {
+      connection.rollback();
+      for (PreparedStatement statement : statements.values()) {
+        statement.clearBatch();
+      }
+      //running the commands one at a time to find the ones that failed
+      for (Command command : group) {
+        if (command.error == null) {
+          runAlone(command);
+        }
+      }
+    }
+    for (Command command : group) {
+      write(command, out);
+    }
+    groupCount++;
+    group.clear();
+    changedColumns.clear();
+    newNames.clear();
+  }
+
+  /**
+   * Fails the create commands of the current group whose stakeholders do not exist. The ids of
+   * all four roles are looked up with one query.
+   *
+   * @throws SQLException if there are errors accessing the database
+   */
+  private void checkStakeholders() throws SQLException {
+    List<Set<Integer>> ids = new ArrayList<>();
+    for (int i = 0; i < ROLES.length; i++) {
+      ids.add(new HashSet<>());
+    }
+    for (Command command : group) {
+      if (command.error == null && command.project != null) {
+        for (int i = 0; i < ROLES.length; i++) {
+          ids.get(i).add(command.project.getStakeholder(ROLES[i]).getId());
+        }
+      }
+    }
+    if (ids.get(0).isEmpty()) {
+      return;
+    }
+    //one select for each role, the role's position first
+    StringBuilder sql = new StringBuilder();
+    for (int i = 0; i < ROLES.length; i++) {
+      String id = Person.getColumnPrefix(ROLES[i]) + "id";
+      sql.append(i == 0 ? "" : " UNION ALL ").append("SELECT ").append(i).append(", ").append(id)
+          .append(" FROM ").append(Person.getTableName(ROLES[i])).append(" WHERE ").append(id)
+          .append(" IN (");
+      for (int j = 0; j < ids.get(i).size(); j++) {
+        sql.append(j == 0 ? "?" : ",?");
+      }
+      sql.append(')');
+    }
+    List<Set<Integer>> found = new ArrayList<>();
+    for (int i = 0; i < ROLES.length; i++) {
+      found.add(new HashSet<>());
+    }
+    try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+      int parameter = 1;
+      for (Set<Integer> roleIds : ids) {
+        for (int id : roleIds) {
+          statement.setInt(parameter++, id);
+        }
+      }
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          found.get(resultSet.getInt(1)).add(resultSet.getInt(2));
+        }
+      }
+    }
+    for (Command command : group) {
+      if (command.error != null || command.project == null) {
+        continue;
+      }
+      for (int i = 0; i < ROLES.length && command.error == null; i++) {
+        int id = command.project.getStakeholder(ROLES[i]).getId();
+        if (!found.get(i).contains(id)) {
+          command.error = ROLES[i].toLowerCase() + " " + id + " not found";
+        }
+      }
+    }
+  }
+
+  /**
+   * Runs and commits a single command, recording the error if it fails.
+   *
+   * @param command the command
+   * @throws SQLException if the connection fails while rolling back
+   */
+  private void runAlone(Command command) throws SQLException {
+    try {
+      PreparedStatement statement = prepare(command.sql);
+      command.bind(statement);
+      command.rows = statement.executeUpdate();
+      connection.commit();
+    } catch (SQLException error) {
+      connection.rollback();
+      command.error = error.getMessage();
+    }
+  }
+
+  /**
+   * Writes the result of a command, and adds the changes it made to the search index.
+   *
+   * @param command the command
+   * @param out     writer the results are written to
+   * @throws IOException if the result cannot be written
+   */
+  private void write(Command command, Writer out) throws IOException {
+    //a batch may not report the rows changed by each command
+    boolean done = command.rows > 0 || command.rows == Statement.SUCCESS_NO_INFO;
+    if (command.error == null && !done) {
+      command.error = command.notFound;
+    }
+    if (command.error != null) {
+      failedCount++;
+      out.append(String.valueOf(command.lineNum)).append("\tERROR\t")
+          .append(ProjectReport.clean(command.line)).append('\t')
+          .append(ProjectReport.clean(command.error)).append('\n');
+      return;
+    }
+    if (command.project != null) {
+      searchIndex.put(command.project);
+    } else if (command.field != null) {
+      String value = command.values[0].toString();
+      switch (command.field) {
+        case "name":
+          searchIndex.update((Integer) command.values[1], value, null, null);
+          break;
+        case "address":
+          searchIndex.update((Integer) command.values[1], null, value, null);
+          break;
+        case "erf_num":
+          searchIndex.update((Integer) command.values[1], null, null, value);
+          break;
+        default:
+          break;
+      }
+    }
+    out.append(String.valueOf(command.lineNum)).append("\tOK\t")
+        .append(ProjectReport.clean(command.line)).append('\t')
+        .append(command.result).append('\n');
+  }
+
+  /**
+   * Runs a list command, writing a line for each project in the list.
+   *
+   * @param lineNum line number
+   * @param fields  fields of the line
+   * @param out     writer the results are written to
+   * @throws IOException  if the results cannot be written
+   * @throws SQLException if the connection fails
+   */
+  private void list(int lineNum, String[] fields, Writer out) throws IOException, SQLException {
+    String line = String.join("|", fields);
+    ProjectReport report = null;
+    if (fields.length == 2 && fields[1].equalsIgnoreCase("open")) {
+      report = ProjectReport.projectsToComplete();
+    } else if (fields.length == 2 && fields[1].equalsIgnoreCase("past_due")) {
+      report = ProjectReport.pastDueProjects(Date.valueOf(LocalDate.now()));
+    }
+    if (report == null) {
+      failedCount++;
+      out.append(String.valueOf(lineNum)).append("\tERROR\t").append(ProjectReport.clean(line))
+          .append("\tlist expects open or past_due\n");
+      return;
+    }
+    long rows = report.setFetchSize(1000).setPageSize(1000)
+        .writeRows(connection, out, lineNum + "\tROW\t");
+    out.append(String.valueOf(lineNum)).append("\tOK\t").append(ProjectReport.clean(line))
+        .append('\t').append(String.valueOf(rows)).append('\n');
+  }
+
+  /**
+   * Returns the statement for some SQL, preparing it the first time it is used.
+   *
+   * @param sql the SQL
+   * @return the prepared statement
+   * @throws SQLException if there are errors accessing the database
+   */
+  private PreparedStatement prepare(String sql) throws SQLException {
+    PreparedStatement statement = statements.get(sql);
+    if (statement == null) {
+      statement = connection.prepareStatement(sql);
+      statements.put(sql, statement);
+    }
+    return statement;
+  }
+
+  /**
+   * Returns the number of commands run.
+   *
+   * @return number of commands
+   */
+  public long getCommandCount() {
+    return commandCount;
+  }
+
+  /**
+   * Returns the number of commands that failed.
+   *
+   * @return number of failed commands
+   */
+  public long getFailedCount() {
+    return failedCount;
+  }
+
+  /**
+   * Returns a string with the counts and speed of the last run.
+   *
+   * @return string with the batch statistics
+   */
+  public String getStatistics() {
+    double seconds = elapsedNanos / 1e9;
+    return "Ran " + commandCount + " commands in " + groupCount + " groups in "
+        + String.format("%.2f", seconds) + "s ("
+        + String.format("%.0f", seconds > 0 ? commandCount / seconds : 0) + " commands/sec), "
+        + failedCount + " failed.";
+  }
+
+  /**
+   * A command read from the file.
+   */
+  private static final class Command {
+
+    private final int lineNum;
+    private final String line;
+    private String sql;
+    private Object[] values;
+    //project to insert, for a create command
+    private Project project;
+    //field being updated, for an update command
+    private String field;
+    //row and column the command changes
+    private String key;
+    //result written when the command succeeds
+    private String result;
+    private String notFound;
+    private String error;
+    private int rows = 0;
+
+    private Command(int lineNum, String line) {
+      this.lineNum = lineNum;
+      this.line = line;
+    }
+
+    /**
+     * Sets the values of this command on its statement.
+     *
+     * @param statement statement prepared from this command's SQL
+     * @throws SQLException if there are errors accessing the database
+     */
+    private void bind(PreparedStatement statement) throws SQLException {
+      if (project != null) {
+        project.setInsertValues(statement);
+        return;
+      }
+      for (int i = 0; i < values.length; i++) {
+        statement.setObject(i + 1, values[i]);
+      }
+    }
+  }
+}
@@ -0,0 +1,275 @@
+//importing libraries
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ProjectCache keeps recently used projects, with their stakeholders, in memory. Projects are
+ * found by project number or by name, and are read from the database when they are not cached.
+ * The least recently used project is removed when the cache is full, and projects are reloaded
+ * once they have been cached for longer than the time to live.
+ *
+ * <p>Code that changes a project in the database puts the saved project in the cache after
+ * committing, and removes it from the cache before editing it, so the cache never returns changes
+ * that were not saved. A project read from the database is only cached if no project was put or
+ * removed while it was being read, and a copy never replaces a cached copy with a higher version,
+ * so a slow read cannot overwrite a newer copy saved in the meantime.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class ProjectCache {
+
+  private final int maxSize;
+  private final long ttlNanos;
+  private final LinkedHashMap<Integer, CachedProject> byNum;
+  private final Map<String, Integer> numByName = new HashMap<>();
+
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+  private long expirations = 0;
+  //increased by every put and removal, so a read can tell if the cache changed while it ran
+  private long changes = 0;
+
+  /**
+   * Constructor to initialise an empty cache.
+   *
+   * @param maxSize    maximum number of projects kept
+   * @param ttlSeconds number of seconds a project is kept before it is read again
+   */
+  public ProjectCache(int maxSize, long ttlSeconds) {
+    this.maxSize = maxSize;
+    this.ttlNanos = ttlSeconds * 1_000_000_000L;
+    //access order keeps the least recently used project first
+    this.byNum = new LinkedHashMap<Integer, CachedProject>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, CachedProject> eldest) {
+        if (size() > ProjectCache.this.maxSize) {
+          evictions++;
+          numByName.remove(eldest.getValue().name);
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns the project with a project number, reading it from the database if it is not cached.
+   *
+   * @param connection database connection
+   * @param projNum    project number
+   * @return the project, or null if there is no project with that number
+   * @throws SQLException if there are errors accessing the database
+   */
+  public Project getByNum(Connection connection, int projNum) throws SQLException {
+    Project project = getCached(projNum);
+    if (project == null) {
+      long seen = getChanges();
+      project = Project.getProjectByNum(connection, projNum);
+      putLoaded(project, seen);
+    }
+    return project;
+  }
+
+  /**
+   * Returns the project with a name, reading it from the database if it is not cached.
+   *
+   * @param connection database connection
+   * @param projName   project name
+   * @return the project, or null if there is no project with that name
+   * @throws SQLException if there are errors accessing the database
+   */
+  public Project getByName(Connection connection, String projName) throws SQLException {
+    Project project = null;
+    long seen;
+    synchronized (this) {
+      seen = changes;
+      Integer projNum = numByName.get(normalise(projName));
+      if (projNum != null) {
+        project = getCached(projNum);
+      } else {
+        misses++;
+      }
+    }
+    if (project == null) {
+      project = Project.getProjectByName(connection, projName);
+      putLoaded(project, seen);
+    }
+    return project;
+  }
+
+  /**
+   * Checks if a project name is taken, using the cache before the database.
+   *
+   * @param connection database connection
+   * @param projName   project name
+   * @return true if a project has the name, else false
+   * @throws SQLException if there are errors accessing the database
+   */
+  public boolean nameExists(Connection connection, String projName) throws SQLException {
+    synchronized (this) {
+      Integer projNum = numByName.get(normalise(projName));
+      if (projNum != null && getCached(projNum) != null) {
+        return true;
+      }
+    }
+    return Project.projectExists(projName, connection);
+  }
+
+  /**
+   * Returns a cached project that has not expired.
+   *
+   * @param projNum project number
+   * @return the project, or null if it is not cached
+   */
+  private synchronized Project getCached(int projNum) {
+    CachedProject entry = byNum.get(projNum);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    if (System.nanoTime() - entry.cachedAt > ttlNanos) {
+      expirations++;
+      misses++;
+      remove(projNum);
+      return null;
+    }
+    hits++;
+    return entry.project;
+  }
+
+  /**
+   * Returns the number of puts and removals so far.
+   *
+   * @return number of changes to the cache
+   */
+  private synchronized long getChanges() {
+    return changes;
+  }
+
+  /**
+   * Puts a project read from the database in the cache, unless the cache changed while it was
+   * read, as the copy read may be older than a change saved in the meantime.
+   *
+   * @param project the project, null is ignored
+   * @param seen    the number of changes before the project was read
+   */
+  private synchronized void putLoaded(Project project, long seen) {
+    if (changes == seen) {
+      put(project);
+    }
+  }
+
+  /**
+   * Puts a saved project in the cache, replacing any copy with the same or a lower version.
+   *
+   * @param project the project, null is ignored
+   */
+  public synchronized void put(Project project) {
+    if (project == null) {
+      return;
+    }
+    CachedProject cached = byNum.get(project.getNum());
+    if (cached != null && cached.project.getVersion() > project.getVersion()) {
+      return;
+    }
+    changes++;
+    remove(project.getNum());
+    String name = normalise(project.getName());
+    byNum.put(project.getNum(), new CachedProject(project, name));
+    numByName.put(name, project.getNum());
+  }
+
+  /**
+   * Removes a project from the cache.
+   *
+   * @param projNum project number
+   */
+  public synchronized void invalidate(int projNum) {
+    changes++;
+    remove(projNum);
+  }
+
+  /**
+   * Removes all projects that have a person as a stakeholder.
+   *
+   * @param person the stakeholder that changed
+   */
+  public synchronized void invalidatePerson(Person person) {
+    changes++;
+    Iterator<CachedProject> iterator = byNum.values().iterator();
+    while (iterator.hasNext()) {
+      CachedProject entry = iterator.next();
+      Person stakeholder = entry.project.getStakeholder(person.getRole());
+      if (stakeholder != null && stakeholder.getId() == person.getId()) {
+        numByName.remove(entry.name);
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes a project and its name from the cache.
+   *
+   * @param projNum project number
+   */
+  private void remove(int projNum) {
+    CachedProject entry = byNum.remove(projNum);
+    if (entry != null) {
+      numByName.remove(entry.name);
+    }
+  }
+
+  /**
+   * Returns a project name in the form used to look it up.
+   *
+   * @param name project name
+   * @return trimmed, lower case name with single spaces
+   */
+  static String normalise(String name) {
+    return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Returns the fraction of lookups found in the cache.
+   *
+   * @return hit ratio between 0 and 1
+   */
+  public synchronized double getHitRatio() {
+    long total = hits + misses;
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /**
+   * Returns a string with the size and hit, miss and eviction counts of the cache.
+   *
+   * @return string with the cache statistics
+   */
+  public synchronized String getStatistics() {
+    return "Project cache: size=" + byNum.size() + "/" + maxSize + " hits=" + hits + " misses="
+        + misses + " hit ratio=" + String.format("%.1f", getHitRatio() * 100) + "% evictions="
+        + evictions + " expirations=" + expirations;
+  }
+
+  /**
+   * A cached project and the time it was cached.
+   */
+  private static final class CachedProject {
+
+    private final Project project;
+    private final String name;
+    private final long cachedAt = System.nanoTime();
+
+    private CachedProject(Project project, String name) {
+      this.project = project;
+      this.name = name;
+    }
+  }
+}
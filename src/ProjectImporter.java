@@ -0,0 +1,366 @@
+//importing libraries
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ProjectImporter loads projects from files in the Projects.txt layout:
+ * <pre>
+ * Project#, Name, Building type, Address, ERF #, Total fee, Amount paid, Deadline, Finalised,
+ * Completion Date, [Architect], [Contractor], [Customer]
+ * </pre>
+ * where each stakeholder is a bracketed group of name, phone number, email and address. The file
+ * is read a line at a time. Stakeholders already in the database, or that appear more than once,
+ * are only added once, and rows are written with batch inserts, committing once per chunk of
+ * projects.
+ *
+ * <p>The contractor is stored as the project manager. The file has no structural engineer, so
+ * imported projects share an "Unassigned" structural engineer. Projects get new project numbers
+ * so they cannot clash with projects already in the database, and a line with the name of an
+ * existing project is skipped, so importing a file again adds nothing. A line is read and checked
+ * in full before any stakeholder or number is added for it.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class ProjectImporter {
+
+  private static final String[] ROLES =
+      {"Structural Engineer", "Project Manager", "Architect", "Customer"};
+
+  private final Connection connection;
+  private final IdAllocator idAllocator;
+  private final ProjectSearchIndex searchIndex;
+  private final int chunkSize;
+
+  //stakeholders in the database or already imported, keyed by role and details
+  private final Map<String, Person> stakeholders = new HashMap<>();
+  private final Person unassignedEngineer;
+  //names of projects read but not yet added to the search index
+  private final Set<String> newNames = new HashSet<>();
+  //lines that could not be imported, with the reason
+  private final List<String> skippedLines = new ArrayList<>();
+
+  private long projectCount = 0;
+  private long stakeholderCount = 0;
+  private long elapsedNanos = 0;
+
+  /**
+   * Constructor to initialise an importer.
+   *
+   * @param connection  database connection, with auto-commit disabled
+   * @param idAllocator allocator for new project numbers and stakeholder IDs
+   * @param searchIndex index of the project names, used to skip names that are taken and kept up
+   *                    to date with the projects imported
+   * @param chunkSize   number of projects to insert in each transaction
+   */
+  public ProjectImporter(Connection connection, IdAllocator idAllocator,
+      ProjectSearchIndex searchIndex, int chunkSize) {
+    this.connection = connection;
+    this.idAllocator = idAllocator;
+    this.searchIndex = searchIndex;
+    this.chunkSize = Math.max(1, chunkSize);
+    this.unassignedEngineer = new Person("Structural Engineer", "Unassigned", "", "", "");
+  }
+
+  /**
+   * Imports all projects in a file.
+   *
+   * @param file file to import
+   * @return number of projects imported
+   * @throws IOException  if the file cannot be read
+   * @throws SQLException if there are errors accessing the database, the current chunk is rolled
+   *                      back
+   */
+  public long importFile(Path file) throws IOException, SQLException {
+    long start = System.nanoTime();
+    Map<String, PreparedStatement> personInserts = new LinkedHashMap<>();
+    for (String role : ROLES) {
+      String tableName = Person.getTableName(role);
+      personInserts.put(role,
+          StatementRegistry.prepare(connection, tableName, StatementRegistry.INSERT));
+      loadStakeholders(role);
+    }
+    List<Project> chunk = new ArrayList<>(chunkSize);
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        PreparedStatement projectInsert = connection.prepareStatement(Project.INSERT)) {
+      String line;
+      int lineNum = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNum++;
+        //skipping the header and blank lines
+        if (line.trim().isEmpty() || line.startsWith("Project#")) {
+          continue;
+        }
+        try {
+          chunk.add(parseProject(line, personInserts));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | ArithmeticException error) {
+          skippedLines.add("line " + lineNum + ": " + error.getMessage());
+        }
+        if (chunk.size() >= chunkSize) {
+          writeChunk(chunk, personInserts, projectInsert);
+        }
+      }
+      writeChunk(chunk, personInserts, projectInsert);
+    } catch (SQLException error) {
+      connection.rollback();
+      throw error;
+    } finally {
+      elapsedNanos = System.nanoTime() - start;
+    }
+    return projectCount;
+  }
+
+  /**
+   * Adds the people of a role in the database to the stakeholders, so they are used instead of
+   * being added again.
+   *
+   * @param role role of the people
+   * @throws SQLException if there are errors accessing the database
+   */
+  private void loadStakeholders(String role) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(
+        "SELECT * FROM " + Person.getTableName(role), ResultSet.TYPE_FORWARD_ONLY,
+        ResultSet.CONCUR_READ_ONLY)) {
+      statement.setFetchSize(1000);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          Person person = Person.createPersonFromResultSet(resultSet, role);
+          stakeholders.putIfAbsent(keyOf(person), person);
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates a project from a line of the file. New stakeholders are added to the insert batches.
+   *
+   * @param line          line of the file
+   * @param personInserts insert statements for each role
+   * @return the project
+   * @throws SQLException             if new IDs cannot be reserved
+   * @throws IllegalArgumentException if the line is not in the expected layout or the project
+   *                                  name is taken
+   */
+  private Project parseProject(String line, Map<String, PreparedStatement> personInserts)
+      throws SQLException {
+    List<String> fields = splitFields(line);
+    if (fields.size() != 13) {
+      throw new IllegalArgumentException("expected 13 fields but found " + fields.size());
+    }
+    //reading the whole line first, so a bad line adds no stakeholders
+    Project project = Project.createNewProject(fields.get(1), fields.get(2), fields.get(3),
+        fields.get(4), parseAmount(fields.get(5)), parseAmount(fields.get(6)),
+        Date.valueOf(fields.get(7)));
+    if (fields.get(8).equalsIgnoreCase("Yes")) {
+      project.setCompletionDate(Date.valueOf(fields.get(9)));
+    }
+    Person manager = parsePerson("Project Manager", fields.get(11));
+    Person architect = parsePerson("Architect", fields.get(10));
+    Person customer = parsePerson("Customer", fields.get(12));
+    String name = ProjectCache.normalise(project.getName());
+    if (searchIndex.containsName(name) || newNames.contains(name)) {
+      throw new IllegalArgumentException("project name " + project.getName()
+          + " already exists");
+    }
+    newNames.add(name);
+    project.setNumForNewProject(idAllocator);
+    //adding the stakeholders in the same order as a new project
+    project.addStakeholder(getStakeholder(unassignedEngineer, personInserts));
+    project.addStakeholder(getStakeholder(manager, personInserts));
+    project.addStakeholder(getStakeholder(architect, personInserts));
+    project.addStakeholder(getStakeholder(customer, personInserts));
+    return project;
+  }
+
+  /**
+   * Returns the stakeholder already imported with the same details, or gives the person an ID and
+   * adds them to the insert batch for their role.
+   *
+   * @param person        person read from the file
+   * @param personInserts insert statements for each role
+   * @return the stakeholder to use for the project
+   * @throws SQLException if a new ID cannot be reserved
+   */
+  private Person getStakeholder(Person person, Map<String, PreparedStatement> personInserts)
+      throws SQLException {
+    String key = keyOf(person);
+    Person existing = stakeholders.get(key);
+    if (existing != null) {
+      return existing;
+    }
+    person.setNewId(idAllocator, Person.getTableName(person.getRole()));
+    PreparedStatement insert = personInserts.get(person.getRole());
+    person.setInsertValues(insert);
+    insert.addBatch();
+    stakeholders.put(key, person);
+    stakeholderCount++;
+    return person;
+  }
+
+  /**
+   * Returns the key of a stakeholder in the stakeholders already imported.
+   *
+   * @param person the stakeholder
+   * @return the role and details of the stakeholder
+   */
+  private static String keyOf(Person person) {
+    return person.getRole() + '\u0000' + person.getName() + '\u0000'
+        + person.getContactNumber() + '\u0000' + person.getEmail() + '\u0000'
+        + person.getAddress();
+  }
+
+  /**
+   * Inserts a chunk of projects, and the stakeholders they added, and commits them.
+   *
+   * @param chunk         projects to insert
+   * @param personInserts insert statements for each role
+   * @param projectInsert insert statement for projects
+   * @throws SQLException if there are errors accessing the database
+   */
+  private void writeChunk(List<Project> chunk, Map<String, PreparedStatement> personInserts,
+      PreparedStatement projectInsert) throws SQLException {
+    if (chunk.isEmpty()) {
+      return;
+    }
+    //stakeholders first so the projects can refer to them
+    for (PreparedStatement insert : personInserts.values()) {
+      insert.executeBatch();
+    }
+    for (Project project : chunk) {
+      project.setInsertValues(projectInsert);
+      projectInsert.addBatch();
+    }
+    projectInsert.executeBatch();
+    connection.commit();
+    for (Project project : chunk) {
+      searchIndex.put(project);
+    }
+    newNames.clear();
+    projectCount += chunk.size();
+    chunk.clear();
+  }
+
+  /**
+   * Splits a line into its fields. Commas inside a bracketed stakeholder group do not split the
+   * line.
+   *
+   * @param line line of the file
+   * @return trimmed fields
+   */
+  static List<String> splitFields(String line) {
+    List<String> fields = new ArrayList<>(13);
+    int depth = 0;
+    int start = 0;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '[') {
+        depth++;
+      } else if (c == ']') {
+        depth--;
+      } else if (c == ',' && depth == 0) {
+        fields.add(line.substring(start, i).trim());
+        start = i + 1;
+      }
+    }
+    fields.add(line.substring(start).trim());
+    return fields;
+  }
+
+  /**
+   * Creates a person from a bracketed group of name, phone number, email and address.
+   *
+   * @param role  role of the person
+   * @param group the bracketed group
+   * @return the person
+   * @throws IllegalArgumentException if the group is not in the expected layout
+   */
+  private static Person parsePerson(String role, String group) {
+    if (!group.startsWith("[") || !group.endsWith("]")) {
+      throw new IllegalArgumentException("expected a bracketed " + role + " but found " + group);
+    }
+    //the address is last so it keeps any commas it contains
+    String[] details = group.substring(1, group.length() - 1).split(",", 4);
+    if (details.length != 4) {
+      throw new IllegalArgumentException("expected 4 details for the " + role);
+    }
+    return new Person(role, details[0].trim(), details[1].trim(), details[2].trim(),
+        details[3].trim());
+  }
+
+  /**
+   * Parses an amount such as "R1221.00".
+   *
+   * @param amount amount from the file
+   * @return the amount, in cents
+   * @throws NumberFormatException if the amount is not a number
+   */
+  private static long parseAmount(String amount) {
+    return Money.parse(amount);
+  }
+
+  /**
+   * Returns the number of projects imported.
+   *
+   * @return number of projects imported
+   */
+  public long getProjectCount() {
+    return projectCount;
+  }
+
+  /**
+   * Returns the number of new stakeholders added.
+   *
+   * @return number of new stakeholders
+   */
+  public long getStakeholderCount() {
+    return stakeholderCount;
+  }
+
+  /**
+   * Returns the number of lines that could not be imported.
+   *
+   * @return number of lines skipped
+   */
+  public long getSkippedCount() {
+    return skippedLines.size();
+  }
+
+  /**
+   * Returns the lines that could not be imported, each as its line number and the reason.
+   *
+   * @return the skipped lines
+   */
+  public List<String> getSkippedLines() {
+    return Collections.unmodifiableList(skippedLines);
+  }
+
+  /**
+   * Returns a string with the counts and speed of the last import.
+   *
+   * @return string with the import statistics
+   */
+  public String getStatistics() {
+    double seconds = elapsedNanos / 1e9;
+    return "Imported " + projectCount + " projects and " + stakeholderCount + " stakeholders in "
+        + String.format("%.2f", seconds) + "s ("
+        + String.format("%.0f", seconds > 0 ? projectCount / seconds : 0) + " rows/sec), skipped "
+        + skippedLines.size() + " lines.";
+  }
+}
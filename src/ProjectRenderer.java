@@ -0,0 +1,182 @@
+//importing libraries
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.TimeZone;
+
+/**
+ * ProjectRenderer writes the details of projects and their stakeholders as they are shown to the
+ * user, straight into a builder the caller reuses. Projects can be written from a Project object,
+ * from the current row of a {@link ProjectRow} or from a {@link ProjectSnapshot}, all in the same
+ * layout. Amounts and dates are written digit by digit, so writing a project only creates the
+ * objects the database driver hands back for its row.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public final class ProjectRenderer {
+
+  private static final String STAKEHOLDERS_HEADING = "\n\nStakeholders\n-------------\n";
+  private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+  //days from 1970-01-01 to 1582-10-15, the first day of the Gregorian calendar
+  private static final long GREGORIAN_START_DAY = -141427;
+  //time zone the dates are shown in, as for Date#toString()
+  private static final TimeZone ZONE = TimeZone.getDefault();
+
+  /**
+   * ProjectRenderer only has static methods.
+   */
+  private ProjectRenderer() {
+  }
+
+  /**
+   * Appends the details of a project.
+   *
+   * @param text    builder to append to
+   * @param project the project
+   * @return the builder
+   */
+  public static StringBuilder appendProject(StringBuilder text, Project project) {
+    return appendProject(text, project.getNum(), project.getName(), project.getBuildingType(),
+        project.getAddress(), project.getErfNum(), project.getTotalFeeCents(),
+        project.getAmountPaidCents(), project.getDeadline(), project.getCompletionDate());
+  }
+
+  /**
+   * Appends the details of the project in the current row of a row view.
+   *
+   * @param text builder to append to
+   * @param row  row view positioned on a project
+   * @return the builder
+   * @throws SQLException if there are errors accessing the database
+   */
+  public static StringBuilder appendProject(StringBuilder text, ProjectRow row)
+      throws SQLException {
+    return appendProject(text, row.getNum(), row.getName(), row.getBuildingType(),
+        row.getAddress(), row.getErfNum(), row.getTotalFeeCents(), row.getAmountPaidCents(),
+        row.getDeadline(), row.getCompletionDate());
+  }
+
+  /**
+   * Appends the details of a project in a snapshot.
+   *
+   * @param text     builder to append to
+   * @param snapshot the snapshot
+   * @param index    position of the project in the snapshot
+   * @return the builder
+   */
+  public static StringBuilder appendProject(StringBuilder text, ProjectSnapshot snapshot,
+      int index) {
+    return appendProject(text, snapshot.getProjNum(index), snapshot.getName(index),
+        snapshot.getBuildingType(index), snapshot.getAddress(index), snapshot.getErfNum(index),
+        snapshot.getTotalFeeCents(index), snapshot.getAmountPaidCents(index),
+        snapshot.getDeadline(index), snapshot.getCompletionDate(index));
+  }
+
+  /**
+   * Appends the details of a project.
+   *
+   * @param text           builder to append to
+   * @param projNum        project number
+   * @param name           project name
+   * @param buildingType   building type
+   * @param address        physical address
+   * @param erfNum         ERF number
+   * @param totalFee       total fee, in cents
+   * @param amountPaid     amount paid, in cents
+   * @param deadline       deadline
+   * @param completionDate completion date, or null if the project is open
+   * @return the builder
+   */
+  private static StringBuilder appendProject(StringBuilder text, int projNum, String name,
+      String buildingType, String address, String erfNum, long totalFee, long amountPaid,
+      Date deadline, Date completionDate) {
+    text.append("\nProject details:\n-----------------\n[Project no.: ").append(projNum)
+        .append("]\nName: ").append(name)
+        .append("\nBuilding type: ").append(buildingType)
+        .append("\nAddress: ").append(address)
+        .append("\nERF no.: ").append(erfNum)
+        .append("\nTotal fee: R");
+    Money.append(text, totalFee).append("\nAmount paid: R");
+    Money.append(text, amountPaid).append("\nDeadline: ");
+    appendDate(text, deadline);
+    // if project has been finalised include the completion date in the string
+    if (completionDate != null) {
+      appendDate(text.append("\nCompletion date: "), completionDate).append("\nFinalised: Yes");
+    } else {
+      text.append("\nFinalised: No");
+    }
+    return text;
+  }
+
+  /**
+   * Appends the details of the stakeholders fetched with a project, under a heading.
+   *
+   * @param text    builder to append to
+   * @param project the project
+   * @return the builder
+   */
+  public static StringBuilder appendStakeholders(StringBuilder text, Project project) {
+    text.append(STAKEHOLDERS_HEADING);
+    boolean first = true;
+    for (Person person : project.getStakeholders()) {
+      if (!first) {
+        text.append("\n\n");
+      }
+      appendPerson(text, person);
+      first = false;
+    }
+    return text;
+  }
+
+  /**
+   * Appends the details of a person.
+   *
+   * @param text   builder to append to
+   * @param person the person
+   * @return the builder
+   */
+  public static StringBuilder appendPerson(StringBuilder text, Person person) {
+    return text.append('[').append(person.getRole())
+        .append("]\nName: ").append(person.getName())
+        .append("\nPhone Number: ").append(person.getContactNumber())
+        .append("\nE-mail Address: ").append(person.getEmail())
+        .append("\nPhysical Address: ").append(person.getAddress());
+  }
+
+  /**
+   * Appends a date as yyyy-mm-dd, the same as {@link Date#toString()} but without creating a
+   * String or calendar for it. The day is worked out from the milliseconds of the date in the
+   * default time zone, which is read once when the class is loaded.
+   *
+   * @param text builder to append to
+   * @param date the date, or null
+   * @return the builder
+   */
+  public static StringBuilder appendDate(StringBuilder text, Date date) {
+    if (date == null) {
+      return text.append("null");
+    }
+    long millis = date.getTime();
+    long epochDay = Math.floorDiv(millis + ZONE.getOffset(millis), MILLIS_PER_DAY);
+    if (epochDay < GREGORIAN_START_DAY) {
+      //Date uses the Julian calendar before the Gregorian one started
+      return text.append(date.toString());
+    }
+    //converting the days since 1970-01-01 to a date, in 400 year eras starting on 1 March
+    long shifted = epochDay + 719468;
+    long era = Math.floorDiv(shifted, 146097);
+    int dayOfEra = (int) (shifted - era * 146097);
+    int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    int monthFromMarch = (5 * dayOfYear + 2) / 153;
+    int day = dayOfYear - (153 * monthFromMarch + 2) / 5 + 1;
+    int month = monthFromMarch < 10 ? monthFromMarch + 3 : monthFromMarch - 9;
+    int year = (int) (era * 400) + yearOfEra + (month <= 2 ? 1 : 0);
+    //the year is always written with four digits
+    return text.append((char) ('0' + year / 1000 % 10)).append((char) ('0' + year / 100 % 10))
+        .append((char) ('0' + year / 10 % 10)).append((char) ('0' + year % 10))
+        .append('-').append((char) ('0' + month / 10)).append((char) ('0' + month % 10))
+        .append('-').append((char) ('0' + day / 10)).append((char) ('0' + day % 10));
+  }
+}
@@ -0,0 +1,350 @@
+//importing libraries
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ProjectReport writes a list of projects from the database to a writer. The rows are read with
+ * a forward-only cursor a fetch at a time and written a page at a time, so a report of any size
+ * only keeps one fetch of rows and one page of text in memory.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class ProjectReport {
+
+  //columns a report can be sorted by
+  private static final List<String> SORT_COLUMNS = Arrays
+      .asList("proj_num", "proj_name", "building_type", "total_fee", "amount_paid", "deadline");
+  private static final String SEPARATOR =
+      "-----------------------------------------------------------\n";
+
+  /**
+   * Format of one project in a report.
+   */
+  private interface RowFormat {
+
+    /**
+     * Appends the project in the current row.
+     *
+     * @param text    builder to append to
+     * @param project row view positioned on a project
+     * @param row     number of projects already written
+     * @throws SQLException if there are errors accessing the database
+     */
+    void append(StringBuilder text, ProjectRow project, long row) throws SQLException;
+  }
+
+  private final String condition;
+  private final Date date;
+  private int fetchSize = 500;
+  private int pageSize = 100;
+  private String sortColumn = null;
+  private boolean descending = false;
+  private int limit = 0;
+
+  /**
+   * Constructor to initialise a report of the projects matching a condition.
+   *
+   * @param condition SQL condition for the projects in the report, with at most one date parameter
+   * @param date      value of the date parameter, or null if the condition has none
+   */
+  private ProjectReport(String condition, Date date) {
+    this.condition = condition;
+    this.date = date;
+  }
+
+  /**
+   * Creates a report of the projects that have not been completed.
+   *
+   * @return the report
+   */
+  public static ProjectReport projectsToComplete() {
+    return new ProjectReport("completion_date IS NULL", null);
+  }
+
+  /**
+   * Creates a report of the projects that have not been completed and are past their deadline.
+   *
+   * @param today the current date
+   * @return the report
+   */
+  public static ProjectReport pastDueProjects(Date today) {
+    return new ProjectReport("deadline<? AND completion_date IS NULL", today);
+  }
+
+  /**
+   * Sets the number of rows read from the database at a time.
+   *
+   * @param fetchSize number of rows per fetch
+   * @return this report
+   */
+  public ProjectReport setFetchSize(int fetchSize) {
+    this.fetchSize = fetchSize;
+    return this;
+  }
+
+  /**
+   * Sets the number of projects written before the writer is flushed.
+   *
+   * @param pageSize number of projects per page
+   * @return this report
+   */
+  public ProjectReport setPageSize(int pageSize) {
+    this.pageSize = Math.max(1, pageSize);
+    return this;
+  }
+
+  /**
+   * Sorts the report by a column.
+   *
+   * @param sortColumn column to sort by
+   * @param descending true to sort from highest to lowest
+   * @return this report
+   * @throws IllegalArgumentException if the report cannot be sorted by the column
+   */
+  public ProjectReport setSort(String sortColumn, boolean descending) {
+    if (!SORT_COLUMNS.contains(sortColumn)) {
+      throw new IllegalArgumentException("Cannot sort by: " + sortColumn);
+    }
+    this.sortColumn = sortColumn;
+    this.descending = descending;
+    return this;
+  }
+
+  /**
+   * Limits the number of projects in the report.
+   *
+   * @param limit maximum number of projects, 0 for no limit
+   * @return this report
+   */
+  public ProjectReport setLimit(int limit) {
+    this.limit = Math.max(0, limit);
+    return this;
+  }
+
+  /**
+   * Returns the query for the report.
+   *
+   * @return SQL query
+   */
+  private String getQuery() {
+    StringBuilder query = new StringBuilder("SELECT * FROM projects WHERE ").append(condition);
+    if (sortColumn != null) {
+      query.append(" ORDER BY ").append(sortColumn).append(descending ? " DESC" : " ASC");
+    }
+    if (limit > 0) {
+      query.append(" LIMIT ").append(limit);
+    }
+    return query.toString();
+  }
+
+  /**
+   * Writes the report. The writer is flushed after every page but not closed.
+   *
+   * @param connection database connection
+   * @param out        writer to write the report to
+   * @return number of projects written
+   * @throws SQLException if there are errors accessing the database
+   * @throws IOException  if the report cannot be written
+   */
+  public long write(Connection connection, Writer out) throws SQLException, IOException {
+    return write(connection, out, "", (text, project, row) ->
+        ProjectRenderer.appendProject(text, project).append('\n').append(SEPARATOR), "");
+  }
+
+  /**
+   * Writes the report from a snapshot instead of the database, such as when the database cannot
+   * be reached. The projects are written in project number order, whatever the sort, and the
+   * writer is flushed after every page but not closed.
+   *
+   * @param snapshot snapshot of the projects
+   * @param out      writer to write the report to
+   * @return number of projects written
+   * @throws IOException if the report cannot be written
+   */
+  public long write(ProjectSnapshot snapshot, Writer out) throws IOException {
+    long rows = 0;
+    StringBuilder text = new StringBuilder(512 * pageSize);
+    char[] chars = new char[text.capacity()];
+    for (int i = 0; i < snapshot.getProjectCount() && (limit == 0 || rows < limit); i++) {
+      //both reports are of open projects, and the past due report has a date
+      if (snapshot.isFinalised(i) || date != null && !snapshot.isPastDue(i, date.toLocalDate())) {
+        continue;
+      }
+      ProjectRenderer.appendProject(text, snapshot, i).append('\n').append(SEPARATOR);
+      rows++;
+      if (rows % pageSize == 0) {
+        chars = writePage(out, text, chars);
+      }
+    }
+    writePage(out, text, chars);
+    return rows;
+  }
+
+  /**
+   * Writes the report with one tab-separated line per project, for other programs to read. Each
+   * line starts with a prefix and is followed by the project number, name, building type, address,
+   * ERF number, total fee, amount paid, deadline and completion date. The writer is flushed after
+   * every page but not closed.
+   *
+   * @param connection database connection
+   * @param out        writer to write the report to
+   * @param prefix     text written at the start of each line
+   * @return number of projects written
+   * @throws SQLException if there are errors accessing the database
+   * @throws IOException  if the report cannot be written
+   */
+  public long writeRows(Connection connection, Writer out, String prefix)
+      throws SQLException, IOException {
+    return write(connection, out, "", (text, project, row) -> appendRow(text.append(prefix),
+        project), "");
+  }
+
+  /**
+   * Writes the report as a JSON array of projects. The writer is flushed after every page but not
+   * closed.
+   *
+   * @param connection database connection
+   * @param out        writer to write the report to
+   * @return number of projects written
+   * @throws SQLException if there are errors accessing the database
+   * @throws IOException  if the report cannot be written
+   */
+  public long writeJson(Connection connection, Writer out) throws SQLException, IOException {
+    return write(connection, out, "[", (text, project, row) -> {
+      if (row > 0) {
+        text.append(',');
+      }
+      appendJson(text, project);
+    }, "]");
+  }
+
+  /**
+   * Writes each project of the report in a format.
+   *
+   * @param connection database connection
+   * @param out        writer to write the report to
+   * @param head       text written before the first project
+   * @param format     format of each project
+   * @param tail       text written after the last project
+   * @return number of projects written
+   * @throws SQLException if there are errors accessing the database
+   * @throws IOException  if the report cannot be written
+   */
+  private long write(Connection connection, Writer out, String head, RowFormat format,
+      String tail) throws SQLException, IOException {
+    long rows = 0;
+    //a page of projects is built in one reused builder and copied out through one reused array
+    StringBuilder text = new StringBuilder(512 * pageSize);
+    char[] chars = new char[text.capacity()];
+    text.append(head);
+    try (PreparedStatement statement = connection.prepareStatement(getQuery(),
+        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+      statement.setFetchSize(fetchSize);
+      if (date != null) {
+        statement.setDate(1, date);
+      }
+      try (ResultSet resultSet = statement.executeQuery()) {
+        //one row view for every row
+        ProjectRow project = new ProjectRow(resultSet);
+        while (project.next()) {
+          format.append(text, project, rows);
+          rows++;
+          if (rows % pageSize == 0) {
+            chars = writePage(out, text, chars);
+          }
+        }
+      }
+    }
+    writePage(out, text.append(tail), chars);
+    return rows;
+  }
+
+  /**
+   * Writes a page of text, empties the builder and flushes the writer. The text is copied into
+   * an array that is kept for the next page, rather than into a new String each time.
+   *
+   * @param out   writer to write the page to
+   * @param text  the page
+   * @param chars array to copy the page through
+   * @return the array to copy the next page through, larger if this page did not fit
+   * @throws IOException if the page cannot be written
+   */
+  private static char[] writePage(Writer out, StringBuilder text, char[] chars)
+      throws IOException {
+    if (chars.length < text.length()) {
+      chars = new char[text.capacity()];
+    }
+    text.getChars(0, text.length(), chars, 0);
+    out.write(chars, 0, text.length());
+    text.setLength(0);
+    out.flush();
+    return chars;
+  }
+
+  /**
+   * Appends the project in the current row as a tab-separated line.
+   *
+   * @param text    builder to append to
+   * @param project row view positioned on a project
+   * @throws SQLException if there are errors accessing the database
+   */
+  static void appendRow(StringBuilder text, ProjectRow project) throws SQLException {
+    Date completionDate = project.getCompletionDate();
+    text.append(project.getNum())
+        .append('\t').append(clean(project.getName()))
+        .append('\t').append(clean(project.getBuildingType()))
+        .append('\t').append(clean(project.getAddress()))
+        .append('\t').append(clean(project.getErfNum()))
+        .append('\t');
+    Money.append(text, project.getTotalFeeCents()).append('\t');
+    Money.append(text, project.getAmountPaidCents()).append('\t');
+    ProjectRenderer.appendDate(text, project.getDeadline()).append('\t');
+    if (completionDate != null) {
+      ProjectRenderer.appendDate(text, completionDate);
+    }
+    text.append('\n');
+  }
+
+  /**
+   * Appends the project in the current row as a JSON object.
+   *
+   * @param json    builder to append to
+   * @param project row view positioned on a project
+   * @throws SQLException if there are errors accessing the database
+   */
+  static void appendJson(StringBuilder json, ProjectRow project) throws SQLException {
+    Date completionDate = project.getCompletionDate();
+    json.append('{');
+    Json.appendField(json, "num", project.getNum());
+    Json.appendField(json, "name", project.getName());
+    Json.appendField(json, "buildingType", project.getBuildingType());
+    Json.appendField(json, "address", project.getAddress());
+    Json.appendField(json, "erfNum", project.getErfNum());
+    Json.appendField(json, "totalFee", Money.toDecimal(project.getTotalFeeCents()));
+    Json.appendField(json, "amountPaid", Money.toDecimal(project.getAmountPaidCents()));
+    Json.appendField(json, "deadline", project.getDeadline());
+    Json.appendField(json, "completionDate", completionDate);
+    Json.appendField(json, "finalised", completionDate != null);
+    Json.appendField(json, "version", project.getVersion());
+    json.append('}');
+  }
+
+  /**
+   * Replaces tabs and line breaks in a value so it stays in its column.
+   *
+   * @param value the value
+   * @return the value on one line, or an empty string if it is null
+   */
+  static String clean(String value) {
+    return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+  }
+}
@@ -0,0 +1,158 @@
+//importing libraries
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * ProjectRow reads the project in the current row of a ResultSet without creating a Project
+ * object. One row view is made for each ResultSet and is used for every row as the ResultSet is
+ * moved on, so a report or export of any size only looks up its columns once.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class ProjectRow {
+
+  private final ResultSet resultSet;
+  private final int num;
+  private final int name;
+  private final int buildingType;
+  private final int address;
+  private final int erfNum;
+  private final int totalFee;
+  private final int amountPaid;
+  private final int deadline;
+  private final int completionDate;
+  private final int version;
+
+  /**
+   * Constructor to initialise a row view over a ResultSet of projects.
+   *
+   * @param resultSet ResultSet with the columns of the projects table
+   * @throws SQLException if the ResultSet does not have the columns of the projects table
+   */
+  public ProjectRow(ResultSet resultSet) throws SQLException {
+    this.resultSet = resultSet;
+    this.num = resultSet.findColumn("proj_num");
+    this.name = resultSet.findColumn("proj_name");
+    this.buildingType = resultSet.findColumn("building_type");
+    this.address = resultSet.findColumn("address");
+    this.erfNum = resultSet.findColumn("erf_num");
+    this.totalFee = resultSet.findColumn("total_fee");
+    this.amountPaid = resultSet.findColumn("amount_paid");
+    this.deadline = resultSet.findColumn("deadline");
+    this.completionDate = resultSet.findColumn("completion_date");
+    this.version = resultSet.findColumn("version");
+  }
+
+  /**
+   * Moves to the next row.
+   *
+   * @return true if there is another project, else false
+   * @throws SQLException if there are errors accessing the database
+   */
+  public boolean next() throws SQLException {
+    return resultSet.next();
+  }
+
+  /**
+   * Returns the project number.
+   *
+   * @return project number
+   * @throws SQLException if there are errors accessing the database
+   */
+  public int getNum() throws SQLException {
+    return resultSet.getInt(num);
+  }
+
+  /**
+   * Returns the project name.
+   *
+   * @return project name
+   * @throws SQLException if there are errors accessing the database
+   */
+  public String getName() throws SQLException {
+    return resultSet.getString(name);
+  }
+
+  /**
+   * Returns the building type.
+   *
+   * @return building type
+   * @throws SQLException if there are errors accessing the database
+   */
+  public String getBuildingType() throws SQLException {
+    return resultSet.getString(buildingType);
+  }
+
+  /**
+   * Returns the physical address.
+   *
+   * @return physical address
+   * @throws SQLException if there are errors accessing the database
+   */
+  public String getAddress() throws SQLException {
+    return resultSet.getString(address);
+  }
+
+  /**
+   * Returns the ERF number.
+   *
+   * @return ERF number
+   * @throws SQLException if there are errors accessing the database
+   */
+  public String getErfNum() throws SQLException {
+    return resultSet.getString(erfNum);
+  }
+
+  /**
+   * Returns the total fee.
+   *
+   * @return total fee, in cents
+   * @throws SQLException if there are errors accessing the database
+   */
+  public long getTotalFeeCents() throws SQLException {
+    return Money.read(resultSet, totalFee);
+  }
+
+  /**
+   * Returns the amount paid.
+   *
+   * @return amount paid, in cents
+   * @throws SQLException if there are errors accessing the database
+   */
+  public long getAmountPaidCents() throws SQLException {
+    return Money.read(resultSet, amountPaid);
+  }
+
+  /**
+   * Returns the deadline.
+   *
+   * @return deadline
+   * @throws SQLException if there are errors accessing the database
+   */
+  public Date getDeadline() throws SQLException {
+    return resultSet.getDate(deadline);
+  }
+
+  /**
+   * Returns the completion date.
+   *
+   * @return completion date, or null if the project is open
+   * @throws SQLException if there are errors accessing the database
+   */
+  public Date getCompletionDate() throws SQLException {
+    return resultSet.getDate(completionDate);
+  }
+
+  /**
+   * Returns the version of the project, increased each time it is saved.
+   *
+   * @return version
+   * @throws SQLException if there are errors accessing the database
+   */
+  public int getVersion() throws SQLException {
+    return resultSet.getInt(version);
+  }
+}
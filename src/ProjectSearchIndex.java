@@ -0,0 +1,653 @@
+//importing libraries
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ProjectSearchIndex finds projects by name, address or ERF number without going to the
+ * database. Words of each field are kept in a prefix trie so partly typed words match, and
+ * project names are split into three letter pieces (trigrams) so misspelt names can still be
+ * found and ranked by how many letters need to change. The projects under each word and trigram
+ * are kept as sorted arrays of project numbers.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class ProjectSearchIndex {
+
+  //names with up to this many letters added, removed, changed or swapped are always found by a
+  //misspelt search. A swap changes at most four of the trigrams of a name, and a letter added
+  //or removed, which changes the length of the name, at most three
+  private static final int FUZZY_EDITS = 1;
+  private static final int TRIGRAMS_PER_EDIT = 4;
+  private static final int TRIGRAMS_PER_LENGTH_EDIT = 3;
+  //number of names compared letter by letter for a misspelt search, most shared trigrams first
+  private static final int FUZZY_CANDIDATES = 1000;
+
+  private final Map<Integer, IndexedProject> projects = new HashMap<>();
+  private final Map<String, Postings> exactNames = new HashMap<>();
+  private final TrieNode root = new TrieNode();
+  private final Map<String, Postings> trigrams = new HashMap<>();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Creates an index of all projects in the database, including archived projects.
+   *
+   * @param connection database connection
+   * @return the index
+   * @throws SQLException if there are errors accessing the database
+   */
+  public static ProjectSearchIndex load(Connection connection) throws SQLException {
+    ProjectSearchIndex index = new ProjectSearchIndex();
+    try (PreparedStatement statement = connection.prepareStatement(
+        ProjectArchiver.withArchive("SELECT proj_num, proj_name, address, erf_num FROM projects"),
+        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+      statement.setFetchSize(1000);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          index.put(resultSet.getInt(1), resultSet.getString(2), resultSet.getString(3),
+              resultSet.getString(4));
+        }
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Adds a project to the index, replacing the entry from before it was updated.
+   *
+   * @param project the project
+   */
+  public void put(Project project) {
+    put(project.getNum(), project.getName(), project.getAddress(), project.getErfNum());
+  }
+
+  /**
+   * Adds a project to the index, replacing any earlier entry for the same project number.
+   *
+   * @param projNum project number
+   * @param name    project name
+   * @param address physical address
+   * @param erfNum  ERF number
+   */
+  public void put(int projNum, String name, String address, String erfNum) {
+    IndexedProject indexed = new IndexedProject(projNum, name, address, erfNum);
+    lock.writeLock().lock();
+    try {
+      removeProject(projNum);
+      projects.put(projNum, indexed);
+      exactNames.computeIfAbsent(indexed.name, ignored -> new Postings()).add(projNum);
+      for (String word : indexed.words) {
+        root.add(word, 0, projNum);
+      }
+      for (String trigram : trigramsOf(indexed.name, indexed.name.length())) {
+        trigrams.computeIfAbsent(trigram, ignored -> new Postings()).add(projNum);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Changes some of the indexed details of a project that is already in the index.
+   *
+   * @param projNum project number
+   * @param name    new project name, or null to keep the old one
+   * @param address new physical address, or null to keep the old one
+   * @param erfNum  new ERF number, or null to keep the old one
+   */
+  public void update(int projNum, String name, String address, String erfNum) {
+    lock.writeLock().lock();
+    try {
+      IndexedProject old = projects.get(projNum);
+      if (old != null) {
+        put(projNum, name != null ? name : old.displayName,
+            address != null ? address : old.address, erfNum != null ? erfNum : old.erfNum);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Checks if a project has a name, ignoring case and extra spaces.
+   *
+   * @param name project name
+   * @return true if a project has the name, else false
+   */
+  public boolean containsName(String name) {
+    String normalised = ProjectCache.normalise(name);
+    lock.readLock().lock();
+    try {
+      return exactNames.containsKey(normalised);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Removes a project from the index.
+   *
+   * @param projNum project number
+   */
+  public void remove(int projNum) {
+    lock.writeLock().lock();
+    try {
+      removeProject(projNum);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes a project's words and trigrams. The caller holds the write lock.
+   *
+   * @param projNum project number
+   */
+  private void removeProject(int projNum) {
+    IndexedProject old = projects.remove(projNum);
+    if (old == null) {
+      return;
+    }
+    Postings sameName = exactNames.get(old.name);
+    if (sameName != null && sameName.remove(projNum) && sameName.size == 0) {
+      exactNames.remove(old.name);
+    }
+    for (String word : old.words) {
+      root.remove(word, 0, projNum);
+    }
+    for (String trigram : trigramsOf(old.name, old.name.length())) {
+      Postings postings = trigrams.get(trigram);
+      if (postings != null && postings.remove(projNum) && postings.size == 0) {
+        trigrams.remove(trigram);
+      }
+    }
+  }
+
+  /**
+   * Returns the projects that best match a search, best match first. Exact and prefix matches on
+   * any word of the name, address or ERF number come before misspelt name matches.
+   *
+   * @param query text to search for
+   * @param limit maximum number of matches
+   * @return ranked matches
+   */
+  public List<Match> search(String query, int limit) {
+    String text = ProjectCache.normalise(query);
+    if (text.isEmpty() || limit < 1) {
+      return Collections.emptyList();
+    }
+    Map<Integer, Integer> scores = new HashMap<>();
+    lock.readLock().lock();
+    try {
+      //whole name matches first
+      Postings sameName = exactNames.get(text);
+      for (int i = 0; sameName != null && i < sameName.size; i++) {
+        scores.put(sameName.ids[i], 0);
+      }
+      if (scores.size() < limit) {
+        addPrefixMatches(text.split(" "), scores, limit);
+      }
+      if (scores.size() < limit) {
+        addFuzzyMatches(text, scores, limit);
+      }
+      List<Match> matches = new ArrayList<>(scores.size());
+      for (Map.Entry<Integer, Integer> entry : scores.entrySet()) {
+        IndexedProject indexed = projects.get(entry.getKey());
+        matches.add(new Match(indexed.projNum, indexed.displayName, indexed.address,
+            indexed.erfNum, entry.getValue()));
+      }
+      matches.sort((first, second) -> first.score != second.score
+          ? Integer.compare(first.score, second.score)
+          : Integer.compare(first.projNum, second.projNum));
+      return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds projects where every word of the search starts a word of the project. Projects are read
+   * from under the search word with the fewest projects. The caller holds the read lock.
+   *
+   * @param words  normalised words of the search
+   * @param scores scores of the matches found so far
+   * @param limit  number of matches wanted
+   */
+  private void addPrefixMatches(String[] words, Map<Integer, Integer> scores, int limit) {
+    TrieNode narrowest = null;
+    for (String word : words) {
+      TrieNode node = root.find(word, 0);
+      if (node == null) {
+        return;
+      }
+      if (narrowest == null || node.count < narrowest.count) {
+        narrowest = node;
+      }
+    }
+    List<TrieNode> pending = new ArrayList<>();
+    pending.add(narrowest);
+    while (!pending.isEmpty() && scores.size() < limit) {
+      TrieNode node = pending.remove(pending.size() - 1);
+      if (node.projNums != null) {
+        for (int i = 0; i < node.projNums.size; i++) {
+          int projNum = node.projNums.ids[i];
+          if (!scores.containsKey(projNum) && projects.get(projNum).startsAllWords(words)) {
+            scores.put(projNum, 1);
+            if (scores.size() >= limit) {
+              return;
+            }
+          }
+        }
+      }
+      pending.addAll(node.children.values());
+    }
+  }
+
+  /**
+   * Adds names that are a few letters away from the search, scored by their edit distance. A
+   * name within {@link #FUZZY_EDITS} edits is at most as many letters longer or shorter, and
+   * shares all but a few of the search's trigrams, so it is in at least one of the shortest
+   * posting lists of those trigrams for its length: only those lists are read, and the names
+   * found in them are looked up in the longer lists. Names are then compared letter by letter,
+   * most shared trigrams first, only as far as the matches kept can still change. The caller
+   * holds the read lock.
+   *
+   * @param text   normalised search text
+   * @param scores scores of the matches found so far
+   * @param limit  number of matches wanted
+   */
+  private void addFuzzyMatches(String text, Map<Integer, Integer> scores, int limit) {
+    long[] candidates = new long[16];
+    int candidateCount = 0;
+    for (int length = Math.max(1, text.length() - FUZZY_EDITS);
+        length <= text.length() + FUZZY_EDITS; length++) {
+      List<Postings> lists = new ArrayList<>();
+      for (String trigram : trigramsOf(text, length)) {
+        //a trigram no project has still counts, as a list no name is in
+        lists.add(trigrams.getOrDefault(trigram, Postings.EMPTY));
+      }
+      lists.sort((first, second) -> Integer.compare(first.size, second.size));
+      int lengthEdits = Math.abs(length - text.length());
+      int needed = Math.max(1, lists.size() - (FUZZY_EDITS - lengthEdits) * TRIGRAMS_PER_EDIT
+          - lengthEdits * TRIGRAMS_PER_LENGTH_EDIT);
+      int scanned = lists.size() - needed + 1;
+
+      //merging the shortest lists, counting the lists each name is in. Names come in order, so
+      //each list is read from where the last name was found
+      int[] positions = new int[lists.size()];
+      while (true) {
+        int projNum = Integer.MAX_VALUE;
+        for (int i = 0; i < scanned; i++) {
+          Postings postings = lists.get(i);
+          if (positions[i] < postings.size) {
+            projNum = Math.min(projNum, postings.ids[positions[i]]);
+          }
+        }
+        if (projNum == Integer.MAX_VALUE) {
+          break;
+        }
+        int shared = 0;
+        for (int i = 0; i < scanned; i++) {
+          Postings postings = lists.get(i);
+          if (positions[i] < postings.size && postings.ids[positions[i]] == projNum) {
+            positions[i]++;
+            shared++;
+          }
+        }
+        //the longer lists, stopping once the name cannot reach the trigrams needed
+        for (int i = scanned; i < lists.size() && shared + lists.size() - i >= needed; i++) {
+          Postings postings = lists.get(i);
+          positions[i] = postings.seek(positions[i], projNum);
+          if (positions[i] < postings.size && postings.ids[positions[i]] == projNum) {
+            shared++;
+          }
+        }
+        if (shared >= needed) {
+          if (candidateCount == candidates.length) {
+            candidates = Arrays.copyOf(candidates, candidateCount * 2);
+          }
+          //most shared trigrams first, then by project number
+          candidates[candidateCount++] = (long) (Integer.MAX_VALUE - shared) << 32 | projNum;
+        }
+      }
+    }
+    Arrays.sort(candidates, 0, candidateCount);
+    int maxDistance = Math.max(FUZZY_EDITS, text.length() / 3);
+    int earlier = scores.size();
+    int[] foundAt = new int[maxDistance + 1];
+    for (int i = 0; i < candidateCount && i < FUZZY_CANDIDATES; i++) {
+      int projNum = (int) candidates[i];
+      if (scores.containsKey(projNum)) {
+        continue;
+      }
+      int distance = editDistance(text, projects.get(projNum).name, maxDistance);
+      if (distance <= maxDistance) {
+        scores.put(projNum, 2 + distance);
+        foundAt[distance]++;
+        //once enough matches are closer, names as far away as the largest distance are not kept
+        int closer = earlier;
+        for (int d = 0; d < maxDistance; d++) {
+          closer += foundAt[d];
+        }
+        while (maxDistance > 0 && closer >= limit) {
+          maxDistance--;
+          closer -= foundAt[maxDistance];
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of projects in the index.
+   *
+   * @return number of projects
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return projects.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the trigrams of a text, padded so the first and last letters get their own trigrams.
+   * Each trigram starts with a name length, so names of one length are kept apart from others.
+   *
+   * @param text   normalised text
+   * @param length name length the trigrams are for
+   * @return set of trigrams
+   */
+  private static Set<String> trigramsOf(String text, int length) {
+    String padded = "  " + text + " ";
+    char lengthKey = (char) Math.min(length, Character.MAX_VALUE);
+    Set<String> result = new HashSet<>();
+    for (int i = 0; i + 3 <= padded.length(); i++) {
+      result.add(lengthKey + padded.substring(i, i + 3));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of letters that must be added, removed, changed or swapped with the next
+   * letter to turn one text into another, stopping early once it is more than a maximum.
+   *
+   * @param first       first text
+   * @param second      second text
+   * @param maxDistance largest distance of interest
+   * @return the edit distance, or maxDistance + 1 if it is larger than maxDistance
+   */
+  static int editDistance(String first, String second, int maxDistance) {
+    if (Math.abs(first.length() - second.length()) > maxDistance) {
+      return maxDistance + 1;
+    }
+    //only letters at most maxDistance apart are compared, the rest are left as too far
+    int tooFar = maxDistance + 1;
+    int[] beforePrevious = new int[second.length() + 1];
+    int[] previous = new int[second.length() + 1];
+    int[] current = new int[second.length() + 1];
+    for (int j = 0; j <= second.length(); j++) {
+      previous[j] = j;
+    }
+    int previousMin = 0;
+    for (int i = 1; i <= first.length(); i++) {
+      int from = Math.max(1, i - maxDistance);
+      int to = Math.min(second.length(), i + maxDistance);
+      current[from - 1] = from > 1 ? tooFar : i;
+      int rowMin = current[from - 1];
+      for (int j = from; j <= to; j++) {
+        int cost = first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1;
+        current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1),
+            previous[j - 1] + cost);
+        if (i > 1 && j > 1 && first.charAt(i - 1) == second.charAt(j - 2)
+            && first.charAt(i - 2) == second.charAt(j - 1)) {
+          current[j] = Math.min(current[j], beforePrevious[j - 2] + 1);
+        }
+        rowMin = Math.min(rowMin, current[j]);
+      }
+      if (to < second.length()) {
+        current[to + 1] = tooFar;
+      }
+      //later rows are built from this row, or from the previous one by a swap
+      if (Math.min(rowMin, previousMin + 1) > maxDistance) {
+        return tooFar;
+      }
+      previousMin = rowMin;
+      int[] swap = beforePrevious;
+      beforePrevious = previous;
+      previous = current;
+      current = swap;
+    }
+    return Math.min(previous[second.length()], tooFar);
+  }
+
+  /**
+   * A project found by a search.
+   */
+  public static final class Match {
+
+    private final int projNum;
+    private final String name;
+    private final String address;
+    private final String erfNum;
+    private final int score;
+
+    private Match(int projNum, String name, String address, String erfNum, int score) {
+      this.projNum = projNum;
+      this.name = name;
+      this.address = address;
+      this.erfNum = erfNum;
+      this.score = score;
+    }
+
+    /**
+     * Returns the project number.
+     *
+     * @return project number
+     */
+    public int getProjNum() {
+      return projNum;
+    }
+
+    /**
+     * Returns how well the project matched, lower is better.
+     *
+     * @return the score
+     */
+    public int getScore() {
+      return score;
+    }
+
+    @Override
+    public String toString() {
+      return projNum + " - " + name + " | " + address + " | ERF " + erfNum;
+    }
+  }
+
+  /**
+   * The fields of a project that are searched.
+   */
+  private static final class IndexedProject {
+
+    private final int projNum;
+    private final String displayName;
+    private final String name;
+    private final String address;
+    private final String erfNum;
+    private final String[] words;
+
+    private IndexedProject(int projNum, String name, String address, String erfNum) {
+      this.projNum = projNum;
+      this.displayName = name == null ? "" : name;
+      this.name = ProjectCache.normalise(this.displayName);
+      this.address = address == null ? "" : address;
+      this.erfNum = erfNum == null ? "" : erfNum;
+      //normalised words of the name, address and ERF number
+      Set<String> fieldWords = new HashSet<>();
+      for (String field : new String[]{this.name, ProjectCache.normalise(this.address),
+          ProjectCache.normalise(this.erfNum)}) {
+        for (String word : field.split(" ")) {
+          if (!word.isEmpty()) {
+            fieldWords.add(word);
+          }
+        }
+      }
+      this.words = fieldWords.toArray(new String[0]);
+    }
+
+    /**
+     * Checks if every search word starts one of this project's words.
+     *
+     * @param prefixes normalised search words
+     * @return true if all search words match, else false
+     */
+    private boolean startsAllWords(String[] prefixes) {
+      for (String prefix : prefixes) {
+        boolean matched = false;
+        for (String word : words) {
+          if (word.startsWith(prefix)) {
+            matched = true;
+            break;
+          }
+        }
+        if (!matched) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * A node of the prefix trie. Each node holds the projects with a word ending at it and counts
+   * the words stored under it.
+   */
+  private static final class TrieNode {
+
+    private final Map<Character, TrieNode> children = new HashMap<>(4);
+    private Postings projNums = null;
+    private int count = 0;
+
+    private boolean add(String word, int position, int projNum) {
+      boolean added;
+      if (position == word.length()) {
+        if (projNums == null) {
+          projNums = new Postings();
+        }
+        added = projNums.add(projNum);
+      } else {
+        added = children.computeIfAbsent(word.charAt(position), ignored -> new TrieNode())
+            .add(word, position + 1, projNum);
+      }
+      if (added) {
+        count++;
+      }
+      return added;
+    }
+
+    private boolean remove(String word, int position, int projNum) {
+      boolean removed = false;
+      if (position == word.length()) {
+        if (projNums != null) {
+          removed = projNums.remove(projNum);
+          if (projNums.size == 0) {
+            projNums = null;
+          }
+        }
+      } else {
+        TrieNode child = children.get(word.charAt(position));
+        if (child != null) {
+          removed = child.remove(word, position + 1, projNum);
+          if (child.count == 0) {
+            children.remove(word.charAt(position));
+          }
+        }
+      }
+      if (removed) {
+        count--;
+      }
+      return removed;
+    }
+
+    private TrieNode find(String prefix, int position) {
+      if (position == prefix.length()) {
+        return this;
+      }
+      TrieNode child = children.get(prefix.charAt(position));
+      return child == null ? null : child.find(prefix, position + 1);
+    }
+  }
+
+  /**
+   * A sorted array of project numbers, without the boxing of a set of Integers.
+   */
+  private static final class Postings {
+
+    //shared by trigrams no project has, never added to
+    private static final Postings EMPTY = new Postings();
+
+    private int[] ids = new int[2];
+    private int size = 0;
+
+    private boolean add(int projNum) {
+      int position = Arrays.binarySearch(ids, 0, size, projNum);
+      if (position >= 0) {
+        return false;
+      }
+      position = -position - 1;
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+      }
+      //projects are mostly added in order, so this rarely moves anything
+      System.arraycopy(ids, position, ids, position + 1, size - position);
+      ids[position] = projNum;
+      size++;
+      return true;
+    }
+
+    private boolean remove(int projNum) {
+      int position = Arrays.binarySearch(ids, 0, size, projNum);
+      if (position < 0) {
+        return false;
+      }
+      System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+      size--;
+      return true;
+    }
+
+    /**
+     * Returns the first position from a starting position with a project number that is not
+     * less than the one sought, looking at positions one, two, four and so on ahead first.
+     *
+     * @param from    position to start from
+     * @param projNum project number sought
+     * @return the position, or size if every later number is less
+     */
+    private int seek(int from, int projNum) {
+      if (from >= size || ids[from] >= projNum) {
+        return from;
+      }
+      int step = 1;
+      while (from + step < size && ids[from + step] < projNum) {
+        step <<= 1;
+      }
+      int position = Arrays.binarySearch(ids, from + (step >> 1) + 1,
+          Math.min(from + step + 1, size), projNum);
+      return position >= 0 ? position : -position - 1;
+    }
+  }
+}
@@ -0,0 +1,968 @@
+//importing libraries
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ProjectServer is an HTTP server with a JSON API for the project operations of the menu, so more
+ * than one person can use the system at a time:
+ * <pre>
+ * GET   /projects?status=open|past_due            list the open or past due projects
+ * GET   /projects?name=name                       get a project by name
+ * GET   /projects/{num}                           get a project by number
+ * POST  /projects                                 create a project
+ * PATCH /projects/{num}                           update fields of a project
+ * PATCH /projects/{num}/stakeholders/{role}       update a stakeholder of a project
+ * POST  /projects/{num}/finalise                  finalise a project, with its invoice
+ * GET   /projects/analytics                       get the fee totals, past due and finalised
+ * </pre>
+ * A new project is created from its name, buildingType, address, erfNum, totalFee, amountPaid and
+ * deadline, and the structuralEngineerId, projectManagerId, architectId and customerId of its
+ * stakeholders. A project update takes any of the project fields and completionDate, and a
+ * stakeholder update any of name, phoneNum, email and address. The roles in a path are
+ * structural-engineer, project-manager, architect and customer. Dates are written as yyyy-mm-dd.
+ * Updates can also be sent with POST. Projects and stakeholders are sent with their version, and
+ * an update with a version is refused with 409 if the row has changed since; without one it is
+ * run again on the newest row.
+ *
+ * <p>Each request runs on its own virtual thread when the JVM has them, or else on a thread from
+ * a pool, and borrows its own connection from the connection pool for a single transaction.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class ProjectServer {
+
+  private static final int MAX_BODY_BYTES = 65536;
+  //times a change is run when the rows it changes keep being changed by someone else
+  private static final int MAX_ATTEMPTS = 3;
+
+  //roles by the name used in a path
+  private static final Map<String, String> ROLES = new HashMap<>();
+  //project fields that can be updated
+  private static final List<String> FIELDS = Arrays.asList("name", "buildingType", "address",
+      "erfNum", "totalFee", "amountPaid", "deadline", "completionDate");
+
+  static {
+    ROLES.put("structural-engineer", "Structural Engineer");
+    ROLES.put("project-manager", "Project Manager");
+    ROLES.put("architect", "Architect");
+    ROLES.put("customer", "Customer");
+  }
+
+  private final ConnectionPool pool;
+  private final IdAllocator idAllocator;
+  private final ProjectCache projectCache;
+  private final ProjectSearchIndex searchIndex;
+  private final PortfolioAnalytics analytics;
+  private final DeadlineScheduler deadlines;
+  private final CompletedProjectsExporter exporter;
+  private final CountDownLatch stopped = new CountDownLatch(1);
+  private HttpServer server = null;
+  private ExecutorService executor = null;
+
+  /**
+   * Constructor to initialise a server.
+   *
+   * @param pool         pool of database connections
+   * @param idAllocator  allocator for new project numbers
+   * @param projectCache cache of projects, kept up to date with the changes made
+   * @param searchIndex  index of project names, kept up to date with the changes made
+   * @param analytics    totals of the projects, kept up to date with the changes made
+   * @param deadlines    deadline alerts of the open projects, kept up to date with the changes
+   *                     made
+   * @param exporter     exporter the finalised projects are added to the Completed Projects
+   *                     file with
+   */
+  public ProjectServer(ConnectionPool pool, IdAllocator idAllocator, ProjectCache projectCache,
+      ProjectSearchIndex searchIndex, PortfolioAnalytics analytics,
+      DeadlineScheduler deadlines, CompletedProjectsExporter exporter) {
+    this.pool = pool;
+    this.idAllocator = idAllocator;
+    this.projectCache = projectCache;
+    this.searchIndex = searchIndex;
+    this.analytics = analytics;
+    this.deadlines = deadlines;
+    this.exporter = exporter;
+  }
+
+  /**
+   * Starts the server.
+   *
+   * @param port port to listen on, 0 for any free port
+   * @return the port the server is listening on
+   * @throws IOException if the server cannot be started
+   */
+  public int start(int port) throws IOException {
+    server = HttpServer.create(new InetSocketAddress(port), 0);
+    executor = newRequestExecutor();
+    server.setExecutor(executor);
+    server.createContext("/projects", this::handle);
+    server.start();
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Stops the server, letting requests that have started finish for up to a second.
+   */
+  public void stop() {
+    if (server != null) {
+      server.stop(1);
+      executor.shutdown();
+    }
+    stopped.countDown();
+  }
+
+  /**
+   * Waits until the server is stopped.
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public void awaitStop() throws InterruptedException {
+    stopped.await();
+  }
+
+  /**
+   * Creates an executor that runs each request on a new virtual thread, or on a pool of threads
+   * if the JVM does not have virtual threads.
+   *
+   * @return the executor
+   */
+  static ExecutorService newRequestExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException error) {
+      //threads are only created when requests are waiting, the connection pool limits the rest
+      return Executors.newCachedThreadPool();
+    }
+  }
+
+  /**
+   * Handles a request, borrowing a connection for it and returning the connection afterwards.
+   *
+   * @param exchange the request and response
+   * @throws IOException if the response cannot be sent
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    String method = exchange.getRequestMethod();
+    String[] path = exchange.getRequestURI().getPath().replaceAll("/+$", "").split("/");
+    String operation = "http " + method + " " + route(path);
+    Metrics.beginOperation();
+    try (Connection connection = pool.getConnection()) {
+      try {
+        dispatch(exchange, connection, method, path);
+      } catch (IllegalArgumentException error) {
+        connection.rollback();
+        sendError(exchange, 400, error.getMessage());
+      } catch (SQLIntegrityConstraintViolationException error) {
+        connection.rollback();
+        sendError(exchange, 409, error.getMessage());
+      } catch (SQLException error) {
+        connection.rollback();
+        sendError(exchange, 500, error.getMessage());
+      } catch (RuntimeException error) {
+        connection.rollback();
+        error.printStackTrace();
+        sendError(exchange, 500, "Internal error.");
+      }
+    } catch (SQLException error) {
+      //no connection could be borrowed in time
+      sendError(exchange, 503, error.getMessage());
+    } finally {
+      Metrics.endOperation(operation);
+      exchange.close();
+    }
+  }
+
+  /**
+   * Returns the route of a path, with the project number and role replaced by placeholders, so
+   * the time for each route is recorded together.
+   *
+   * @param path parts of the request path
+   * @return the route
+   */
+  private static String route(String[] path) {
+    //only known parts of the path are used, so a client cannot create any number of timers
+    StringBuilder route = new StringBuilder("/projects");
+    if (path.length == 3 && path[2].equals("analytics")) {
+      route.append("/analytics");
+    } else if (path.length > 2) {
+      route.append("/{num}");
+    }
+    if (path.length > 3) {
+      route.append(path[3].equals("finalise") || path[3].equals("stakeholders")
+          ? "/" + path[3] : "/?");
+    }
+    if (path.length > 4) {
+      route.append(path.length == 5 ? "/{role}" : "/...");
+    }
+    return route.toString();
+  }
+
+  /**
+   * Calls the operation for a request.
+   *
+   * @param exchange   the request and response
+   * @param connection connection borrowed for the request
+   * @param method     HTTP method
+   * @param path       parts of the request path
+   * @throws IOException  if the response cannot be sent
+   * @throws SQLException if there are errors accessing the database
+   */
+  private void dispatch(HttpExchange exchange, Connection connection, String method,
+      String[] path) throws IOException, SQLException {
+    //path[0] is empty and path[1] is "projects"
+    if (path.length == 2) {
+      if (method.equals("GET")) {
+        getProjects(exchange, connection);
+      } else if (method.equals("POST")) {
+        createProject(exchange, connection, readBody(exchange));
+      } else {
+        send(exchange, 405, errorJson("Method not allowed."));
+      }
+      return;
+    }
+    if (path.length < 3 || !path[1].equals("projects")) {
+      send(exchange, 404, errorJson("Not found."));
+      return;
+    }
+    if (path.length == 3 && path[2].equals("analytics") && method.equals("GET")) {
+      sendAnalytics(exchange);
+      return;
+    }
+    int projNum;
+    try {
+      projNum = Integer.parseInt(path[2]);
+    } catch (NumberFormatException error) {
+      send(exchange, 404, errorJson("Not found."));
+      return;
+    }
+    if (path.length == 3 && method.equals("GET")) {
+      Project project = projectCache.getByNum(connection, projNum);
+      sendProject(exchange, project, 200);
+    } else if (path.length == 3 && isUpdate(method)) {
+      updateProject(exchange, connection, projNum, readBody(exchange));
+    } else if (path.length == 4 && path[3].equals("finalise") && method.equals("POST")) {
+      finalise(exchange, connection, projNum);
+    } else if (path.length == 5 && path[3].equals("stakeholders") && isUpdate(method)) {
+      String role = ROLES.get(path[4]);
+      if (role == null) {
+        send(exchange, 404, errorJson("Unknown role: " + path[4]));
+        return;
+      }
+      updateStakeholder(exchange, connection, projNum, role, readBody(exchange));
+    } else {
+      send(exchange, 404, errorJson("Not found."));
+    }
+  }
+
+  /**
+   * Checks if a method can be used to update. POST is accepted as well as PATCH because some
+   * clients, such as HttpURLConnection, cannot send PATCH.
+   *
+   * @param method HTTP method
+   * @return true if the method updates, else false
+   */
+  private static boolean isUpdate(String method) {
+    return method.equals("PATCH") || method.equals("POST");
+  }
+
+  /**
+   * Sends a project by name, or a list of projects.
+   *
+   * @param exchange   the request and response
+   * @param connection connection borrowed for the request
+   * @throws IOException  if the response cannot be sent
+   * @throws SQLException if there are errors accessing the database
+   */
+  private void getProjects(HttpExchange exchange, Connection connection)
+      throws IOException, SQLException {
+    Map<String, String> query = readQuery(exchange);
+    if (query.containsKey("name")) {
+      sendProject(exchange, projectCache.getByName(connection, query.get("name")), 200);
+      return;
+    }
+    String status = query.get("status");
+    ProjectReport report;
+    if ("open".equals(status)) {
+      report = ProjectReport.projectsToComplete();
+    } else if ("past_due".equals(status)) {
+      report = ProjectReport.pastDueProjects(Date.valueOf(LocalDate.now()));
+    } else {
+      throw new IllegalArgumentException("Expected name or status=open|past_due.");
+    }
+    //the list is streamed, so its length is not known. It is not closed if the report fails, so
+    //the error is sent instead if it happens on the first page
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    Writer out = new StreamedResponse(exchange);
+    report.setPageSize(500).writeJson(connection, out);
+    out.close();
+  }
+
+  /**
+   * Creates a project with existing stakeholders.
+   *
+   * @param exchange   the request and response
+   * @param connection connection borrowed for the request
+   * @param body       fields of the request
+   * @throws IOException  if the response cannot be sent
+   * @throws SQLException if there are errors accessing the database
+   */
+  private void createProject(HttpExchange exchange, Connection connection,
+      Map<String, Object> body) throws IOException, SQLException {
+    String name = getString(body, "name");
+    if (name.trim().isEmpty()) {
+      throw new IllegalArgumentException("name is empty.");
+    }
+    if (projectCache.nameExists(connection, name)) {
+      send(exchange, 409, errorJson("Project name already exists."));
+      return;
+    }
+    Project project = Project.createNewProject(name, getString(body, "buildingType"),
+        getString(body, "address"), getString(body, "erfNum"), getAmount(body, "totalFee"),
+        getAmount(body, "amountPaid"), getDate(body, "deadline"));
+    String[] idFields = {"structuralEngineerId", "projectManagerId", "architectId", "customerId"};
+    String[] roles = {"Structural Engineer", "Project Manager", "Architect", "Customer"};
+    for (int i = 0; i < roles.length; i++) {
+      Person person = new Person(roles[i], "", "", "", "");
+      person.setId(getInt(body, idFields[i]));
+      project.addStakeholder(person);
+    }
+    project.setNumForNewProject(idAllocator);
+    project.addProjectToDb(connection);
+    //reading the project back with its stakeholders, which also checks that they exist
+    Project created = Project.getProjectByNum(connection, project.getNum());
+    if (created == null) {
+      connection.rollback();
+      send(exchange, 400, errorJson("Stakeholder not found."));
+      return;
+    }
+    connection.commit();
+    projectCache.put(created);
+    searchIndex.put(created);
+    analytics.put(created);
+    deadlines.put(created);
+    sendProject(exchange, created, 201);
+  }
+
+  /**
+   * Updates fields of a project with a single statement.
+   *
+   * @param exchange   the request and response
+   * @param connection connection borrowed for the request
+   * @param projNum    project number
+   * @param body       fields to update
+   * @throws IOException  if the response cannot be sent
+   * @throws SQLException if there are errors accessing the database
+   */
+  private void updateProject(HttpExchange exchange, Connection connection, int projNum,
+      Map<String, Object> body) throws IOException, SQLException {
+    for (String field : body.keySet()) {
+      if (!FIELDS.contains(field) && !field.equals("version")) {
+        throw new IllegalArgumentException("Cannot update " + field + ".");
+      }
+    }
+    Integer expectedVersion = getVersion(body);
+    if (body.isEmpty()) {
+      throw new IllegalArgumentException("No fields to update.");
+    }
+    retryOnConflict(exchange, connection, expectedVersion == null, () -> {
+      Project project = Project.getProjectByNum(connection, projNum);
+      if (project == null) {
+        send(exchange, 404, errorJson("Project not found."));
+        return;
+      }
+      if (expectedVersion != null && project.getVersion() != expectedVersion) {
+        throw new ConcurrentUpdateException(Collections.singletonList("project " + projNum));
+      }
+      if (body.containsKey("completionDate") && project.getCompletionDate() == null) {
+        send(exchange, 409, errorJson(
+            "Cannot update Completion Date -- Project has not been finalised."));
+        return;
+      }
+      for (String field : body.keySet()) {
+        setField(project, body, field);
+      }
+      //one update of only the changed columns
+      UnitOfWork work = new UnitOfWork(connection, 1);
+      work.register(project);
+      work.flush();
+      connection.commit();
+      projectCache.put(project);
+      searchIndex.put(project);
+      analytics.put(project);
+      deadlines.put(project);
+      sendProject(exchange, project, 200);
+    });
+  }
+
+
+  /**
+   * Sets a field of a project from a request.
+   *
+   * @param project the project
+   * @param body    fields of the request
+   * @param field   name of the field
+   * @throws IllegalArgumentException if the value is not valid
+   */
+  private static void setField(Project project, Map<String, Object> body, String field) {
+    switch (field) {
+      case "name":
+        project.setName(getString(body, field));
+        break;
+      case "buildingType":
+        project.setBuildingType(getString(body, field));
+        break;
+      case "address":
+        project.setAddress(getString(body, field));
+        break;
+      case "erfNum":
+        project.setErfNum(getString(body, field));
+        break;
+      case "totalFee":
+        project.setTotalFeeCents(getAmount(body, field));
+        break;
+      case "amountPaid":
+        project.setAmountPaidCents(getAmount(body, field));
+        break;
+      case "deadline":
+        project.setDeadline(getDate(body, field));
+        break;
+      default:
+        project.setCompletionDate(getDate(body, field));
+        break;
+    }
+  }
+
+  /**
+   * Updates the details of a stakeholder of a project.
+   *
+   * @param exchange   the request and response
+   * @param connection connection borrowed for the request
+   * @param projNum    project number
+   * @param role       role of the stakeholder
+   * @param body       fields to update
+   * @throws IOException  if the response cannot be sent
+   * @throws SQLException if there are errors accessing the database
+   */
+  private void updateStakeholder(HttpExchange exchange, Connection connection, int projNum,
+      String role, Map<String, Object> body) throws IOException, SQLException {
+    for (String field : body.keySet()) {
+      if (!field.equals("name") && !field.equals("phoneNum") && !field.equals("email")
+          && !field.equals("address") && !field.equals("version")) {
+        throw new IllegalArgumentException("Cannot update " + field + ".");
+      }
+    }
+    Integer expectedVersion = getVersion(body);
+    retryOnConflict(exchange, connection, expectedVersion == null, () -> {
+      //read from the database so the cached copy is not changed by more than one request
+      Project project = Project.getProjectByNum(connection, projNum);
+      if (project == null) {
+        send(exchange, 404, errorJson("Project not found."));
+        return;
+      }
+      Person person = project.getStakeholder(role);
+      if (expectedVersion != null && person.getVersion() != expectedVersion) {
+        throw new ConcurrentUpdateException(
+            Collections.singletonList(role + " " + person.getId()));
+      }
+      for (String field : body.keySet()) {
+        String update = getString(body, field);
+        switch (field) {
+          case "name":
+            person.setName(update);
+            break;
+          case "phoneNum":
+            person.setContactNumber(update);
+            break;
+          case "email":
+            person.setEmail(update);
+            break;
+          default:
+            person.setAddress(update);
+            break;
+        }
+      }
+      UnitOfWork work = new UnitOfWork(connection, 1);
+      work.register(person);
+      work.flush();
+      connection.commit();
+      //every cached project with this stakeholder is now out of date
+      projectCache.invalidatePerson(person);
+      StringBuilder json = new StringBuilder(256);
+      appendPerson(json, person);
+      send(exchange, 200, json.toString());
+    });
+  }
+
+
+  /**
+   * Finalises a project and sends it with the invoice for any amount still owed.
+   *
+   * @param exchange   the request and response
+   * @param connection connection borrowed for the request
+   * @param projNum    project number
+   * @throws IOException  if the response cannot be sent
+   * @throws SQLException if there are errors accessing the database
+   */
+  private void finalise(HttpExchange exchange, Connection connection, int projNum)
+      throws IOException, SQLException {
+    retryOnConflict(exchange, connection, true, () -> {
+      Project project = Project.getProjectByNum(connection, projNum);
+      if (project == null) {
+        send(exchange, 404, errorJson("Project not found."));
+        return;
+      }
+      if (project.getCompletionDate() != null) {
+        send(exchange, 409, errorJson("Project has already been finalised!"));
+        return;
+      }
+      //checked against the version so two requests cannot both finalise the project
+      project.setCompletionDate(Date.valueOf(LocalDate.now()));
+      UnitOfWork work = new UnitOfWork(connection, 1);
+      work.register(project);
+      work.flush();
+      connection.commit();
+      projectCache.put(project);
+      analytics.put(project);
+      deadlines.put(project);
+      //adding the project to the Completed Projects file, it is finalised even if that fails
+      try {
+        exporter.export(connection);
+      } catch (IOException | SQLException error) {
+        System.out.println("Unable to update the Completed Projects file: " + error.getMessage());
+      }
+
+      StringBuilder json = new StringBuilder(1024);
+      json.append("{\"project\":");
+      appendProject(json, project);
+      json.append(",\"invoice\":");
+      if (project.getAmountDueCents() > 0) {
+        json.append('{');
+        Json.appendField(json, "totalFee", Money.toDecimal(project.getTotalFeeCents()));
+        Json.appendField(json, "amountPaid", Money.toDecimal(project.getAmountPaidCents()));
+        Json.appendField(json, "amountDue", Money.toDecimal(project.getAmountDueCents()));
+        json.append('}');
+      } else {
+        json.append("null");
+      }
+      json.append('}');
+      send(exchange, 200, json.toString());
+    });
+  }
+
+  /**
+   * A change that reads rows, changes them and commits.
+   */
+  private interface Attempt {
+
+    /**
+     * Runs the change once.
+     *
+     * @throws IOException  if the response cannot be sent
+     * @throws SQLException if there are errors accessing the database
+     */
+    void run() throws IOException, SQLException;
+  }
+
+  /**
+   * Runs a change, rolling it back and running it again if the rows it changes were changed by
+   * someone else after it read them. A conflict is sent to the client if the change cannot be
+   * retried, because the client asked for a version, or if it keeps conflicting.
+   *
+   * @param exchange   the request and response
+   * @param connection connection borrowed for the request
+   * @param retry      true if the change can be run again
+   * @param attempt    the change
+   * @throws IOException  if the response cannot be sent
+   * @throws SQLException if there are errors accessing the database
+   */
+  private static void retryOnConflict(HttpExchange exchange, Connection connection,
+      boolean retry, Attempt attempt) throws IOException, SQLException {
+    for (int attempts = 1; ; attempts++) {
+      try {
+        attempt.run();
+        return;
+      } catch (ConcurrentUpdateException conflict) {
+        connection.rollback();
+        if (!retry || attempts >= MAX_ATTEMPTS) {
+          send(exchange, 409, errorJson(conflict.getMessage()
+              + ". Read it again and send the change with the new version."));
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the version a client expects a row to have, if the request has one.
+   *
+   * @param body fields of the request, the version is removed from them
+   * @return the version, or null if the request has none
+   * @throws IllegalArgumentException if the version is not a whole number
+   */
+  private static Integer getVersion(Map<String, Object> body) {
+    if (!body.containsKey("version")) {
+      return null;
+    }
+    int version = getInt(body, "version");
+    body.remove("version");
+    return version;
+  }
+
+
+  /**
+   * Sends a project, or a not found error if it is null.
+   *
+   * @param exchange the request and response
+   * @param project  the project
+   * @param status   HTTP status if the project is found
+   * @throws IOException if the response cannot be sent
+   */
+  private static void sendProject(HttpExchange exchange, Project project, int status)
+      throws IOException {
+    if (project == null) {
+      send(exchange, 404, errorJson("Project not found."));
+      return;
+    }
+    StringBuilder json = new StringBuilder(1024);
+    appendProject(json, project);
+    send(exchange, status, json.toString());
+  }
+
+  /**
+   * Sends the fee totals for each building type, the open projects past their deadline and the
+   * number of projects finalised each month.
+   *
+   * @param exchange the request and response
+   * @throws IOException if the response cannot be sent
+   */
+  private void sendAnalytics(HttpExchange exchange) throws IOException {
+    LocalDate today = LocalDate.now();
+    PortfolioTotals totals = analytics.getTotals();
+    StringBuilder json = new StringBuilder(1024);
+    json.append('{');
+    Json.appendField(json, "billed", Money.toDecimal(totals.getBilledCents()));
+    Json.appendField(json, "paid", Money.toDecimal(totals.getPaidCents()));
+    Json.appendField(json, "outstanding", Money.toDecimal(totals.getOutstandingCents()));
+    json.append(",\"buildingTypes\":[");
+    for (String type : totals.getBuildingTypes()) {
+      json.append(json.charAt(json.length() - 1) == '[' ? "{" : ",{");
+      Json.appendField(json, "buildingType", type);
+      Json.appendField(json, "projects", totals.getCount(type));
+      Json.appendField(json, "billed", Money.toDecimal(totals.getBilledCents(type)));
+      Json.appendField(json, "paid", Money.toDecimal(totals.getPaidCents(type)));
+      Json.appendField(json, "outstanding", Money.toDecimal(totals.getOutstandingCents(type)));
+      json.append('}');
+    }
+    json.append("],\"pastDue\":{");
+    Json.appendField(json, "projects", analytics.getPastDueCount(today));
+    Json.appendField(json, "outstanding",
+        Money.toDecimal(analytics.getPastDueOutstandingCents(today)));
+    json.append("},\"finalisedByMonth\":{");
+    for (Map.Entry<YearMonth, Long> month : analytics.getFinalisedByMonth().entrySet()) {
+      Json.appendField(json, month.getKey().toString(), month.getValue());
+    }
+    json.append("}}");
+    send(exchange, 200, json.toString());
+  }
+
+  /**
+   * Appends a project and its stakeholders as JSON.
+   *
+   * @param json    builder to append to
+   * @param project the project
+   */
+  static void appendProject(StringBuilder json, Project project) {
+    json.append('{');
+    Json.appendField(json, "num", project.getNum());
+    Json.appendField(json, "name", project.getName());
+    Json.appendField(json, "buildingType", project.getBuildingType());
+    Json.appendField(json, "address", project.getAddress());
+    Json.appendField(json, "erfNum", project.getErfNum());
+    Json.appendField(json, "totalFee", Money.toDecimal(project.getTotalFeeCents()));
+    Json.appendField(json, "amountPaid", Money.toDecimal(project.getAmountPaidCents()));
+    Json.appendField(json, "deadline", project.getDeadline());
+    Json.appendField(json, "completionDate", project.getCompletionDate());
+    Json.appendField(json, "finalised", project.getCompletionDate() != null);
+    Json.appendField(json, "version", project.getVersion());
+    json.append(",\"stakeholders\":[");
+    for (Person person : project.getStakeholders()) {
+      if (json.charAt(json.length() - 1) != '[') {
+        json.append(',');
+      }
+      appendPerson(json, person);
+    }
+    json.append("]}");
+  }
+
+  /**
+   * Appends a person as JSON.
+   *
+   * @param json   builder to append to
+   * @param person the person
+   */
+  static void appendPerson(StringBuilder json, Person person) {
+    json.append('{');
+    Json.appendField(json, "role", person.getRole());
+    Json.appendField(json, "id", person.getId());
+    Json.appendField(json, "name", person.getName());
+    Json.appendField(json, "phoneNum", person.getContactNumber());
+    Json.appendField(json, "email", person.getEmail());
+    Json.appendField(json, "address", person.getAddress());
+    Json.appendField(json, "version", person.getVersion());
+    json.append('}');
+  }
+
+  /**
+   * Returns an error as JSON.
+   *
+   * @param message the error message
+   * @return the JSON
+   */
+  private static String errorJson(String message) {
+    StringBuilder json = new StringBuilder("{");
+    Json.appendField(json, "error", message);
+    return json.append('}').toString();
+  }
+
+  /**
+   * Sends an error as JSON. If part of the response has already been streamed it cannot be
+   * replaced, so nothing is sent and the response ends when the exchange is closed.
+   *
+   * @param exchange the request and response
+   * @param status   HTTP status
+   * @param message  the error message
+   * @throws IOException if the response cannot be sent
+   */
+  private static void sendError(HttpExchange exchange, int status, String message)
+      throws IOException {
+    if (exchange.getResponseCode() == -1) {
+      send(exchange, status, errorJson(message));
+    }
+  }
+
+  /**
+   * Sends a JSON response.
+   *
+   * @param exchange the request and response
+   * @param status   HTTP status
+   * @param json     body of the response
+   * @throws IOException if the response cannot be sent
+   */
+  private static void send(HttpExchange exchange, int status, String json) throws IOException {
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Reads the JSON object in the body of a request.
+   *
+   * @param exchange the request
+   * @return fields of the object
+   * @throws IOException              if the body cannot be read
+   * @throws IllegalArgumentException if the body is too large or not a JSON object
+   */
+  private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    try (InputStream in = exchange.getRequestBody()) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        body.write(buffer, 0, read);
+        if (body.size() > MAX_BODY_BYTES) {
+          throw new IllegalArgumentException("Request body is too large.");
+        }
+      }
+    }
+    return Json.parseObject(new String(body.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Reads the parameters in the query of a request.
+   *
+   * @param exchange the request
+   * @return the parameters
+   * @throws UnsupportedEncodingException if UTF-8 is not supported
+   */
+  private static Map<String, String> readQuery(HttpExchange exchange)
+      throws UnsupportedEncodingException {
+    Map<String, String> query = new HashMap<>();
+    String raw = exchange.getRequestURI().getRawQuery();
+    if (raw == null) {
+      return query;
+    }
+    for (String parameter : raw.split("&")) {
+      int equals = parameter.indexOf('=');
+      if (equals > 0) {
+        query.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"),
+            URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+      }
+    }
+    return query;
+  }
+
+  /**
+   * Returns a string field of a request.
+   *
+   * @param body  fields of the request
+   * @param field name of the field
+   * @return the value
+   * @throws IllegalArgumentException if the field is missing or not a string
+   */
+  private static String getString(Map<String, Object> body, String field) {
+    Object value = body.get(field);
+    if (!(value instanceof String)) {
+      throw new IllegalArgumentException(field + " must be a string.");
+    }
+    return (String) value;
+  }
+
+  /**
+   * Returns a number field of a request, as it was written.
+   *
+   * @param body  fields of the request
+   * @param field name of the field
+   * @return the value
+   * @throws IllegalArgumentException if the field is missing, not a number or has more than 18
+   *                                  digits before or after the decimal point
+   */
+  private static BigDecimal getNumber(Map<String, Object> body, String field) {
+    Object value = body.get(field);
+    if (!(value instanceof BigDecimal)) {
+      throw new IllegalArgumentException(field + " must be a number.");
+    }
+    BigDecimal number = ((BigDecimal) value).stripTrailingZeros();
+    //checked before rounding, which takes as long as the exponent is large
+    if (number.scale() > 18 || number.precision() - number.scale() > 18) {
+      throw new IllegalArgumentException(field + " is out of range.");
+    }
+    return number;
+  }
+
+  /**
+   * Returns a whole number field of a request, such as an id or version.
+   *
+   * @param body  fields of the request
+   * @param field name of the field
+   * @return the value
+   * @throws IllegalArgumentException if the field is missing or not a whole number
+   */
+  private static int getInt(Map<String, Object> body, String field) {
+    try {
+      return getNumber(body, field).intValueExact();
+    } catch (ArithmeticException error) {
+      throw new IllegalArgumentException(field + " must be a whole number.");
+    }
+  }
+
+  /**
+   * Returns an amount field of a request, in rand, rounded half up to the nearest cent as
+   * {@link Money#parse} does.
+   *
+   * @param body  fields of the request
+   * @param field name of the field
+   * @return the amount, in cents
+   * @throws IllegalArgumentException if the field is missing, not a number or out of range
+   */
+  private static long getAmount(Map<String, Object> body, String field) {
+    return Money.fromDecimal(getNumber(body, field));
+  }
+
+  /**
+   * Returns a date field of a request.
+   *
+   * @param body  fields of the request
+   * @param field name of the field
+   * @return the value
+   * @throws IllegalArgumentException if the field is missing or not a yyyy-mm-dd date
+   */
+  private static Date getDate(Map<String, Object> body, String field) {
+    try {
+      return Date.valueOf(getString(body, field));
+    } catch (IllegalArgumentException error) {
+      throw new IllegalArgumentException(field + " must be a yyyy-mm-dd date.");
+    }
+  }
+
+  /**
+   * Writer for a streamed response. The first page is kept until it is flushed, so the response
+   * headers are only sent once the first page has been read.
+   */
+  private static final class StreamedResponse extends Writer {
+
+    private final HttpExchange exchange;
+    private StringBuilder firstPage = new StringBuilder();
+    private Writer body = null;
+
+    private StreamedResponse(HttpExchange exchange) {
+      this.exchange = exchange;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+      if (body == null) {
+        firstPage.append(chars, offset, length);
+      } else {
+        body.write(chars, offset, length);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      start();
+      body.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      start();
+      body.close();
+    }
+
+    /**
+     * Sends the response headers and the first page, if they have not been sent yet.
+     *
+     * @throws IOException if the response cannot be sent
+     */
+    private void start() throws IOException {
+      if (body == null) {
+        exchange.sendResponseHeaders(200, 0);
+        body = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8);
+        body.append(firstPage);
+        firstPage = null;
+      }
+    }
+  }
+}
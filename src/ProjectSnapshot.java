@@ -0,0 +1,588 @@
+//importing libraries
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ProjectSnapshot is a copy of all projects and their stakeholders in a binary file, so the
+ * search index and totals can be filled at startup without reading every table, and reports can
+ * still be shown when the database cannot be reached.
+ *
+ * <p>The file has a header, a table of fixed-width project records in project number order, a
+ * table of fixed-width stakeholder records with each stakeholder only once, and a pool of strings
+ * with each string only once. Records refer to strings by their offset in the pool and projects
+ * refer to stakeholders by their index in the stakeholder table. The file is mapped into memory
+ * and fields are read straight from the mapped file when they are asked for.
+ *
+ * <p>A snapshot is written to a temporary file that then replaces the old snapshot, so a reader
+ * never sees a half written file. Each project record keeps the row version, so the projects
+ * changed since the snapshot was written can be found by comparing versions.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class ProjectSnapshot {
+
+  //"POISESNP"
+  private static final long MAGIC = 0x504f495345534e50L;
+  private static final int FORMAT = 1;
+  private static final int HEADER_SIZE = 64;
+  //num, version, 4 strings, 4 longs and 4 stakeholders
+  private static final int PROJECT_SIZE = 72;
+  //role, id, version and 4 strings
+  private static final int PERSON_SIZE = 28;
+  //date of a project without one
+  private static final long NO_DATE = Long.MIN_VALUE;
+  //number of changed projects read with each catch-up query
+  private static final int CATCH_UP_CHUNK = 500;
+
+  private static final String[] ROLES =
+      {"Structural Engineer", "Project Manager", "Architect", "Customer"};
+
+  private final ByteBuffer buffer;
+  private final int projectCount;
+  private final int personCount;
+  private final int projectsOffset;
+  private final int peopleOffset;
+  private final int stringsOffset;
+  private final long created;
+
+  /**
+   * Constructor to initialise a snapshot from a mapped file.
+   *
+   * @param buffer the mapped file, with its header checked
+   */
+  private ProjectSnapshot(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.projectCount = buffer.getInt(12);
+    this.personCount = buffer.getInt(16);
+    this.projectsOffset = buffer.getInt(20);
+    this.peopleOffset = buffer.getInt(24);
+    this.stringsOffset = buffer.getInt(28);
+    this.created = buffer.getLong(32);
+  }
+
+  /**
+   * Writes a snapshot of all projects, including archived projects, and their stakeholders,
+   * replacing the file if it exists.
+   *
+   * @param connection database connection
+   * @param file       the snapshot file
+   * @return number of projects written
+   * @throws SQLException if there are errors accessing the database
+   * @throws IOException  if the file cannot be written
+   */
+  public static int write(Connection connection, Path file) throws SQLException, IOException {
+    //the time is taken first so changes made while reading are caught up later
+    long created = System.currentTimeMillis();
+    ByteArrayOutputStream projectBytes = new ByteArrayOutputStream(1 << 16);
+    ByteArrayOutputStream personBytes = new ByteArrayOutputStream(1 << 16);
+    ByteArrayOutputStream stringBytes = new ByteArrayOutputStream(1 << 16);
+    DataOutputStream projects = new DataOutputStream(projectBytes);
+    DataOutputStream people = new DataOutputStream(personBytes);
+    DataOutputStream strings = new DataOutputStream(stringBytes);
+    //offset in the pool of each string, and index of each stakeholder by role and id
+    Map<String, Integer> stringOffsets = new HashMap<>();
+    Map<String, Integer> personIndexes = new HashMap<>();
+    int projectCount = 0;
+    try (PreparedStatement statement = connection.prepareStatement(
+        ProjectArchiver.withArchive(Project.SELECT_WITH_STAKEHOLDERS) + " ORDER BY proj_num",
+        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+      statement.setFetchSize(1000);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        Project project;
+        while ((project = Project.createProjectFromResultSet(resultSet)) != null) {
+          projects.writeInt(project.getNum());
+          projects.writeInt(project.getVersion());
+          projects.writeInt(addString(strings, stringOffsets, project.getName()));
+          projects.writeInt(addString(strings, stringOffsets, project.getBuildingType()));
+          projects.writeInt(addString(strings, stringOffsets, project.getAddress()));
+          projects.writeInt(addString(strings, stringOffsets, project.getErfNum()));
+          projects.writeLong(project.getTotalFeeCents());
+          projects.writeLong(project.getAmountPaidCents());
+          projects.writeLong(toDay(project.getDeadline()));
+          projects.writeLong(toDay(project.getCompletionDate()));
+          for (Person person : project.getStakeholders()) {
+            String key = person.getRole() + ":" + person.getId();
+            Integer index = personIndexes.get(key);
+            if (index == null) {
+              index = personIndexes.size();
+              personIndexes.put(key, index);
+              addPerson(people, strings, stringOffsets, person);
+            }
+            projects.writeInt(index);
+          }
+          projectCount++;
+        }
+      }
+    }
+    //the header, then the tables, then the strings
+    int projectsOffset = HEADER_SIZE;
+    int peopleOffset = projectsOffset + projectBytes.size();
+    int stringsOffset = peopleOffset + personBytes.size();
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putLong(MAGIC).putInt(FORMAT).putInt(projectCount).putInt(personIndexes.size())
+        .putInt(projectsOffset).putInt(peopleOffset).putInt(stringsOffset).putLong(created);
+    header.clear();
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ByteBuffer[] parts = {header, ByteBuffer.wrap(projectBytes.toByteArray()),
+          ByteBuffer.wrap(personBytes.toByteArray()), ByteBuffer.wrap(stringBytes.toByteArray())};
+      for (ByteBuffer part : parts) {
+        while (part.hasRemaining()) {
+          channel.write(part);
+        }
+      }
+      channel.force(true);
+    }
+    try {
+      Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException error) {
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return projectCount;
+  }
+
+  /**
+   * Writes a stakeholder record.
+   *
+   * @param people        stakeholder table
+   * @param strings       string pool
+   * @param stringOffsets offset in the pool of each string already added
+   * @param person        the stakeholder
+   * @throws IOException if the record cannot be written
+   */
+  private static void addPerson(DataOutputStream people, DataOutputStream strings,
+      Map<String, Integer> stringOffsets, Person person) throws IOException {
+    int role = 0;
+    while (role < ROLES.length - 1 && !ROLES[role].equals(person.getRole())) {
+      role++;
+    }
+    people.writeInt(role);
+    people.writeInt(person.getId());
+    people.writeInt(person.getVersion());
+    people.writeInt(addString(strings, stringOffsets, person.getName()));
+    people.writeInt(addString(strings, stringOffsets, person.getContactNumber()));
+    people.writeInt(addString(strings, stringOffsets, person.getEmail()));
+    people.writeInt(addString(strings, stringOffsets, person.getAddress()));
+  }
+
+  /**
+   * Adds a string to the pool, unless it is already there, as its length and UTF-8 bytes.
+   *
+   * @param strings       string pool
+   * @param stringOffsets offset in the pool of each string already added
+   * @param value         the string
+   * @return offset of the string in the pool, or -1 for null
+   * @throws IOException if the string cannot be written
+   */
+  private static int addString(DataOutputStream strings, Map<String, Integer> stringOffsets,
+      String value) throws IOException {
+    if (value == null) {
+      return -1;
+    }
+    Integer offset = stringOffsets.get(value);
+    if (offset == null) {
+      offset = strings.size();
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      strings.writeInt(bytes.length);
+      strings.write(bytes);
+      stringOffsets.put(value, offset);
+    }
+    return offset;
+  }
+
+  /**
+   * Converts a date to a day number.
+   *
+   * @param date the date, or null
+   * @return days since 1970-01-01, or NO_DATE for null
+   */
+  private static long toDay(Date date) {
+    return date == null ? NO_DATE : date.toLocalDate().toEpochDay();
+  }
+
+  /**
+   * Opens a snapshot by mapping its file into memory.
+   *
+   * @param file the snapshot file
+   * @return the snapshot
+   * @throws IOException if the file cannot be read or is not a snapshot
+   */
+  public static ProjectSnapshot open(Path file) throws IOException {
+    //the mapping stays valid after the channel is closed
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+        throw new IOException("Not a project snapshot: " + file);
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != FORMAT) {
+        throw new IOException("Not a project snapshot: " + file);
+      }
+      ProjectSnapshot snapshot = new ProjectSnapshot(buffer);
+      if (snapshot.peopleOffset != snapshot.projectsOffset
+          + (long) snapshot.projectCount * PROJECT_SIZE
+          || snapshot.stringsOffset != snapshot.peopleOffset
+          + (long) snapshot.personCount * PERSON_SIZE || snapshot.stringsOffset > size) {
+        throw new IOException("Damaged project snapshot: " + file);
+      }
+      return snapshot;
+    }
+  }
+
+  /**
+   * Returns the time the snapshot was written.
+   *
+   * @return milliseconds since 1970-01-01
+   */
+  public long getCreated() {
+    return created;
+  }
+
+  /**
+   * Returns the number of projects in the snapshot.
+   *
+   * @return number of projects
+   */
+  public int getProjectCount() {
+    return projectCount;
+  }
+
+  /**
+   * Finds a project by number.
+   *
+   * @param projNum the project number
+   * @return index of the project, or -1 if it is not in the snapshot
+   */
+  public int indexOf(int projNum) {
+    int low = 0;
+    int high = projectCount - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int num = getProjNum(middle);
+      if (num < projNum) {
+        low = middle + 1;
+      } else if (num > projNum) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the number of a project.
+   *
+   * @param index index of the project
+   * @return project number
+   */
+  public int getProjNum(int index) {
+    return buffer.getInt(project(index));
+  }
+
+  /**
+   * Returns the row version of a project when the snapshot was written.
+   *
+   * @param index index of the project
+   * @return the version
+   */
+  public int getVersion(int index) {
+    return buffer.getInt(project(index) + 4);
+  }
+
+  /**
+   * Returns the name of a project.
+   *
+   * @param index index of the project
+   * @return project name
+   */
+  public String getName(int index) {
+    return getString(buffer.getInt(project(index) + 8));
+  }
+
+  /**
+   * Returns the building type of a project.
+   *
+   * @param index index of the project
+   * @return building type
+   */
+  public String getBuildingType(int index) {
+    return getString(buffer.getInt(project(index) + 12));
+  }
+
+  /**
+   * Returns the address of a project.
+   *
+   * @param index index of the project
+   * @return physical address
+   */
+  public String getAddress(int index) {
+    return getString(buffer.getInt(project(index) + 16));
+  }
+
+  /**
+   * Returns the ERF number of a project.
+   *
+   * @param index index of the project
+   * @return ERF number
+   */
+  public String getErfNum(int index) {
+    return getString(buffer.getInt(project(index) + 20));
+  }
+
+  /**
+   * Returns the total fee of a project.
+   *
+   * @param index index of the project
+   * @return total fee, in cents
+   */
+  public long getTotalFeeCents(int index) {
+    return buffer.getLong(project(index) + 24);
+  }
+
+  /**
+   * Returns the amount paid for a project.
+   *
+   * @param index index of the project
+   * @return amount paid, in cents
+   */
+  public long getAmountPaidCents(int index) {
+    return buffer.getLong(project(index) + 32);
+  }
+
+  /**
+   * Returns the deadline of a project.
+   *
+   * @param index index of the project
+   * @return the deadline, or null if there is none
+   */
+  public Date getDeadline(int index) {
+    return toDate(buffer.getLong(project(index) + 40));
+  }
+
+  /**
+   * Checks if a project is open and its deadline is before a day.
+   *
+   * @param index index of the project
+   * @param today the day
+   * @return true if the project is past due, else false
+   */
+  public boolean isPastDue(int index, LocalDate today) {
+    long deadline = buffer.getLong(project(index) + 40);
+    return !isFinalised(index) && deadline != NO_DATE && deadline < today.toEpochDay();
+  }
+
+  /**
+   * Returns the completion date of a project.
+   *
+   * @param index index of the project
+   * @return the completion date, or null if it has not been finalised
+   */
+  public Date getCompletionDate(int index) {
+    return toDate(buffer.getLong(project(index) + 48));
+  }
+
+  /**
+   * Checks if a project has been finalised.
+   *
+   * @param index index of the project
+   * @return true if it has a completion date, else false
+   */
+  public boolean isFinalised(int index) {
+    return buffer.getLong(project(index) + 48) != NO_DATE;
+  }
+
+  /**
+   * Creates a project object, with its stakeholders, from the snapshot.
+   *
+   * @param index index of the project
+   * @return the project
+   */
+  public Project getProject(int index) {
+    Project project = new Project(getName(index), getBuildingType(index), getAddress(index),
+        getErfNum(index), getTotalFeeCents(index), getAmountPaidCents(index),
+        getDeadline(index));
+    project.setNum(getProjNum(index));
+    project.setVersion(getVersion(index));
+    project.setCompletionDate(getCompletionDate(index));
+    for (int i = 0; i < ROLES.length; i++) {
+      project.addStakeholder(getPerson(buffer.getInt(project(index) + 56 + i * 4)));
+    }
+    project.markClean();
+    return project;
+  }
+
+  /**
+   * Creates a person object from the snapshot.
+   *
+   * @param index index of the stakeholder
+   * @return the person
+   */
+  private Person getPerson(int index) {
+    int record = peopleOffset + index * PERSON_SIZE;
+    Person person = new Person(ROLES[buffer.getInt(record)], getString(buffer.getInt(record + 12)),
+        getString(buffer.getInt(record + 16)), getString(buffer.getInt(record + 20)),
+        getString(buffer.getInt(record + 24)));
+    person.setId(buffer.getInt(record + 4));
+    person.setVersion(buffer.getInt(record + 8));
+    person.markClean();
+    return person;
+  }
+
+  /**
+   * Returns the offset of a project record.
+   *
+   * @param index index of the project
+   * @return offset in the file
+   * @throws IndexOutOfBoundsException if there is no such project
+   */
+  private int project(int index) {
+    if (index < 0 || index >= projectCount) {
+      throw new IndexOutOfBoundsException("No project at " + index);
+    }
+    return projectsOffset + index * PROJECT_SIZE;
+  }
+
+  /**
+   * Reads a string from the pool.
+   *
+   * @param offset offset of the string in the pool, or -1 for null
+   * @return the string
+   * @throws IndexOutOfBoundsException if the string is not inside the pool
+   */
+  private String getString(int offset) {
+    if (offset < 0) {
+      return null;
+    }
+    long position = (long) stringsOffset + offset;
+    if (position + 4 > buffer.limit()) {
+      throw new IndexOutOfBoundsException("Damaged project snapshot: no string at " + offset);
+    }
+    int length = buffer.getInt((int) position);
+    if (length < 0 || position + 4 + length > buffer.limit()) {
+      throw new IndexOutOfBoundsException("Damaged project snapshot: string at " + offset
+          + " has length " + length);
+    }
+    byte[] bytes = new byte[length];
+    //a duplicate has its own position, so threads can read at the same time
+    ByteBuffer reader = buffer.duplicate();
+    reader.position((int) position + 4);
+    reader.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Converts a day number to a date.
+   *
+   * @param day days since 1970-01-01, or NO_DATE
+   * @return the date, or null for NO_DATE
+   */
+  private static Date toDate(long day) {
+    return day == NO_DATE ? null : Date.valueOf(LocalDate.ofEpochDay(day));
+  }
+
+  /**
+   * Adds every project in the snapshot to a search index.
+   *
+   * @param searchIndex the index
+   */
+  public void addTo(ProjectSearchIndex searchIndex) {
+    for (int i = 0; i < projectCount; i++) {
+      searchIndex.put(getProjNum(i), getName(i), getAddress(i), getErfNum(i));
+    }
+  }
+
+  /**
+   * Adds every project in the snapshot to the portfolio totals.
+   *
+   * @param analytics the totals
+   */
+  public void addTo(PortfolioAnalytics analytics) {
+    for (int i = 0; i < projectCount; i++) {
+      analytics.put(getProjNum(i), getBuildingType(i), getTotalFeeCents(i),
+          getAmountPaidCents(i), getDeadline(i), getCompletionDate(i));
+    }
+  }
+
+  /**
+   * Brings a search index and totals filled from the snapshot up to date with the database. The
+   * number and version of every project are read, and only the projects that are new or have a
+   * different version are read in full.
+   *
+   * @param connection  database connection
+   * @param searchIndex index filled from this snapshot
+   * @param analytics   totals filled from this snapshot
+   * @return number of projects changed since the snapshot was written
+   * @throws SQLException if there are errors accessing the database
+   */
+  public int catchUp(Connection connection, ProjectSearchIndex searchIndex,
+      PortfolioAnalytics analytics) throws SQLException {
+    List<Integer> changed = new ArrayList<>();
+    try (PreparedStatement statement = connection.prepareStatement(
+        ProjectArchiver.withArchive("SELECT proj_num, version FROM projects"),
+        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+      statement.setFetchSize(1000);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          int index = indexOf(resultSet.getInt(1));
+          if (index < 0 || getVersion(index) != resultSet.getInt(2)) {
+            changed.add(resultSet.getInt(1));
+          }
+        }
+      }
+    }
+    for (int start = 0; start < changed.size(); start += CATCH_UP_CHUNK) {
+      List<Integer> chunk = changed.subList(start, Math.min(changed.size(),
+          start + CATCH_UP_CHUNK));
+      StringBuilder query = new StringBuilder("SELECT proj_num, proj_name, building_type,"
+          + " address, erf_num, total_fee, amount_paid, deadline, completion_date"
+          + " FROM projects WHERE proj_num IN (");
+      for (int i = 0; i < chunk.size(); i++) {
+        query.append(i == 0 ? "?" : ",?");
+      }
+      try (PreparedStatement statement = connection.prepareStatement(
+          ProjectArchiver.withArchive(query.append(')').toString()))) {
+        //once for the projects table and once for the archive
+        for (int i = 0; i < chunk.size(); i++) {
+          statement.setInt(i + 1, chunk.get(i));
+          statement.setInt(chunk.size() + i + 1, chunk.get(i));
+        }
+        try (ResultSet resultSet = statement.executeQuery()) {
+          while (resultSet.next()) {
+            int projNum = resultSet.getInt("proj_num");
+            searchIndex.put(projNum, resultSet.getString("proj_name"),
+                resultSet.getString("address"), resultSet.getString("erf_num"));
+            analytics.put(projNum, resultSet.getString("building_type"),
+                Money.read(resultSet, "total_fee"), Money.read(resultSet, "amount_paid"),
+                resultSet.getDate("deadline"), resultSet.getDate("completion_date"));
+          }
+        }
+      }
+    }
+    return changed.size();
+  }
+}
@@ -0,0 +1,138 @@
+//importing libraries
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Schema creates the tables and columns the program needs in addition to the projects and
+ * stakeholder tables. It is run when the program starts and only creates what does not exist yet.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class Schema {
+
+  //tables with a version column, and the column's name
+  private static final String[][] VERSIONED_TABLES = {
+      {"projects", "version"},
+      {"structural_engineers", "struc_eng_version"},
+      {"project_managers", "proj_mgr_version"},
+      {"architects", "architect_version"},
+      {"customers", "cust_version"}};
+
+  /**
+   * Creates any missing tables and columns and commits the changes.
+   *
+   * @param connection database connection
+   * @throws SQLException if there are errors accessing the database
+   */
+  public static void migrate(Connection connection) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      //next free id for each table, used by IdAllocator to reserve blocks of ids
+      statement.executeUpdate("CREATE TABLE IF NOT EXISTS id_blocks ("
+          + "table_name VARCHAR(64) NOT NULL PRIMARY KEY,"
+          + " next_id INT NOT NULL)");
+      //version of each row, increased by every update so concurrent changes can be detected
+      for (String[] table : VERSIONED_TABLES) {
+        if (!hasColumn(statement, table[0], table[1])) {
+          statement.executeUpdate("ALTER TABLE " + table[0] + " ADD COLUMN " + table[1]
+              + " INT NOT NULL DEFAULT 0");
+        }
+      }
+      //finalised projects moved out of the projects table, with the same columns in the same
+      //order, see ProjectArchiver
+      if (!hasTable(connection, ProjectArchiver.ARCHIVE_TABLE)) {
+        statement.executeUpdate("CREATE TABLE " + ProjectArchiver.ARCHIVE_TABLE
+            + " AS SELECT * FROM projects WHERE 1=0");
+        //some databases drop NOT NULL from copied columns, which a primary key needs
+        statement.executeUpdate("ALTER TABLE " + ProjectArchiver.ARCHIVE_TABLE
+            + " MODIFY proj_num INT NOT NULL");
+        statement.executeUpdate("ALTER TABLE " + ProjectArchiver.ARCHIVE_TABLE
+            + " ADD PRIMARY KEY (proj_num)");
+        statement.executeUpdate("CREATE INDEX projects_archive_name ON "
+            + ProjectArchiver.ARCHIVE_TABLE + " (proj_name)");
+      }
+      //finalised projects by completion date, read by CompletedProjectsExporter
+      for (String table : new String[]{"projects", ProjectArchiver.ARCHIVE_TABLE}) {
+        if (!hasIndexOn(connection, table, "completion_date")) {
+          statement.executeUpdate("CREATE INDEX " + table + "_completed ON " + table
+              + " (completion_date)");
+        }
+      }
+    }
+    connection.commit();
+  }
+
+  /**
+   * Checks if a table exists in the current database, as named or in upper case.
+   *
+   * @param connection database connection
+   * @param tableName  name of the table
+   * @return true if the table exists, else false
+   * @throws SQLException if there are errors accessing the database
+   */
+  private static boolean hasTable(Connection connection, String tableName) throws SQLException {
+    DatabaseMetaData metaData = connection.getMetaData();
+    for (String name : new String[]{tableName, tableName.toUpperCase()}) {
+      try (ResultSet resultSet = metaData.getTables(connection.getCatalog(), null, name, null)) {
+        if (resultSet.next()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks if a table has an index that starts with a column, ignoring case.
+   *
+   * @param connection database connection
+   * @param tableName  name of the table
+   * @param column     name of the column
+   * @return true if there is such an index, else false
+   * @throws SQLException if there are errors accessing the database
+   */
+  private static boolean hasIndexOn(Connection connection, String tableName, String column)
+      throws SQLException {
+    DatabaseMetaData metaData = connection.getMetaData();
+    for (String name : new String[]{tableName, tableName.toUpperCase()}) {
+      try (ResultSet resultSet = metaData
+          .getIndexInfo(connection.getCatalog(), null, name, false, true)) {
+        while (resultSet.next()) {
+          if (resultSet.getShort("ORDINAL_POSITION") == 1
+              && column.equalsIgnoreCase(resultSet.getString("COLUMN_NAME"))) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks if a table has a column, ignoring case.
+   *
+   * @param statement statement to query the table with
+   * @param tableName name of the table
+   * @param column    name of the column
+   * @return true if the table has the column, else false
+   * @throws SQLException if there are errors accessing the database
+   */
+  private static boolean hasColumn(Statement statement, String tableName, String column)
+      throws SQLException {
+    try (ResultSet resultSet = statement
+        .executeQuery("SELECT * FROM " + tableName + " WHERE 1=0")) {
+      ResultSetMetaData metaData = resultSet.getMetaData();
+      for (int i = 1; i <= metaData.getColumnCount(); i++) {
+        if (metaData.getColumnName(i).equalsIgnoreCase(column)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,190 @@
+//importing libraries
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * StakeholderBrowser pages through the people in a stakeholder table. Each page is read with one
+ * query that starts after the last ID of the page before, so reading a page costs the same however
+ * many people are in the table. The people can be filtered by part of their name or phone number.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class StakeholderBrowser {
+
+  private final String role;
+  private final String tableName;
+  private final int pageSize;
+  private String filter = "";
+  private List<Person> page = new ArrayList<>();
+  private boolean hasNext = false;
+  private boolean hasPrevious = false;
+
+  /**
+   * Constructor to initialise a browser for the people in a role.
+   *
+   * @param role     role of the people to browse
+   * @param pageSize number of people on a page
+   */
+  public StakeholderBrowser(String role, int pageSize) {
+    this.role = role;
+    this.tableName = Person.getTableName(role);
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * Sets the text to filter names and phone numbers by and goes back to the first page.
+   *
+   * @param connection database connection
+   * @param filter     text that the name or phone number must contain, empty for everyone
+   * @return the first page of people matching the filter
+   * @throws SQLException if there are errors accessing the database
+   */
+  public List<Person> filter(Connection connection, String filter) throws SQLException {
+    this.filter = filter.trim();
+    return first(connection);
+  }
+
+  /**
+   * Returns the first page of people.
+   *
+   * @param connection database connection
+   * @return the first page
+   * @throws SQLException if there are errors accessing the database
+   */
+  public List<Person> first(Connection connection) throws SQLException {
+    List<Person> people = readPage(connection, StatementRegistry.PAGE_NEXT, 0);
+    hasPrevious = false;
+    hasNext = people.size() > pageSize;
+    return setPage(people);
+  }
+
+  /**
+   * Returns the page after the current page, or the current page if it is the last.
+   *
+   * @param connection database connection
+   * @return the next page
+   * @throws SQLException if there are errors accessing the database
+   */
+  public List<Person> next(Connection connection) throws SQLException {
+    if (!hasNext) {
+      return page;
+    }
+    int lastId = page.get(page.size() - 1).getId();
+    List<Person> people = readPage(connection, StatementRegistry.PAGE_NEXT, lastId);
+    hasPrevious = true;
+    hasNext = people.size() > pageSize;
+    return setPage(people);
+  }
+
+  /**
+   * Returns the page before the current page, or the current page if it is the first.
+   *
+   * @param connection database connection
+   * @return the previous page
+   * @throws SQLException if there are errors accessing the database
+   */
+  public List<Person> previous(Connection connection) throws SQLException {
+    if (!hasPrevious) {
+      return page;
+    }
+    int firstId = page.get(0).getId();
+    //the previous page is read in descending order and turned around
+    List<Person> people = readPage(connection, StatementRegistry.PAGE_PREVIOUS, firstId);
+    hasNext = true;
+    hasPrevious = people.size() > pageSize;
+    if (hasPrevious) {
+      people.remove(people.size() - 1);
+    }
+    Collections.reverse(people);
+    return setPage(people);
+  }
+
+  /**
+   * Reads up to one more person than a page holds, to find out if there is another page.
+   *
+   * @param connection database connection
+   * @param variant    statement variant for the direction to read in
+   * @param fromId     ID to read after or before
+   * @return people read
+   * @throws SQLException if there are errors accessing the database
+   */
+  private List<Person> readPage(Connection connection, String variant, int fromId)
+      throws SQLException {
+    PreparedStatement statement = StatementRegistry.prepare(connection, tableName, variant);
+    String pattern = "%" + filter + "%";
+    statement.setInt(1, fromId);
+    statement.setString(2, pattern);
+    statement.setString(3, pattern);
+    statement.setInt(4, pageSize + 1);
+    List<Person> people = new ArrayList<>();
+    try (ResultSet resultSet = statement.executeQuery()) {
+      while (resultSet.next()) {
+        people.add(Person.createPersonFromResultSet(resultSet, role));
+      }
+    }
+    return people;
+  }
+
+  /**
+   * Sets the current page, dropping the extra person read to look ahead.
+   *
+   * @param people people read for the page
+   * @return the current page
+   */
+  private List<Person> setPage(List<Person> people) {
+    if (people.size() > pageSize) {
+      people.remove(people.size() - 1);
+    }
+    page = people;
+    return page;
+  }
+
+  /**
+   * Returns the person with an ID on the current page.
+   *
+   * @param id ID of the person
+   * @return the person, or null if the ID is not on the current page
+   */
+  public Person select(int id) {
+    for (Person person : page) {
+      if (person.getId() == id) {
+        return person;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns true if there is a page after the current page.
+   *
+   * @return true if there is a next page, else false
+   */
+  public boolean hasNext() {
+    return hasNext;
+  }
+
+  /**
+   * Returns true if there is a page before the current page.
+   *
+   * @return true if there is a previous page, else false
+   */
+  public boolean hasPrevious() {
+    return hasPrevious;
+  }
+
+  /**
+   * Returns the text names and phone numbers are filtered by.
+   *
+   * @return the filter text
+   */
+  public String getFilter() {
+    return filter;
+  }
+}
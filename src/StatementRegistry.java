@@ -0,0 +1,153 @@
+//importing libraries
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StatementRegistry holds a fixed catalogue of the SQL used for the stakeholder tables. Each
+ * statement is prepared once per database connection and reused on later calls. Statements
+ * returned by the registry belong to the registry and must not be closed by the caller; they are
+ * closed when their connection is closed by the connection pool.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class StatementRegistry {
+
+  public static final String INSERT = "insert";
+  public static final String PAGE_NEXT = "page_next";
+  public static final String PAGE_PREVIOUS = "page_previous";
+
+  //catalogue of sql for each table and statement variant, keyed by "table/variant"
+  private static final Map<String, String> CATALOGUE;
+
+  static {
+    Map<String, String> catalogue = new HashMap<>();
+    String[][] tables = {
+        {"structural_engineers", "struc_eng_"},
+        {"project_managers", "proj_mgr_"},
+        {"architects", "architect_"},
+        {"customers", "cust_"}};
+    for (String[] table : tables) {
+      String tableName = table[0];
+      String prefix = table[1];
+      catalogue.put(key(tableName, INSERT), "INSERT INTO " + tableName + " (" + prefix + "id, "
+          + prefix + "name, " + prefix + "phone_num, " + prefix + "email, " + prefix
+          + "address) VALUES(?,?,?,?,?)");
+      //pages of people after or before an id, filtered by name or phone number
+      String pageFilter = " AND (" + prefix + "name LIKE ? OR " + prefix + "phone_num LIKE ?)";
+      catalogue.put(key(tableName, PAGE_NEXT), "SELECT * FROM " + tableName + " WHERE " + prefix
+          + "id>?" + pageFilter + " ORDER BY " + prefix + "id LIMIT ?");
+      catalogue.put(key(tableName, PAGE_PREVIOUS), "SELECT * FROM " + tableName + " WHERE "
+          + prefix + "id<?" + pageFilter + " ORDER BY " + prefix + "id DESC LIMIT ?");
+    }
+    CATALOGUE = Collections.unmodifiableMap(catalogue);
+  }
+
+  //prepared statements for each physical connection
+  private static final Map<Connection, Map<String, PreparedStatement>> STATEMENTS =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  private static final AtomicLong hits = new AtomicLong();
+  private static final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Returns the prepared statement for a table and variant on a connection, preparing it if this
+   * connection has not prepared it before.
+   *
+   * @param connection database connection
+   * @param tableName  name of the stakeholder table
+   * @param variant    statement variant, e.g. {@link #INSERT}
+   * @return the prepared statement with its parameters cleared
+   * @throws SQLException             if the statement cannot be prepared
+   * @throws IllegalArgumentException if the table and variant are not in the catalogue
+   */
+  public static PreparedStatement prepare(Connection connection, String tableName, String variant)
+      throws SQLException {
+    String key = key(tableName, variant);
+    String sql = CATALOGUE.get(key);
+    if (sql == null) {
+      throw new IllegalArgumentException("No statement for " + key);
+    }
+    Connection physical = ConnectionPool.physical(connection);
+    Map<String, PreparedStatement> statements = STATEMENTS
+        .computeIfAbsent(physical, ignored -> new ConcurrentHashMap<>());
+    PreparedStatement statement = statements.get(key);
+    if (statement != null && !statement.isClosed()) {
+      hits.incrementAndGet();
+      statement.clearParameters();
+      return statement;
+    }
+    misses.incrementAndGet();
+    statement = Metrics.instrument(physical.prepareStatement(sql), sql);
+    statements.put(key, statement);
+    return statement;
+  }
+
+  /**
+   * Closes all statements prepared on a connection and removes them from the registry.
+   *
+   * @param connection the physical connection being closed
+   */
+  public static void release(Connection connection) {
+    Map<String, PreparedStatement> statements = STATEMENTS.remove(connection);
+    if (statements == null) {
+      return;
+    }
+    for (PreparedStatement statement : statements.values()) {
+      try {
+        statement.close();
+      } catch (SQLException error) {
+        //the connection is being closed so errors are ignored
+      }
+    }
+  }
+
+  /**
+   * Returns the catalogue key for a table and variant.
+   *
+   * @param tableName name of the table
+   * @param variant   statement variant
+   * @return catalogue key
+   */
+  private static String key(String tableName, String variant) {
+    return tableName + "/" + variant;
+  }
+
+  /**
+   * Returns the number of times a statement was reused.
+   *
+   * @return number of cache hits
+   */
+  public static long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of times a statement had to be prepared.
+   *
+   * @return number of cache misses
+   */
+  public static long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Returns a string with the hit and miss counts of the registry.
+   *
+   * @return string with the registry statistics
+   */
+  public static String getStatistics() {
+    long hitCount = hits.get();
+    long total = hitCount + misses.get();
+    return "Statements: hits=" + hitCount + " misses=" + misses.get() + " hit ratio="
+        + String.format("%.1f", total == 0 ? 0 : hitCount * 100.0 / total) + "%";
+  }
+}
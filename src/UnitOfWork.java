@@ -0,0 +1,247 @@
+//importing libraries
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * UnitOfWork saves the changes made to projects and people with their setters. Each changed row
+ * is written with one UPDATE of only the columns that changed, and rows with the same changed
+ * columns are sent together as a JDBC batch, a chunk at a time. The caller commits.
+ *
+ * <p>Every update increases the row's version and only changes the row if its version is still
+ * the one that was read. If any row was changed by someone else in the meantime, a
+ * {@link ConcurrentUpdateException} is thrown after the batches are sent and nothing is marked as
+ * saved, so the caller rolls back, reads the rows again and makes the changes again.
+ *
+ * @author Nisheel Singh
+ * @version 1.00
+ */
+public class UnitOfWork {
+
+  private final Connection connection;
+  private final int chunkSize;
+  private final Set<Project> projects = new LinkedHashSet<>();
+  private final Set<Person> people = new LinkedHashSet<>();
+
+  /**
+   * Constructor to initialise a unit of work.
+   *
+   * @param connection database connection, with auto-commit disabled
+   * @param chunkSize  number of rows to send in each batch
+   */
+  public UnitOfWork(Connection connection, int chunkSize) {
+    this.connection = connection;
+    this.chunkSize = Math.max(1, chunkSize);
+  }
+
+  /**
+   * Adds a project and its stakeholders to be saved by the next flush.
+   *
+   * @param project the project
+   */
+  public void register(Project project) {
+    projects.add(project);
+    people.addAll(project.getStakeholders());
+  }
+
+  /**
+   * Adds a person to be saved by the next flush.
+   *
+   * @param person the person
+   */
+  public void register(Person person) {
+    people.add(person);
+  }
+
+  /**
+   * Writes the changes of all registered projects and people to the database, without
+   * committing, and marks them as saved.
+   *
+   * @return number of rows updated
+   * @throws ConcurrentUpdateException if a row was changed by someone else since it was read
+   * @throws SQLException              if there are errors accessing the database
+   */
+  public int flush() throws SQLException {
+    //rows grouped by the update that saves them, so each group is one batch
+    Map<String, List<Update>> updates = new LinkedHashMap<>();
+    for (Project project : projects) {
+      if (!project.getDirtyColumns().isEmpty()) {
+        String table = project.isArchived() ? ProjectArchiver.ARCHIVE_TABLE : "projects";
+        addUpdate(updates, table, "", "proj_num", Project.COLUMNS,
+            project.getDirtyColumns(), project::getColumnValue, project.getNum(),
+            project.getVersion(), "project " + project.getNum(),
+            () -> project.setVersion(project.getVersion() + 1));
+      }
+    }
+    for (Person person : people) {
+      if (!person.getDirtyColumns().isEmpty()) {
+        String prefix = Person.getColumnPrefix(person.getRole());
+        addUpdate(updates, Person.getTableName(person.getRole()), prefix, prefix + "id",
+            Person.COLUMNS, person.getDirtyColumns(), person::getColumnValue, person.getId(),
+            person.getVersion(), person.getRole() + " " + person.getId(),
+            () -> person.setVersion(person.getVersion() + 1));
+      }
+    }
+    int rows = 0;
+    List<String> conflicts = new ArrayList<>();
+    for (Map.Entry<String, List<Update>> update : updates.entrySet()) {
+      rows += executeInChunks(update.getKey(), update.getValue(), conflicts);
+    }
+    if (!conflicts.isEmpty()) {
+      throw new ConcurrentUpdateException(conflicts);
+    }
+    //the versions only change once every row has been saved
+    for (List<Update> group : updates.values()) {
+      for (Update update : group) {
+        update.saved.run();
+      }
+    }
+    discard();
+    return rows;
+  }
+
+  /**
+   * Marks the registered projects and people as saved and forgets them. Changes that were not
+   * flushed are thrown away, so they are not saved by a later flush, but the values set on the
+   * objects are not changed back.
+   */
+  public void discard() {
+    for (Project project : projects) {
+      project.markClean();
+    }
+    for (Person person : people) {
+      person.markClean();
+    }
+    clear();
+  }
+
+  /**
+   * Forgets the registered projects and people, leaving their changes unsaved.
+   */
+  public void clear() {
+    projects.clear();
+    people.clear();
+  }
+
+  /**
+   * Returns the number of projects and people registered.
+   *
+   * @return number of rows registered
+   */
+  public int size() {
+    return projects.size() + people.size();
+  }
+
+  /**
+   * Reads the value of a column of a row.
+   */
+  private interface ColumnValues {
+
+    /**
+     * Returns the value of a column.
+     *
+     * @param column name of the column
+     * @return the value
+     */
+    Object get(String column);
+  }
+
+  /**
+   * The update of one changed row.
+   */
+  private static final class Update {
+
+    private final Object[] parameters;
+    private final String row;
+    //increases the version of the object once the row is saved
+    private final Runnable saved;
+
+    private Update(Object[] parameters, String row, Runnable saved) {
+      this.parameters = parameters;
+      this.row = row;
+      this.saved = saved;
+    }
+  }
+
+  /**
+   * Adds the update for a changed row to its group. The update increases the row's version, and
+   * only changes the row if its version is still the one that was read.
+   *
+   * @param updates   updates grouped by SQL
+   * @param tableName name of the table
+   * @param prefix    prefix of the table's columns
+   * @param idColumn  name of the ID column
+   * @param columns   columns that can be updated, in order
+   * @param dirty     columns that changed, without the prefix
+   * @param values    reads the values of the row
+   * @param id        ID of the row
+   * @param version   version of the row when it was read
+   * @param row       description of the row
+   * @param saved     increases the version of the object once the row is saved
+   */
+  private static void addUpdate(Map<String, List<Update>> updates, String tableName,
+      String prefix, String idColumn, String[] columns, Set<String> dirty, ColumnValues values,
+      int id, int version, String row, Runnable saved) {
+    StringBuilder sql = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+    Object[] parameters = new Object[dirty.size() + 2];
+    int count = 0;
+    //the columns are always in the same order so rows with the same changes share the SQL
+    for (String column : columns) {
+      if (dirty.contains(column)) {
+        sql.append(prefix).append(column).append("=?,");
+        parameters[count++] = values.get(column);
+      }
+    }
+    sql.append(prefix).append("version=").append(prefix).append("version+1 WHERE ")
+        .append(idColumn).append("=? AND ").append(prefix).append("version=?");
+    parameters[count] = id;
+    parameters[count + 1] = version;
+    updates.computeIfAbsent(sql.toString(), ignored -> new ArrayList<>())
+        .add(new Update(parameters, row, saved));
+  }
+
+  /**
+   * Runs an update for each row, a batch of one chunk at a time.
+   *
+   * @param sql       the update
+   * @param rows      the rows to update
+   * @param conflicts rows that were not updated because their version changed are added here
+   * @return number of rows updated
+   * @throws SQLException if there are errors accessing the database
+   */
+  private int executeInChunks(String sql, List<Update> rows, List<String> conflicts)
+      throws SQLException {
+    int updated = 0;
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      int chunkStart = 0;
+      for (int i = 0; i < rows.size(); i++) {
+        Object[] parameters = rows.get(i).parameters;
+        for (int j = 0; j < parameters.length; j++) {
+          statement.setObject(j + 1, parameters[j]);
+        }
+        statement.addBatch();
+        if ((i + 1) % chunkSize == 0 || i == rows.size() - 1) {
+          int[] counts = statement.executeBatch();
+          for (int j = 0; j < counts.length; j++) {
+            if (counts[j] == 0) {
+              conflicts.add(rows.get(chunkStart + j).row);
+            } else {
+              //a batch may not report the rows changed by each update
+              updated += counts[j] == Statement.SUCCESS_NO_INFO ? 1 : Math.max(0, counts[j]);
+            }
+          }
+          chunkStart = i + 1;
+        }
+      }
+    }
+    return updated;
+  }
+}